@@ -7,6 +7,8 @@ import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
 
 @Configuration
 public class JacksonConfig {
@@ -28,5 +30,15 @@ public class JacksonConfig {
         mapper.registerModule(new JavaTimeModule());
         return mapper;
     }
+
+    // Serves application/x-jackson-smile, the binary encoding of query results, configured like objectMapper()
+    // so longs stay numbers in both encodings
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter() {
+        ObjectMapper smileMapper = Jackson2ObjectMapperBuilder.smile()
+                .modules(new JavaTimeModule())
+                .build();
+        return new MappingJackson2SmileHttpMessageConverter(smileMapper);
+    }
 }
 
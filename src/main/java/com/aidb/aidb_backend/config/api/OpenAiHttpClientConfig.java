@@ -0,0 +1,25 @@
+package com.aidb.aidb_backend.config.api;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+@Configuration
+public class OpenAiHttpClientConfig {
+
+    /**
+     * Shared by every translation so connections (and their TLS sessions) are pooled and kept alive.
+     * Negotiates HTTP/2 where the server supports it, which multiplexes concurrent calls over one connection.
+     */
+    @Bean(name = "openAiHttpClient")
+    public HttpClient openAiHttpClient(@Value("${openai.http.connect-timeout-ms:2000}") long connectTimeoutMs) {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+    }
+}
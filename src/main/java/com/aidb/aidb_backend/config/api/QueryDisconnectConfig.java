@@ -0,0 +1,60 @@
+package com.aidb.aidb_backend.config.api;
+
+import com.aidb.aidb_backend.service.database.postgres.user_created_tables.RunningQueryRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Cancels the queries of an async request, such as a streamed query result, when the container reports that its
+ * client disconnected or the request timed out, instead of letting them run until their statement timeout.
+ */
+@Configuration
+public class QueryDisconnectConfig implements WebMvcConfigurer {
+
+    private static final String REQUEST_KEY = QueryDisconnectConfig.class.getName() + ".REQUEST_KEY";
+
+    @Autowired
+    RunningQueryRegistry runningQueryRegistry;
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(new CallableProcessingInterceptor() {
+
+            // Runs on the thread that writes the response, before it starts
+            @Override
+            public <T> void preProcess(NativeWebRequest request, Callable<T> task) {
+                Object requestKey = new Object();
+                request.setAttribute(REQUEST_KEY, requestKey, RequestAttributes.SCOPE_REQUEST);
+                runningQueryRegistry.bindRequest(requestKey);
+            }
+
+            @Override
+            public <T> void postProcess(NativeWebRequest request, Callable<T> task, Object concurrentResult) {
+                runningQueryRegistry.unbindRequest();
+            }
+
+            @Override
+            public <T> Object handleTimeout(NativeWebRequest request, Callable<T> task) {
+                cancelQueries(request);
+                return RESULT_NONE;
+            }
+
+            @Override
+            public <T> Object handleError(NativeWebRequest request, Callable<T> task, Throwable t) {
+                cancelQueries(request);
+                return RESULT_NONE;
+            }
+        });
+    }
+
+    private void cancelQueries(NativeWebRequest request) {
+        runningQueryRegistry.cancelRequest(request.getAttribute(REQUEST_KEY, RequestAttributes.SCOPE_REQUEST));
+    }
+}
@@ -0,0 +1,19 @@
+package com.aidb.aidb_backend.config.api;
+
+import com.aidb.aidb_backend.orchestrator.LimitsOrchestrator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class StreamingUsageConfig implements WebMvcConfigurer {
+
+    @Autowired
+    LimitsOrchestrator limitsOrchestrator;
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(new StreamingUsageInterceptor(limitsOrchestrator));
+    }
+}
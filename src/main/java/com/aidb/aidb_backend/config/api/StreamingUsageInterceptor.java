@@ -0,0 +1,33 @@
+package com.aidb.aidb_backend.config.api;
+
+import com.aidb.aidb_backend.orchestrator.LimitsOrchestrator;
+import com.aidb.aidb_backend.orchestrator.UsageReservation;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Releases the usage reserved for a streamed response once async processing is over, if the response body didn't
+ * commit it. Covers a body the container never ran, because the client went away or the request timed out first.
+ * Releasing a reservation that was already committed or released does nothing.
+ */
+public class StreamingUsageInterceptor implements CallableProcessingInterceptor {
+
+    // Request attribute holding the UsageReservation of a streamed response
+    public static final String RESERVATION_ATTRIBUTE = StreamingUsageInterceptor.class.getName() + ".RESERVATION";
+
+    private final LimitsOrchestrator limitsOrchestrator;
+
+    public StreamingUsageInterceptor(LimitsOrchestrator limitsOrchestrator) {
+        this.limitsOrchestrator = limitsOrchestrator;
+    }
+
+    @Override
+    public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) {
+        if (request.getAttribute(RESERVATION_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof UsageReservation reservation) {
+            limitsOrchestrator.release(reservation);
+        }
+    }
+}
@@ -1,13 +1,13 @@
 package com.aidb.aidb_backend.config.db;
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
-
-import javax.sql.DataSource;
 
 @Configuration
 public class AppUserJdbcConfig {
@@ -24,16 +24,47 @@ public class AppUserJdbcConfig {
     @Value("${spring.datasource.driver-class-name}")
     private String dataSourceDriverClassName;
 
+    @Value("${spring.datasource.pool.maximum-pool-size}")
+    private int maximumPoolSize;
+
+    @Value("${spring.datasource.pool.minimum-idle}")
+    private int minimumIdle;
+
+    @Value("${spring.datasource.pool.connection-timeout-ms}")
+    private long connectionTimeoutMs;
+
+    @Value("${spring.datasource.pool.idle-timeout-ms}")
+    private long idleTimeoutMs;
+
+    @Value("${spring.datasource.pool.max-lifetime-ms}")
+    private long maxLifetimeMs;
+
+    private final MeterRegistry meterRegistry;
+
+    public AppUserJdbcConfig(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
     @Primary
-    @Bean
-    public DataSource dataSource() {
-        DriverManagerDataSource dataSource = new DriverManagerDataSource();
-        dataSource.setDriverClassName(dataSourceDriverClassName);
-        dataSource.setUrl(dataSourceUrl);
-        dataSource.setUsername(dataSourceUsername);
-        dataSource.setPassword(dataSourcePassword);
-
-        return dataSource;
+    @Bean(destroyMethod = "close")
+    public HikariDataSource dataSource() {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("app-user-pool");
+        config.setDriverClassName(dataSourceDriverClassName);
+        config.setJdbcUrl(dataSourceUrl);
+        config.setUsername(dataSourceUsername);
+        config.setPassword(dataSourcePassword);
+
+        config.setMaximumPoolSize(maximumPoolSize);
+        config.setMinimumIdle(minimumIdle);
+        config.setConnectionTimeout(connectionTimeoutMs);
+        config.setIdleTimeout(idleTimeoutMs);
+        config.setMaxLifetime(maxLifetimeMs);
+
+        // Publishes hikaricp.connections.* (active, idle, pending, acquire/usage/creation timers)
+        config.setMetricRegistry(meterRegistry);
+
+        return new HikariDataSource(config);
     }
 
     @Bean
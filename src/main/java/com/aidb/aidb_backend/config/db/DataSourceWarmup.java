@@ -0,0 +1,70 @@
+package com.aidb.aidb_backend.config.db;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Opens each pool's minimum idle connections once at startup so the first requests
+ * don't pay for TCP, TLS and authentication. Hikari would otherwise fill the pool in the background.
+ */
+@Component
+public class DataSourceWarmup {
+
+    @Autowired
+    List<HikariDataSource> dataSources;
+
+    @Value("${db.pool.warmup.enabled:true}")
+    private boolean warmupEnabled;
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+    private static final Logger logger = LoggerFactory.getLogger(DataSourceWarmup.class);
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!warmupEnabled) {
+            return;
+        }
+
+        for (HikariDataSource dataSource : dataSources) {
+            warmUp(dataSource);
+        }
+    }
+
+    private void warmUp(HikariDataSource dataSource) {
+        long start = System.currentTimeMillis();
+        List<Connection> connections = new ArrayList<>();
+
+        try {
+            // Hold every connection until the end so the pool has to open new ones
+            for (int i = 0; i < dataSource.getMinimumIdle(); i++) {
+                Connection connection = dataSource.getConnection();
+                connections.add(connection);
+                connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+            }
+            logger.info("Warmed up {} with {} connections in {} ms",
+                    dataSource.getPoolName(), connections.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            // Not fatal: the pool keeps retrying in the background
+            logger.warn("Failed to warm up {}: {}", dataSource.getPoolName(), e.getMessage());
+        } finally {
+            for (Connection connection : connections) {
+                try {
+                    connection.close();
+                } catch (Exception e) {
+                    logger.warn("Failed to return warm-up connection to {}: {}", dataSource.getPoolName(), e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -1,13 +1,13 @@
 package com.aidb.aidb_backend.config.db;
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.jdbc.DataSourceBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.jdbc.core.JdbcTemplate;
 
-import javax.sql.DataSource;
-
 @Configuration
 public class QueryUserJdbcConfig {
     @Value("${user.sql.datasource.url}")
@@ -22,14 +22,49 @@ public class QueryUserJdbcConfig {
     @Value("${user.sql.datasource.driver-class-name}")
     private String dataSourceDriverClassName;
 
-    @Bean(name = "queryUserDataSource")
-    public DataSource queryUserDataSource() {
-        return DataSourceBuilder.create()
-                .url(dataSourceUrl)
-                .username(dataSourceUsername)
-                .password(dataSourcePassword)
-                .driverClassName(dataSourceDriverClassName)
-                .build();
+    @Value("${user.sql.datasource.pool.maximum-pool-size}")
+    private int maximumPoolSize;
+
+    @Value("${user.sql.datasource.pool.minimum-idle}")
+    private int minimumIdle;
+
+    @Value("${user.sql.datasource.pool.connection-timeout-ms}")
+    private long connectionTimeoutMs;
+
+    @Value("${user.sql.datasource.pool.idle-timeout-ms}")
+    private long idleTimeoutMs;
+
+    @Value("${user.sql.datasource.pool.max-lifetime-ms}")
+    private long maxLifetimeMs;
+
+    private final MeterRegistry meterRegistry;
+
+    public QueryUserJdbcConfig(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Bean(name = "queryUserDataSource", destroyMethod = "close")
+    public HikariDataSource queryUserDataSource() {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("query-user-pool");
+        config.setDriverClassName(dataSourceDriverClassName);
+        config.setJdbcUrl(dataSourceUrl);
+        config.setUsername(dataSourceUsername);
+        config.setPassword(dataSourcePassword);
+
+        // The query user only ever runs SELECTs
+        config.setReadOnly(true);
+
+        config.setMaximumPoolSize(maximumPoolSize);
+        config.setMinimumIdle(minimumIdle);
+        config.setConnectionTimeout(connectionTimeoutMs);
+        config.setIdleTimeout(idleTimeoutMs);
+        config.setMaxLifetime(maxLifetimeMs);
+
+        // Publishes hikaricp.connections.* (active, idle, pending, acquire/usage/creation timers)
+        config.setMetricRegistry(meterRegistry);
+
+        return new HikariDataSource(config);
     }
 
     @Bean(name = "queryUserJdbcTemplate")
@@ -1,17 +1,32 @@
 package com.aidb.aidb_backend.controller;
 
+import com.aidb.aidb_backend.config.api.StreamingUsageInterceptor;
 import com.aidb.aidb_backend.model.api.APIResponse;
 import com.aidb.aidb_backend.model.api.ActionWithUserId;
+import com.aidb.aidb_backend.model.api.MeteredActionWithUserId;
 import com.aidb.aidb_backend.model.api.PayloadMetadata;
+import com.aidb.aidb_backend.model.api.StreamingData;
 import com.aidb.aidb_backend.model.api.TierInfo;
 import com.aidb.aidb_backend.model.firestore.User;
 import com.aidb.aidb_backend.model.firestore.util.LimitedOperation;
 import com.aidb.aidb_backend.orchestrator.LimitsOrchestrator;
+import com.aidb.aidb_backend.orchestrator.UsageMeter;
+import com.aidb.aidb_backend.orchestrator.UsageReservation;
 import com.aidb.aidb_backend.security.authorization.FirebaseAuthService;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
 
 public abstract class BaseController {
 
@@ -21,6 +36,12 @@ public abstract class BaseController {
     @Autowired
     LimitsOrchestrator limitsOrchestrator;
 
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    MappingJackson2SmileHttpMessageConverter smileConverter;
+
     private static final Logger logger = LoggerFactory.getLogger(BaseController.class);
 
     protected <T> ResponseEntity<APIResponse<T>> handleRequest(
@@ -51,22 +72,66 @@ public abstract class BaseController {
         // 1. Authorize user
         User user = firebaseAuthService.authorizeUser(authToken);
 
-        // 2. Get user tier info and verify limits
-        TierInfo tierInfo = null;
+        // 2. Check limits and reserve usage in one step
+        UsageReservation reservation = null;
         if (op != null) {
-            tierInfo = limitsOrchestrator.getUserTierInfo(user.getUserId());
-            limitsOrchestrator.verifyLimit(tierInfo, op, opIncrementVal);
+            reservation = limitsOrchestrator.reserve(user.getUserId(), op, opIncrementVal);
         }
 
+        // 3. Execute the action with userId + extra args, giving the usage back if it fails
+        T result;
+        try {
+            result = action.apply(user, args);
+        } catch (Exception | Error e) {
+            if (reservation != null) {
+                limitsOrchestrator.release(reservation);
+            }
+            throw e;
+        }
 
-        // 3. Execute the action with userId + extra args
-        T result = action.apply(user, args);
+        // 4. Commit limit usage
+        TierInfo tierInfo = null;
+        if (reservation != null) {
+            tierInfo = limitsOrchestrator.commit(reservation);
+        }
+
+        // 5. Build response
+        PayloadMetadata meta = new PayloadMetadata(tierInfo);
+        APIResponse<T> apiResponse = new APIResponse<>(meta, result);
+
+        return ResponseEntity.ok(apiResponse);
+    }
+
+    /**
+     * For operations whose usage is only known once the action has read its input.
+     * The action reports usage through the meter, which reserves it as it goes and rejects it as soon as
+     * the limit is crossed.
+     */
+    protected <T> ResponseEntity<APIResponse<T>> handleMeteredRequestWithLimit(
+            String authToken,
+            LimitedOperation op,
+            MeteredActionWithUserId<T> action,
+            Object... args) throws Exception {
+
+        // 1. Authorize user
+        User user = firebaseAuthService.authorizeUser(authToken);
 
-        // 4. Update limit usage
-        if (op != null && tierInfo != null) {
-            tierInfo = limitsOrchestrator.updateLimit(tierInfo, op, opIncrementVal);
+        // 2. Get user tier info and open a meter against it
+        TierInfo tierInfo = limitsOrchestrator.getUserTierInfo(user.getUserId());
+        UsageMeter meter = limitsOrchestrator.openMeter(tierInfo, op);
+
+        // 3. Execute the action with userId + meter + extra args, giving the reserved usage back if it fails
+        T result;
+        try {
+            result = action.apply(user, meter, args);
+        } catch (Exception | Error e) {
+            meter.release();
+            throw e;
         }
 
+        // 4. Commit what the action actually used
+        tierInfo = meter.commit();
+
         // 5. Build response
         PayloadMetadata meta = new PayloadMetadata(tierInfo);
         APIResponse<T> apiResponse = new APIResponse<>(meta, result);
@@ -74,6 +139,91 @@ public abstract class BaseController {
         return ResponseEntity.ok(apiResponse);
     }
 
+    /**
+     * Same envelope as {@link #handleRequestWithLimit}, but the data is written to the response as it is produced.
+     * The action should reject the request before returning; once streaming starts the status can't change.
+     * The meta block comes after the data so it reflects the usage of this request.
+     */
+    protected ResponseEntity<StreamingResponseBody> handleStreamingRequestWithLimit(
+            String authToken,
+            LimitedOperation op,
+            int opIncrementVal,
+            ActionWithUserId<StreamingData> action,
+            Object... args) throws Exception {
+        return handleStreamingRequestWithLimit(authToken, op, opIncrementVal, MediaType.APPLICATION_JSON, action, args);
+    }
+
+    /**
+     * Streams the response as contentType, which is any JSON type or Smile.
+     */
+    protected ResponseEntity<StreamingResponseBody> handleStreamingRequestWithLimit(
+            String authToken,
+            LimitedOperation op,
+            int opIncrementVal,
+            MediaType contentType,
+            ActionWithUserId<StreamingData> action,
+            Object... args) throws Exception {
+
+        // 1. Authorize user
+        User user = firebaseAuthService.authorizeUser(authToken);
+
+        // 2. Check limits and reserve usage in one step
+        UsageReservation reservation = limitsOrchestrator.reserve(user.getUserId(), op, opIncrementVal);
+
+        // 3. Prepare the action with userId + extra args
+        StreamingData data;
+        try {
+            data = action.apply(user, args);
+        } catch (Exception | Error e) {
+            limitsOrchestrator.release(reservation);
+            throw e;
+        }
+
+        // Released by StreamingUsageInterceptor if the body below never runs
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes != null) {
+            requestAttributes.setAttribute(StreamingUsageInterceptor.RESERVATION_ATTRIBUTE, reservation,
+                    RequestAttributes.SCOPE_REQUEST);
+        }
+
+        // 4. Stream data, commit limit usage, then write meta
+        StreamingResponseBody body = outputStream -> {
+            try {
+                JsonGenerator generator = factoryFor(contentType).createGenerator(outputStream);
+                generator.writeStartObject();
+                generator.writeFieldName("data");
+
+                try {
+                    data.writeTo(generator);
+                } catch (IOException | RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IOException("Failed to stream response data", e);
+                }
+
+                TierInfo updatedTierInfo = limitsOrchestrator.commit(reservation);
+                generator.writeObjectField("meta", new PayloadMetadata(updatedTierInfo));
+                generator.writeEndObject();
+
+                // Only closed on success so a failed stream is never mistaken for a complete document
+                generator.close();
+            } finally {
+                // Gives the usage back whatever failed before the commit; does nothing once committed
+                limitsOrchestrator.release(reservation);
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .body(body);
+    }
+
+    private JsonFactory factoryFor(MediaType contentType) {
+        boolean smile = smileConverter.getSupportedMediaTypes().stream()
+                .anyMatch(mediaType -> mediaType.equalsTypeAndSubtype(contentType));
+        return smile ? smileConverter.getObjectMapper().getFactory() : objectMapper.getFactory();
+    }
+
     protected <T> ResponseEntity<T> handleMetadataRequest(String authToken,
                                                                        ActionWithUserId<T> action,
                                                                        Object... args) throws Exception {
@@ -4,9 +4,9 @@ import com.aidb.aidb_backend.model.api.APIResponse;
 import com.aidb.aidb_backend.model.api.ProjectCreateRequest;
 import com.aidb.aidb_backend.model.dto.ProjectDTO;
 import com.aidb.aidb_backend.model.dto.ProjectOverviewDTO;
+import com.aidb.aidb_backend.model.dto.TableRowsDTO;
 import com.aidb.aidb_backend.model.firestore.util.LimitedOperation;
 import com.aidb.aidb_backend.orchestrator.ProjectOrchestrator;
-import com.aidb.aidb_backend.service.util.excel.ExcelRowCounter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -51,17 +51,26 @@ public class ProjectController extends BaseController {
 
     }
 
+    @GetMapping("/{projectId}/tables/{tableId}/rows")
+    public ResponseEntity<APIResponse<TableRowsDTO>> getTableRows(@RequestHeader("Authorization") String authToken,
+                                                                 @PathVariable String projectId,
+                                                                 @PathVariable String tableId,
+                                                                 @RequestParam(required = false) String after,
+                                                                 @RequestParam(required = false) Integer limit) throws Exception {
+        return handleRequest(authToken,
+                (user, args) ->
+                        projectOrchestrator.getTableRows(user.getUserId(), projectId, tableId, after, limit), projectId, tableId
+        );
+    }
+
     @PostMapping("/{projectId}/upload")
     public ResponseEntity<APIResponse<ProjectDTO>> uploadExcel(@RequestHeader("Authorization") String authToken,
                                                                @PathVariable String projectId,
                                                                @RequestParam("file")MultipartFile file) throws Exception {
-        int excelDataRows = ExcelRowCounter.countRows(file);
-
-        return handleRequestWithLimit(authToken,
+        return handleMeteredRequestWithLimit(authToken,
                 LimitedOperation.DATA_ROW,
-                excelDataRows,
-                (user, args) ->
-                        projectOrchestrator.uploadExcel(user.getUserId(), projectId, file), projectId, file
+                (user, meter, args) ->
+                        projectOrchestrator.uploadExcel(user.getUserId(), projectId, file, meter), projectId, file
             );
     }
 
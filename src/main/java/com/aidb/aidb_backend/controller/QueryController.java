@@ -1,7 +1,9 @@
 package com.aidb.aidb_backend.controller;
 
 import com.aidb.aidb_backend.model.api.APIResponse;
+import com.aidb.aidb_backend.model.api.ResultFormat;
 import com.aidb.aidb_backend.model.dto.QueryDTO;
+import com.aidb.aidb_backend.model.dto.QueryHistoryPageDTO;
 import com.aidb.aidb_backend.model.firestore.Query;
 import com.aidb.aidb_backend.model.firestore.util.LimitedOperation;
 import com.aidb.aidb_backend.security.authorization.FirebaseAuthService;
@@ -10,8 +12,10 @@ import com.aidb.aidb_backend.orchestrator.QueryExecutionOrchestrator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Map;
@@ -41,8 +45,23 @@ public class QueryController extends BaseController {
         );
     }
 
+    /**
+     * Rows are JSON objects by default; see {@link ResultFormat} for the columnar formats selected by the Accept header.
+     */
     @PostMapping
-    public ResponseEntity<APIResponse<List<Map<String, Object>>>> executeSql(@RequestHeader("Authorization") String authToken, @RequestBody QueryDTO query) throws Exception {
+    public ResponseEntity<? extends APIResponse<?>> executeSql(@RequestHeader("Authorization") String authToken,
+                                                              @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                                              @RequestBody QueryDTO query) throws Exception {
+        if (ResultFormat.fromAccept(accept).isColumnar()) {
+            // The message converter for the accepted type encodes the result as columnar JSON or Smile
+            return handleRequestWithLimit(authToken,
+                    LimitedOperation.QUERY,
+                    1,
+                    (user, args) ->
+                            queryExecutionOrchestrator.executeSafeSelectQueryColumnar(user.getUserId(), query), query
+            );
+        }
+
         return handleRequestWithLimit(authToken,
                 LimitedOperation.QUERY,
                 1,
@@ -51,6 +70,31 @@ public class QueryController extends BaseController {
         );
     }
 
+    @PostMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamSql(@RequestHeader("Authorization") String authToken,
+                                                           @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                                           @RequestBody QueryDTO query) throws Exception {
+        ResultFormat format = ResultFormat.fromAccept(accept);
+        return handleStreamingRequestWithLimit(authToken,
+                LimitedOperation.QUERY,
+                1,
+                format.getMediaType(),
+                (user, args) ->
+                        queryExecutionOrchestrator.streamSafeSelectQuery(user.getUserId(), query, format), query
+        );
+    }
+
+    /**
+     * Stops the user's running executions of the query. Data is whether anything was running.
+     */
+    @PostMapping("/{id}/cancel")
+    public ResponseEntity<APIResponse<Boolean>> cancelQuery(@RequestHeader("Authorization") String authToken, @PathVariable String id) throws Exception {
+        return handleRequest(authToken,
+                (user, args) ->
+                        queryExecutionOrchestrator.cancelQuery(user.getUserId(), id), id
+        );
+    }
+
     @GetMapping
     public ResponseEntity<APIResponse<List<QueryDTO>>> getAllQueries(@RequestHeader("Authorization") String authToken,
                                                                      @RequestParam String projectId) throws Exception {
@@ -59,6 +103,17 @@ public class QueryController extends BaseController {
         );
     }
 
+    @GetMapping("/history")
+    public ResponseEntity<APIResponse<QueryHistoryPageDTO>> getQueryHistory(@RequestHeader("Authorization") String authToken,
+                                                                             @RequestParam String projectId,
+                                                                             @RequestParam(required = false) String after,
+                                                                             @RequestParam(required = false) Integer limit) throws Exception {
+        return handleRequest(authToken,
+                (user, args) ->
+                        queryTranslatorOrchestrator.getQueryHistoryPage(user.getUserId(), projectId, after, limit), projectId
+        );
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<APIResponse<QueryDTO>> getQueryById(@RequestHeader("Authorization") String authToken, @PathVariable String id) throws Exception {
         return handleRequest(authToken,
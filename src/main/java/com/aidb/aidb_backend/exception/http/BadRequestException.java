@@ -0,0 +1,15 @@
+package com.aidb.aidb_backend.exception.http;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+@Getter
+public class BadRequestException extends HttpException {
+
+    private final HttpStatus httpStatus = HttpStatus.BAD_REQUEST;
+
+
+    public BadRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,15 @@
+package com.aidb.aidb_backend.exception.http;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+@Getter
+public class QueryCancelledException extends HttpException {
+
+    private final HttpStatus httpStatus = HttpStatus.CONFLICT;
+
+
+    public QueryCancelledException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,15 @@
+package com.aidb.aidb_backend.exception.http;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+@Getter
+public class QueryTimeoutException extends HttpException {
+
+    private final HttpStatus httpStatus = HttpStatus.GATEWAY_TIMEOUT;
+
+
+    public QueryTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,9 @@
+package com.aidb.aidb_backend.model.api;
+
+import com.aidb.aidb_backend.model.firestore.User;
+import com.aidb.aidb_backend.orchestrator.UsageMeter;
+
+@FunctionalInterface
+public interface MeteredActionWithUserId<T> {
+    T apply(User user, UsageMeter meter, Object... args) throws Exception;
+}
@@ -0,0 +1,63 @@
+package com.aidb.aidb_backend.model.api;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.util.List;
+
+/**
+ * Shape of a query result, chosen by the request's Accept header.
+ * <ul>
+ *     <li>{@code application/json}: an array with one object per row, the default</li>
+ *     <li>{@code application/vnd.aidb.columnar+json}: the column names and types once, then an array per row,
+ *     see {@link com.aidb.aidb_backend.model.dto.QueryResultDTO}</li>
+ *     <li>{@code application/x-jackson-smile}: the columnar shape in Smile, Jackson's binary JSON encoding</li>
+ * </ul>
+ * "Columnar" means a header of columns followed by row arrays, not typed per-column arrays as in Arrow: rows are
+ * not pivoted, so a streamed result can still be written from the cursor one row at a time.
+ */
+public enum ResultFormat {
+
+    ROWS(MediaType.APPLICATION_JSON),
+    COLUMNAR(MediaType.valueOf("application/vnd.aidb.columnar+json")),
+    COLUMNAR_SMILE(MediaType.valueOf("application/x-jackson-smile"));
+
+    private final MediaType mediaType;
+
+    ResultFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    public boolean isColumnar() {
+        return this != ROWS;
+    }
+
+    /**
+     * The first format the client lists in its Accept header, or {@link #ROWS} if it lists none of them.
+     */
+    public static ResultFormat fromAccept(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return ROWS;
+        }
+
+        List<MediaType> accepted;
+        try {
+            accepted = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return ROWS;
+        }
+
+        for (MediaType mediaType : accepted) {
+            for (ResultFormat format : values()) {
+                if (format.mediaType.equalsTypeAndSubtype(mediaType)) {
+                    return format;
+                }
+            }
+        }
+        return ROWS;
+    }
+}
@@ -0,0 +1,12 @@
+package com.aidb.aidb_backend.model.api;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Payload written straight to the response instead of being built in memory first.
+ * Writes exactly one JSON value: the "data" field of the response. The generator may encode it as Smile.
+ */
+@FunctionalInterface
+public interface StreamingData {
+    void writeTo(JsonGenerator generator) throws Exception;
+}
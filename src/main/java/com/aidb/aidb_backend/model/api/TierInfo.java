@@ -31,6 +31,8 @@ public class TierInfo {
 
     private Long maxFileSize;
 
+    private Long queryTimeoutMs;
+
     public static TierInfo from(UserLimitsUsage usage, Tier tier) {
         return TierInfo.builder()
                 .name(tier.getName())
@@ -44,6 +46,7 @@ public class TierInfo {
                 .projectLimit(tier.getProjectLimit())
                 .projectLimitUsage(usage.getProjectLimitUsage())
                 .maxFileSize(tier.getMaxFileSize())
+                .queryTimeoutMs(tier.getQueryTimeoutMs())
                 .build();
     }
 }
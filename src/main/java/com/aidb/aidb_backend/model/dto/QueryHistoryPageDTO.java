@@ -0,0 +1,15 @@
+package com.aidb.aidb_backend.model.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class QueryHistoryPageDTO {
+
+    // Newest first
+    private List<QueryDTO> queries;
+
+    // Pass as "after" to get the next page; null on the last page
+    private String nextCursor;
+}
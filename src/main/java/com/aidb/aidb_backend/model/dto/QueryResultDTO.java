@@ -0,0 +1,17 @@
+package com.aidb.aidb_backend.model.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * A query result with the column names and types sent once, instead of repeated as keys in every row.
+ */
+@Data
+public class QueryResultDTO {
+
+    private List<ResultColumnDTO> columns;
+
+    // One value per column, in the same order as columns
+    private List<List<Object>> rows;
+}
@@ -0,0 +1,14 @@
+package com.aidb.aidb_backend.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ResultColumnDTO {
+
+    private String name;
+
+    // Database type name, e.g. int8, numeric, text, timestamp
+    private String type;
+}
@@ -0,0 +1,13 @@
+package com.aidb.aidb_backend.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class TableNameDTO {
+
+    private String displayName;
+
+    private String tableName;
+}
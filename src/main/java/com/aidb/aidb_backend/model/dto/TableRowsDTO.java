@@ -0,0 +1,17 @@
+package com.aidb.aidb_backend.model.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class TableRowsDTO {
+
+    private String tableId;
+
+    // One value per column, in the same order as the table's columns
+    private List<List<Object>> rows;
+
+    // Pass as "after" to get the next page; null on the last page
+    private String nextCursor;
+}
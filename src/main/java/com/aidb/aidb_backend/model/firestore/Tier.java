@@ -21,4 +21,7 @@ public class Tier {
 
     private Long maxFileSize;
 
+    // Postgres statement_timeout for queries; unset uses user.sql.query.default-timeout-ms, 0 disables it
+    private Long queryTimeoutMs;
+
 }
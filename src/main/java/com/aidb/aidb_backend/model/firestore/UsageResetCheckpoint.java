@@ -0,0 +1,35 @@
+package com.aidb.aidb_backend.model.firestore;
+
+import com.google.cloud.Timestamp;
+import lombok.Data;
+
+/**
+ * Progress of the monthly usage reset, so a reset interrupted part way resumes instead of starting over.
+ */
+@Data
+public class UsageResetCheckpoint {
+
+    // Billing period being reset, e.g. "2025-07"
+    private String period;
+
+    // Last user_limits document reset, null before the first page completes
+    private String lastDocumentId;
+
+    private long resetCount;
+
+    private boolean completed;
+
+    private Timestamp startedAt;
+
+    private Timestamp updatedAt;
+
+    public UsageResetCheckpoint() {}
+
+    public static UsageResetCheckpoint start(String period, Timestamp now) {
+        UsageResetCheckpoint checkpoint = new UsageResetCheckpoint();
+        checkpoint.setPeriod(period);
+        checkpoint.setStartedAt(now);
+        checkpoint.setUpdatedAt(now);
+        return checkpoint;
+    }
+}
@@ -1,6 +1,8 @@
 package com.aidb.aidb_backend.model.firestore;
 
+import com.aidb.aidb_backend.model.firestore.util.LimitedOperation;
 import com.aidb.aidb_backend.model.firestore.util.TierId;
+import com.aidb.aidb_backend.model.firestore.util.UsagePeriod;
 import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.annotation.DocumentId;
 import lombok.Data;
@@ -22,6 +24,12 @@ public class UserLimitsUsage {
 
     private Long projectLimitUsage;
 
+    // Billing period the usage counters belong to, see UsagePeriod
+    private String usagePeriod;
+
+    // Query and translation usage is spread over this many counter shards, null when it is all on this document
+    private Integer usageShardCount;
+
     private Timestamp createdAt;
 
     private Timestamp lastUpdated;
@@ -37,6 +45,7 @@ public class UserLimitsUsage {
        this.translationLimitUsage = 0L;
        this.dataRowLimitUsage = 0L;
        this.projectLimitUsage = 0L;
+       this.usagePeriod = UsagePeriod.current();
 
        // Timestamps set by service
        this.createdAt = null;
@@ -47,5 +56,23 @@ public class UserLimitsUsage {
        return new UserLimitsUsage(id);
    }
 
+   public Long getUsage(LimitedOperation op) {
+       return switch (op) {
+           case QUERY -> queryLimitUsage;
+           case TRANSLATION -> translationLimitUsage;
+           case DATA_ROW -> dataRowLimitUsage;
+           case PROJECT -> projectLimitUsage;
+       };
+   }
+
+   public void setUsage(LimitedOperation op, Long value) {
+       switch (op) {
+           case QUERY -> queryLimitUsage = value;
+           case TRANSLATION -> translationLimitUsage = value;
+           case DATA_ROW -> dataRowLimitUsage = value;
+           case PROJECT -> projectLimitUsage = value;
+       }
+   }
+
 
 }
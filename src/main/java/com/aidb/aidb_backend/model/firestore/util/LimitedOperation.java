@@ -8,38 +8,41 @@ import java.util.function.Function;
 
 @Getter
 public enum LimitedOperation {
-    QUERY("queryLimit", "queryLimitUsage",
+    QUERY("queryLimit", "queryLimitUsage", true,
             TierInfo::getQueryLimit,
             TierInfo::getQueryLimitUsage,
             TierInfo::setQueryLimitUsage),
 
-    TRANSLATION("translationLimit", "translationLimitUsage",
+    TRANSLATION("translationLimit", "translationLimitUsage", true,
             TierInfo::getTranslationLimit,
             TierInfo::getTranslationLimitUsage,
             TierInfo::setTranslationLimitUsage),
 
-    DATA_ROW("dataRowLimit", "dataRowLimitUsage",
+    DATA_ROW("dataRowLimit", "dataRowLimitUsage", false,
             TierInfo::getDataRowLimit,
             TierInfo::getDataRowLimitUsage,
             TierInfo::setDataRowLimitUsage),
 
-    PROJECT("projectLimit", "projectLimitUsage",
+    PROJECT("projectLimit", "projectLimitUsage", true,
             TierInfo::getProjectLimit,
             TierInfo::getProjectLimitUsage,
             TierInfo::setProjectLimitUsage);
 
     private final String limitFieldName;
     private final String usageFieldName;
+    // Usage starts from zero every billing period; data rows stay counted until deleted
+    private final boolean resetMonthly;
     private final Function<TierInfo, Long> limitGetter;
     private final Function<TierInfo, Long> usageGetter;
     private final BiConsumer<TierInfo, Long> usageSetter;
 
-    LimitedOperation(String limitFieldName, String usageFieldName,
+    LimitedOperation(String limitFieldName, String usageFieldName, boolean resetMonthly,
                      Function<TierInfo, Long> limitGetter,
                      Function<TierInfo, Long> usageGetter,
                      BiConsumer<TierInfo, Long> usageSetter) {
         this.limitFieldName = limitFieldName;
         this.usageFieldName = usageFieldName;
+        this.resetMonthly = resetMonthly;
         this.limitGetter = limitGetter;
         this.usageGetter = usageGetter;
         this.usageSetter = usageSetter;
@@ -0,0 +1,16 @@
+package com.aidb.aidb_backend.model.firestore.util;
+
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+
+/**
+ * Billing periods are calendar months in UTC, identified as "yyyy-MM".
+ */
+public final class UsagePeriod {
+
+    private UsagePeriod() {}
+
+    public static String current() {
+        return YearMonth.now(ZoneOffset.UTC).toString();
+    }
+}
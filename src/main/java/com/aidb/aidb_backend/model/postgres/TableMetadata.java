@@ -34,7 +34,9 @@ public class TableMetadata {
     @Column(name = "table_name")
     private String tableName;
 
+    // Snowflake ids increase in upload order, which is also the physical column order
     @OneToMany(mappedBy = "tableMetadata", cascade = CascadeType.ALL, orphanRemoval = true)
+    @OrderBy("id")
     @JsonManagedReference
     private List<ColumnMetadata> columns;
 
@@ -43,6 +45,6 @@ public class TableMetadata {
 
 
     // TableMetadata stores tableName but not Table object
-    // Tables are fetches using SQL such as: ProjectService.convertTableToTableDtoWithData
+    // Table rows are fetched a page at a time using SQL: DynamicTableRepository.fetchRowsPage
 }
 
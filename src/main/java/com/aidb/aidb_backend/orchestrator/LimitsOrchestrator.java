@@ -8,11 +8,15 @@ import com.aidb.aidb_backend.model.firestore.UserLimitsUsage;
 import com.aidb.aidb_backend.model.firestore.util.LimitedOperation;
 import com.aidb.aidb_backend.service.database.firestore.TierService;
 import com.aidb.aidb_backend.service.database.firestore.UserLimitsService;
+import com.aidb.aidb_backend.service.database.firestore.UserUsageLedger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.ExecutionException;
+
 @Component
 public class LimitsOrchestrator {
 
@@ -22,17 +26,41 @@ public class LimitsOrchestrator {
     @Autowired
     UserLimitsService userLimitsService;
 
+    @Autowired
+    UserUsageLedger userUsageLedger;
+
+    // For tiers without a queryTimeoutMs
+    @Value("${user.sql.query.default-timeout-ms:30000}")
+    long defaultQueryTimeoutMs;
+
+    // Rows a meter reserves at a time, so most rows of an upload don't touch the ledger
+    @Value("${usage-meter.reserve-batch-size:1000}")
+    int meterReserveBatchSize;
+
     private static final int UNLIMITED_TOKEN = -1;
 
     private static final Logger logger = LoggerFactory.getLogger(LimitsOrchestrator.class);
 
     public TierInfo getUserTierInfo(String userId) throws Exception {
-        UserLimitsUsage userLimitsUsage = userLimitsService.getUserLimitsById(userId);
+        UserLimitsUsage userLimitsUsage = userUsageLedger.getUsage(userId);
         Tier tier = tierService.getTier(userLimitsUsage.getTierId());
 
         return TierInfo.from(userLimitsUsage, tier);
     }
 
+    /**
+     * Statement timeout for the user's queries, from their tier. Falls back to the default if the tier can't be read.
+     */
+    public long getQueryTimeoutMs(String userId) {
+        try {
+            Long queryTimeoutMs = getUserTierInfo(userId).getQueryTimeoutMs();
+            return queryTimeoutMs != null ? queryTimeoutMs : defaultQueryTimeoutMs;
+        } catch (Exception e) {
+            logger.warn("Using the default query timeout for user {}: {}", userId, e.getMessage());
+            return defaultQueryTimeoutMs;
+        }
+    }
+
     public void verifyLimit(TierInfo tierInfo, LimitedOperation op, int opIncrementVal) {
         Long curUsage = op.getUsage(tierInfo);
         Long limit = op.getLimit(tierInfo);
@@ -48,8 +76,93 @@ public class LimitsOrchestrator {
     }
 
 
+    public void verifyFileSize(TierInfo tierInfo, long fileSize) {
+        Long maxFileSize = tierInfo.getMaxFileSize();
+
+        // Tiers without a positive size (unset, 0 or UNLIMITED_TOKEN) don't restrict file size
+        if (maxFileSize == null || maxFileSize <= 0) {
+            return;
+        }
+
+        if (fileSize > maxFileSize) {
+            throw new UserLimitExceededException("Exceeded limit: maxFileSize");
+        }
+    }
+
+    /**
+     * Checks the limit and reserves the usage in one atomic step before a limited action runs, so concurrent
+     * requests can't both pass the check. Only reads Firestore when the user's usage isn't already in memory.
+     * The reservation must be committed once the action succeeded, or released when it failed.
+     */
+    public UsageReservation reserve(String userId, LimitedOperation op, int opIncrementVal) throws Exception {
+        return reserve(getUserTierInfo(userId), op, opIncrementVal);
+    }
+
+    // Same as above for a request that already read the user's tier info
+    public UsageReservation reserve(TierInfo tierInfo, LimitedOperation op, int opIncrementVal) throws ExecutionException, InterruptedException {
+        String userId = tierInfo.getUserId();
+        Long limit = op.getLimit(tierInfo);
+        Long reservedUsage = userUsageLedger.reserve(userId, op, opIncrementVal, limit == UNLIMITED_TOKEN ? null : limit);
+
+        if (reservedUsage == null) {
+            throw new UserLimitExceededException("Exceeded limit: " + op.name());
+        }
+
+        return new UsageReservation(tierInfo, op, opIncrementVal);
+    }
+
+    // Records the reserved usage; the ledger writes it to Firestore in the background
+    public TierInfo commit(UsageReservation reservation) {
+        return commit(reservation, reservation.getAmount());
+    }
+
+    /**
+     * Records the part of the reservation the action used and gives back the rest.
+     */
+    public TierInfo commit(UsageReservation reservation, int usedAmount) {
+        if (!reservation.settle()) {
+            throw new IllegalStateException("Usage reservation was already settled");
+        }
+
+        TierInfo tierInfo = reservation.getTierInfo();
+        LimitedOperation op = reservation.getOp();
+        if (usedAmount < reservation.getAmount()) {
+            userUsageLedger.release(tierInfo.getUserId(), op, reservation.getAmount() - usedAmount);
+        }
+        if (usedAmount == 0) {
+            return tierInfo;
+        }
+
+        Long updatedUsage = userUsageLedger.commit(tierInfo.getUserId(), op, usedAmount);
+
+        if (updatedUsage == null && op.getUsage(tierInfo) != null) {
+            updatedUsage = op.getUsage(tierInfo) + usedAmount;
+        }
+
+        op.setUsage(tierInfo, updatedUsage);
+
+        return tierInfo;
+    }
+
+    // Safe to call on a reservation that was already settled
+    public void release(UsageReservation reservation) {
+        if (reservation.settle()) {
+            userUsageLedger.release(reservation.getTierInfo().getUserId(), reservation.getOp(), reservation.getAmount());
+        }
+    }
+
+    public UsageMeter openMeter(TierInfo tierInfo, LimitedOperation op) {
+        return new UsageMeter(this, tierInfo, op, meterReserveBatchSize);
+    }
+
+    // Recorded in memory; the ledger writes it to Firestore in the background
     public TierInfo updateLimit(TierInfo tierInfo, LimitedOperation op, int opIncrementVal) {
-         Long updatedUsage = userLimitsService.updateLimitUsage(tierInfo.getUserId(), op, opIncrementVal);
+        Long updatedUsage = userUsageLedger.record(tierInfo.getUserId(), op, opIncrementVal);
+
+        // The ledger only lacks a baseline if it dropped the user mid-request
+        if (updatedUsage == null && op.getUsage(tierInfo) != null) {
+            updatedUsage = op.getUsage(tierInfo) + opIncrementVal;
+        }
 
         op.setUsage(tierInfo, updatedUsage);
 
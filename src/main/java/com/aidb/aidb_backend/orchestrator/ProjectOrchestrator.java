@@ -4,12 +4,15 @@ import com.aidb.aidb_backend.exception.ProjectNotFoundException;
 import com.aidb.aidb_backend.model.api.ProjectCreateRequest;
 import com.aidb.aidb_backend.model.dto.ProjectDTO;
 import com.aidb.aidb_backend.model.dto.ProjectOverviewDTO;
+import com.aidb.aidb_backend.model.dto.TableDTO;
+import com.aidb.aidb_backend.model.dto.TableRowsDTO;
 import com.aidb.aidb_backend.model.postgres.Project;
 import com.aidb.aidb_backend.service.database.postgres.ProjectService;
 import com.aidb.aidb_backend.service.database.postgres.TableMetadataService;
 import com.aidb.aidb_backend.service.database.postgres.user_created_tables.ExcelUploadService;
 import com.aidb.aidb_backend.service.util.excel.ExcelDataValidatorService;
 import com.aidb.aidb_backend.service.util.excel.ExcelParserService;
+import com.aidb.aidb_backend.service.util.excel.ExcelSheetListener;
 import com.aidb.aidb_backend.service.util.sql.ProjectConversionService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -42,7 +45,12 @@ public class ProjectOrchestrator {
     private final String SUCCESS_RESPONSE = "Success";
 
 
-    public ProjectDTO uploadExcel(String userId, String projectIdString, MultipartFile file) throws Exception {
+    /**
+     * Parses, validates and stores the upload in a single pass over the file.
+     * Data rows and bytes are checked against the user's tier while parsing, so an upload over the limit
+     * is rejected without being read in full. Data rows are recorded on the meter for billing.
+     */
+    public ProjectDTO uploadExcel(String userId, String projectIdString, MultipartFile file, UsageMeter dataRowMeter) throws Exception {
         Long projectId = Long.valueOf(projectIdString);
         ProjectOverviewDTO projectOverview = projectService.getProjectOverviewDTO(userId, projectId);
 
@@ -50,9 +58,22 @@ public class ProjectOrchestrator {
             throw new ProjectNotFoundException(projectId);
         }
 
+        // Reject uploads that are too large before reading them
+        dataRowMeter.verifyFileSize(file.getSize());
+
         Set<String> tableNames = tableMetadataService.getTableNames(userId, projectId);
 
-        ProjectDTO project = parserService.parseExcelFile(projectOverview, tableNames, file.getInputStream());
+        ProjectDTO project = parserService.parseExcelFile(projectOverview, tableNames, file.getInputStream(), new ExcelSheetListener() {
+            @Override
+            public void onRow(TableDTO table, List<Object> row) {
+                dataRowMeter.record(1);
+            }
+
+            @Override
+            public void onBytesRead(long totalBytes) {
+                dataRowMeter.verifyFileSize(totalBytes);
+            }
+        });
         dataValidatorService.validateData(project);
 
         excelUploadService.upload(projectId, project);
@@ -69,6 +90,11 @@ public class ProjectOrchestrator {
         return projectService.getProjectDTO(userId, Long.valueOf(projectId));
     }
 
+    public TableRowsDTO getTableRows(String userId, String projectId, String tableId, String after, Integer limit) {
+        Long afterId = after == null || after.isBlank() ? null : Long.valueOf(after);
+        return tableMetadataService.getTableRows(userId, Long.valueOf(projectId), Long.valueOf(tableId), afterId, limit);
+    }
+
     public List<ProjectOverviewDTO> getProjectOverviewDTOs(String userId) {
         return projectService.getProjectOverviewDTOs(userId);
     }
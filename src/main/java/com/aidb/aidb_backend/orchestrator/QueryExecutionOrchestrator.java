@@ -1,31 +1,31 @@
 package com.aidb.aidb_backend.orchestrator;
 
-import com.aidb.aidb_backend.exception.IllegalSqlException;
-import com.aidb.aidb_backend.exception.ProjectNotFoundException;
 import com.aidb.aidb_backend.exception.TableNotFoundException;
+import com.aidb.aidb_backend.model.api.ResultFormat;
+import com.aidb.aidb_backend.model.api.StreamingData;
 import com.aidb.aidb_backend.model.dto.QueryDTO;
+import com.aidb.aidb_backend.model.dto.QueryResultDTO;
 import com.aidb.aidb_backend.model.firestore.Query;
 import com.aidb.aidb_backend.model.firestore.Status;
-import com.aidb.aidb_backend.service.database.firestore.QueryService;
+import com.aidb.aidb_backend.service.database.firestore.QueryHistoryRecorder;
 import com.aidb.aidb_backend.service.database.postgres.TableMetadataService;
+import com.aidb.aidb_backend.service.database.postgres.user_created_tables.QueryResultCache;
+import com.aidb.aidb_backend.service.database.postgres.user_created_tables.RunningQuery;
+import com.aidb.aidb_backend.service.database.postgres.user_created_tables.RunningQueryRegistry;
 import com.aidb.aidb_backend.service.database.postgres.user_created_tables.UserQueryDataService;
-import com.aidb.aidb_backend.service.util.sql.SqlTableNameReplacer;
-import net.sf.jsqlparser.JSQLParserException;
-import net.sf.jsqlparser.parser.CCJSqlParserUtil;
-import net.sf.jsqlparser.statement.Statement;
-import net.sf.jsqlparser.statement.select.Select;
+import com.aidb.aidb_backend.service.util.sql.ColumnarQueryResultWriter;
+import com.aidb.aidb_backend.service.util.sql.JsonQueryResultWriter;
+import com.aidb.aidb_backend.service.util.sql.QueryResultWriter;
+import com.aidb.aidb_backend.service.util.sql.SafeSqlCompiler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.Function;
 
 @Component
 public class QueryExecutionOrchestrator {
@@ -33,7 +33,7 @@ public class QueryExecutionOrchestrator {
     private static final Logger logger = LoggerFactory.getLogger(QueryExecutionOrchestrator.class);
 
     @Autowired
-    QueryService queryService;
+    QueryHistoryRecorder queryHistoryRecorder;
 
     @Autowired
     UserQueryDataService userQueryDataService;
@@ -41,62 +41,144 @@ public class QueryExecutionOrchestrator {
     @Autowired
     TableMetadataService tableMetadataService;
 
+    @Autowired
+    SafeSqlCompiler safeSqlCompiler;
+
+    @Autowired
+    RunningQueryRegistry runningQueryRegistry;
 
-    public List<Map<String, Object>> executeSafeSelectQuery(String userId, QueryDTO queryDTO) throws JSQLParserException, ExecutionException, InterruptedException {
+    @Autowired
+    LimitsOrchestrator limitsOrchestrator;
+
+    @Autowired
+    QueryResultCache queryResultCache;
+
+    public List<Map<String, Object>> executeSafeSelectQuery(String userId, QueryDTO queryDTO) throws ExecutionException, InterruptedException {
         Query query = new Query(queryDTO);
         query.setUserId(userId);
-        Map<String, String> tableNameMapping = tableMetadataService.getTableNameMapping(userId, Long.valueOf(query.getProjectId()));
+        Map<String, String> tableNameMapping = getTableNameMapping(userId, query);
+        SafeSqlCompiler.CompiledSql compiledSql = safeSqlCompiler.compileQuery(Long.valueOf(query.getProjectId()), query.getSqlQuery(), tableNameMapping);
+        boolean isNew = assignIdIfNew(query);
 
-        if (tableNameMapping == null || tableNameMapping.isEmpty()) {
-            throw new TableNotFoundException();
-        }
+        List<Map<String, Object>> result = executeCached(userId, query, compiledSql, false, tableNameMapping,
+                runningQuery -> userQueryDataService.executeSql(compiledSql.sql(), runningQuery));
 
+        recordExecuted(query, isNew);
 
-        String sql = formatSql(query.getSqlQuery(), tableNameMapping);
+        return result;
+    }
 
-        List<Map<String, Object>> result = userQueryDataService.executeSql(sql);
+    /**
+     * Same as {@link #executeSafeSelectQuery}, with the result in the columnar shape.
+     */
+    public QueryResultDTO executeSafeSelectQueryColumnar(String userId, QueryDTO queryDTO) throws ExecutionException, InterruptedException {
+        Query query = new Query(queryDTO);
+        query.setUserId(userId);
+        Map<String, String> tableNameMapping = getTableNameMapping(userId, query);
+        SafeSqlCompiler.CompiledSql compiledSql = safeSqlCompiler.compileQuery(Long.valueOf(query.getProjectId()), query.getSqlQuery(), tableNameMapping);
+        boolean isNew = assignIdIfNew(query);
 
-        query.setStatus(Status.EXECUTED);
-        queryService.addOrUpdateQuery(query);
+        QueryResultDTO result = executeCached(userId, query, compiledSql, true, tableNameMapping,
+                runningQuery -> userQueryDataService.executeSqlColumnar(compiledSql.sql(), runningQuery));
+
+        recordExecuted(query, isNew);
 
         return result;
     }
 
-    private String formatSql(String rawSql, Map<String, String> tableNameMapping) throws JSQLParserException {
-        String sql = rawSql.trim();
+    public StreamingData streamSafeSelectQuery(String userId, QueryDTO queryDTO) {
+        return streamSafeSelectQuery(userId, queryDTO, ResultFormat.ROWS);
+    }
 
-        if (containsUnsafeKeywords(sql)) {
-            throw new IllegalSqlException("SQL contains disallowed operations.", HttpStatus.BAD_REQUEST);
-        }
+    /**
+     * Validates and rewrites the query up front, then returns the rows as a stream written from a server-side cursor.
+     * The query is recorded as executed once every row has been written.
+     * The tier's statement timeout applies to each fetch, so a slow reader isn't cut off.
+     */
+    public StreamingData streamSafeSelectQuery(String userId, QueryDTO queryDTO, ResultFormat format) {
+        Query query = new Query(queryDTO);
+        query.setUserId(userId);
+        String sql = safeSqlCompiler.compile(Long.valueOf(query.getProjectId()), query.getSqlQuery(), getTableNameMapping(userId, query));
+        boolean isNew = assignIdIfNew(query);
+        long timeoutMs = limitsOrchestrator.getQueryTimeoutMs(userId);
+
+        return generator -> {
+            QueryResultWriter resultWriter = format.isColumnar()
+                    ? new ColumnarQueryResultWriter(generator)
+                    : new JsonQueryResultWriter(generator);
+            resultWriter.start();
+            // Started on the thread that writes the response, so a client disconnect cancels it
+            try (RunningQuery runningQuery = runningQueryRegistry.start(query.getId(), userId, timeoutMs)) {
+                userQueryDataService.streamSql(sql, runningQuery, resultWriter);
+            }
+            resultWriter.end();
+
+            recordExecuted(query, isNew);
+        };
+    }
+
+    /**
+     * Cancels the user's running executions of a query on this instance.
+     *
+     * @return whether any execution was cancelled
+     */
+    public boolean cancelQuery(String userId, String queryId) {
+        return runningQueryRegistry.cancel(userId, queryId);
+    }
 
-        try {
-            Statement statement = CCJSqlParserUtil.parse(sql);
-            if (!(statement instanceof Select)) {
-                throw new IllegalSqlException("Only SELECT statements are allowed.", HttpStatus.BAD_REQUEST);
+    /**
+     * Serves the result from the query result cache, or runs the query and caches its result.
+     * Streamed results aren't cached, since they are meant for results too large to hold in memory,
+     * and neither are results the cache gives no key for.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T executeCached(String userId, Query query, SafeSqlCompiler.CompiledSql compiledSql, boolean columnar,
+                                Map<String, String> tableNameMapping, Function<RunningQuery, T> execute) {
+        QueryResultCache.ResultKey key = queryResultCache.keyFor(compiledSql, columnar, tableNameMapping.values());
+
+        // The key's columnar flag decides the result type
+        T result = (T) queryResultCache.get(key);
+        if (result == null) {
+            try (RunningQuery runningQuery = startQuery(userId, query)) {
+                result = execute.apply(runningQuery);
             }
-        } catch (Exception e) {
-            throw new IllegalSqlException("Invalid SQL syntax: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+            queryResultCache.put(key, result);
+        }
+
+        return result;
+    }
+
+    // A new query gets its id before it runs, so the execution can be cancelled by it
+    private boolean assignIdIfNew(Query query) {
+        if (query.getId() != null) {
+            return false;
         }
 
-        SqlTableNameReplacer tableNameReplacer = new SqlTableNameReplacer(tableNameMapping);
+        query.setId(queryHistoryRecorder.newQueryId());
+        return true;
+    }
+
+    // A new query is stored under the id it ran with
+    private void recordExecuted(Query query, boolean isNew) throws ExecutionException, InterruptedException {
+        query.setStatus(Status.EXECUTED);
+        if (isNew) {
+            queryHistoryRecorder.add(query, query.getId());
+        } else {
+            queryHistoryRecorder.addOrUpdate(query);
+        }
+    }
 
-        return tableNameReplacer.replaceTables(sql);
+    private RunningQuery startQuery(String userId, Query query) {
+        return runningQueryRegistry.start(query.getId(), userId, limitsOrchestrator.getQueryTimeoutMs(userId));
     }
 
+    private Map<String, String> getTableNameMapping(String userId, Query query) {
+        Map<String, String> tableNameMapping = tableMetadataService.getTableNameMapping(userId, Long.valueOf(query.getProjectId()));
+
+        if (tableNameMapping == null || tableNameMapping.isEmpty()) {
+            throw new TableNotFoundException();
+        }
 
-    private boolean containsUnsafeKeywords(String sql) {
-        String lower = sql.toLowerCase();
-        return lower.contains("insert ") ||
-                lower.contains("update ") ||
-                lower.contains("delete ") ||
-                lower.contains("drop ") ||
-                lower.contains("truncate ") ||
-                lower.contains("alter ") ||
-                lower.contains("create ") ||
-                lower.contains("grant ") ||
-                lower.contains("revoke ") ||
-                lower.contains("exec ") ||
-                lower.contains(";") ||     // Disallow multiple statements
-                lower.contains("--");      // Disallow comment injection
+        return tableNameMapping;
     }
 }
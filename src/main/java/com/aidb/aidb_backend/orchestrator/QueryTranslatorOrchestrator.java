@@ -2,10 +2,14 @@ package com.aidb.aidb_backend.orchestrator;
 
 import com.aidb.aidb_backend.exception.http.ForbiddenException;
 import com.aidb.aidb_backend.model.dto.QueryDTO;
+import com.aidb.aidb_backend.model.dto.QueryHistoryPageDTO;
 import com.aidb.aidb_backend.model.firestore.Query;
 import com.aidb.aidb_backend.model.firestore.Status;
 import com.aidb.aidb_backend.service.api.OpenAiClient;
+import com.aidb.aidb_backend.service.api.TranslationCache;
+import com.aidb.aidb_backend.service.database.firestore.QueryHistoryRecorder;
 import com.aidb.aidb_backend.service.database.firestore.QueryService;
+import com.aidb.aidb_backend.service.util.SingleFlight;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,22 +25,41 @@ public class QueryTranslatorOrchestrator {
     private static final Logger logger = LoggerFactory.getLogger(QueryTranslatorOrchestrator.class);
 
     private final QueryService queryService;
+    private final QueryHistoryRecorder queryHistoryRecorder;
     private final OpenAiClient openAiClient;
+    private final TranslationCache translationCache;
+
+    // Users of a shared project often ask the same question at once; only one of them calls OpenAI
+    private final SingleFlight<TranslationCache.TranslationKey, String> inFlightTranslations = new SingleFlight<>();
 
     @Autowired
     public QueryTranslatorOrchestrator(
-            QueryService queryService, OpenAiClient openAiClient) {
+            QueryService queryService, QueryHistoryRecorder queryHistoryRecorder,
+            OpenAiClient openAiClient, TranslationCache translationCache) {
         this.queryService = queryService;
+        this.queryHistoryRecorder = queryHistoryRecorder;
        this.openAiClient = openAiClient;
+        this.translationCache = translationCache;
     }
 
     public QueryDTO translateToSql(String userId, Query query) throws ExecutionException, InterruptedException {
         query.setUserId(userId);
-        String sqlQuery = openAiClient.getSqlTranslation(query.getNlQuery());
+
+        TranslationCache.TranslationKey key = translationCache.keyFor(userId, query.getProjectId(), query.getNlQuery());
+        String sqlQuery = key == null ? null : translationCache.get(key);
+        if (sqlQuery == null) {
+            sqlQuery = key == null ? openAiClient.getSqlTranslation(query.getNlQuery())
+                    : inFlightTranslations.execute(key, () -> {
+                        String translated = openAiClient.getSqlTranslation(query.getNlQuery());
+                        translationCache.put(key, translated);
+                        return translated;
+                    });
+        }
+
         query.setSqlQuery(sqlQuery);
         query.setStatus(Status.TRANSLATED);
 
-        queryService.addQuery(query);
+        queryHistoryRecorder.add(query);
 
         return new QueryDTO(query);
     }
@@ -45,6 +68,11 @@ public class QueryTranslatorOrchestrator {
         return queryService.getAllQueryDTOs(userId, projectId);
     }
 
+    public QueryHistoryPageDTO getQueryHistoryPage(String userId, String projectId, String after, Integer limit)
+            throws ExecutionException, InterruptedException {
+        return queryService.getQueryHistoryPage(userId, projectId, after, limit);
+    }
+
     public QueryDTO getQueryById(String userId, String queryId) throws ExecutionException, InterruptedException {
         Query query = queryService.getQueryById(queryId);
 
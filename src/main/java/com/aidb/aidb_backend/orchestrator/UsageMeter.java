@@ -0,0 +1,99 @@
+package com.aidb.aidb_backend.orchestrator;
+
+import com.aidb.aidb_backend.exception.UserLimitExceededException;
+import com.aidb.aidb_backend.exception.http.InternalServerErrorException;
+import com.aidb.aidb_backend.model.api.TierInfo;
+import com.aidb.aidb_backend.model.firestore.util.LimitedOperation;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Tracks usage of a limited operation while an action is running, for actions whose
+ * increment is only known once they have processed their input (e.g. rows in an upload).
+ * Usage is reserved through the ledger as it is recorded, so concurrent actions can't both pass the limit
+ * and the action can abort early. Once the action is done the meter must be committed, or released if it failed.
+ */
+@Getter
+public class UsageMeter {
+
+    private final LimitsOrchestrator limitsOrchestrator;
+
+    private final TierInfo tierInfo;
+
+    private final LimitedOperation op;
+
+    private final int reserveBatchSize;
+
+    private final List<UsageReservation> reservations = new ArrayList<>();
+
+    private int usage = 0;
+
+    private int reserved = 0;
+
+    public UsageMeter(LimitsOrchestrator limitsOrchestrator, TierInfo tierInfo, LimitedOperation op, int reserveBatchSize) {
+        this.limitsOrchestrator = limitsOrchestrator;
+        this.tierInfo = tierInfo;
+        this.op = op;
+        this.reserveBatchSize = reserveBatchSize;
+    }
+
+    public void record(int increment) {
+        if (usage + increment > reserved) {
+            reserve(usage + increment - reserved);
+        }
+        usage += increment;
+    }
+
+    // Reserves a batch ahead when there is room for it, otherwise only what is needed
+    private void reserve(int needed) {
+        try {
+            UsageReservation reservation = null;
+            if (reserveBatchSize > needed) {
+                try {
+                    reservation = limitsOrchestrator.reserve(tierInfo, op, reserveBatchSize);
+                } catch (UserLimitExceededException e) {
+                    // Close to the limit; the exact amount may still fit
+                }
+            }
+            if (reservation == null) {
+                reservation = limitsOrchestrator.reserve(tierInfo, op, needed);
+            }
+
+            reservations.add(reservation);
+            reserved += reservation.getAmount();
+        } catch (ExecutionException e) {
+            throw new InternalServerErrorException("Could not reserve usage: " + op.name());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InternalServerErrorException("Could not reserve usage: " + op.name());
+        }
+    }
+
+    /**
+     * Records the usage and gives back whatever was reserved ahead but not used.
+     */
+    public TierInfo commit() {
+        int remaining = usage;
+        for (UsageReservation reservation : reservations) {
+            int used = Math.min(remaining, reservation.getAmount());
+            limitsOrchestrator.commit(reservation, used);
+            remaining -= used;
+        }
+        reservations.clear();
+
+        return tierInfo;
+    }
+
+    // Gives back everything reserved, for an action that failed
+    public void release() {
+        reservations.forEach(limitsOrchestrator::release);
+        reservations.clear();
+    }
+
+    public void verifyFileSize(long fileSize) {
+        limitsOrchestrator.verifyFileSize(tierInfo, fileSize);
+    }
+}
@@ -0,0 +1,40 @@
+package com.aidb.aidb_backend.orchestrator;
+
+import com.aidb.aidb_backend.model.api.TierInfo;
+import com.aidb.aidb_backend.model.firestore.util.LimitedOperation;
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Usage of a limited operation reserved before its action runs, see {@link LimitsOrchestrator#reserve}.
+ * Settled exactly once, by committing it when the action succeeded or releasing it when it failed.
+ */
+public class UsageReservation {
+
+    @Getter
+    private final TierInfo tierInfo;
+
+    @Getter
+    private final LimitedOperation op;
+
+    @Getter
+    private final int amount;
+
+    private final AtomicBoolean settled = new AtomicBoolean();
+
+    UsageReservation(TierInfo tierInfo, LimitedOperation op, int amount) {
+        this.tierInfo = tierInfo;
+        this.op = op;
+        this.amount = amount;
+    }
+
+    public boolean isSettled() {
+        return settled.get();
+    }
+
+    // True for the one caller that gets to settle the reservation
+    boolean settle() {
+        return settled.compareAndSet(false, true);
+    }
+}
@@ -1,10 +1,14 @@
 package com.aidb.aidb_backend.repository;
 
+import com.aidb.aidb_backend.model.dto.TableRowsDTO;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.stream.Collectors;
 
 @Repository
 public class DynamicTableRepository {
@@ -16,17 +20,46 @@ public class DynamicTableRepository {
     }
 
     /**
-     * Fetches all rows from a dynamic table.
+     * Fetches one page of rows from a dynamic table using keyset pagination on its id column.
      * @param tableName table name in the database
-     * @return list of maps, each representing a row
+     * @param columnNames columns to return, in order
+     * @param afterId only rows with a greater id are returned
+     * @param pageSize maximum number of rows to return
+     * @return rows without the id column, and the cursor for the next page if there is one
      */
-    public List<Map<String, Object>> fetchAllRows(String tableName) {
-        String sql = "SELECT * FROM \"" + tableName + "\"";
-        try {
-            return jdbcTemplate.queryForList(sql);
-        } catch (Exception e) {
-            // Table might not exist
-            return List.of();
+    public TableRowsDTO fetchRowsPage(String tableName, List<String> columnNames, long afterId, int pageSize) {
+        String sql = "SELECT id" +
+                columnNames.stream()
+                        .map(c -> ", " + quoteIdentifier(c))
+                        .collect(Collectors.joining()) +
+                " FROM " + quoteIdentifier(tableName) +
+                " WHERE id > ? ORDER BY id LIMIT ?";
+
+        List<Long> ids = new ArrayList<>();
+        List<List<Object>> rows = new ArrayList<>();
+
+        // Fetch one extra row to know whether there is a next page
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+            ids.add(rs.getLong(1));
+
+            List<Object> row = new ArrayList<>(columnNames.size());
+            for (int i = 0; i < columnNames.size(); i++) {
+                row.add(JdbcUtils.getResultSetValue(rs, i + 2));
+            }
+            rows.add(row);
+        }, afterId, pageSize + 1);
+
+        TableRowsDTO page = new TableRowsDTO();
+        if (rows.size() > pageSize) {
+            rows.remove(pageSize);
+            page.setNextCursor(String.valueOf(ids.get(pageSize - 1)));
         }
+        page.setRows(rows);
+
+        return page;
+    }
+
+    private String quoteIdentifier(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
     }
 }
@@ -1,5 +1,6 @@
 package com.aidb.aidb_backend.repository;
 
+import com.aidb.aidb_backend.model.dto.TableNameDTO;
 import com.aidb.aidb_backend.model.postgres.TableMetadata;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
@@ -8,6 +9,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 
 @Repository
@@ -24,6 +26,14 @@ public interface TableMetadataRepository extends JpaRepository<TableMetadata, Lo
 
     List<TableMetadata> findByProject_IdAndUserId(Long projectId, String userId);
 
+    @Query("""
+    SELECT new com.aidb.aidb_backend.model.dto.TableNameDTO(t.displayName, t.tableName)
+    FROM TableMetadata t
+    WHERE t.project.id = :projectId AND t.userId = :userId
+""")
+    List<TableNameDTO> findTableNameDTOs(@Param("projectId") Long projectId,
+                                         @Param("userId") String userId);
+
 
     @Query("SELECT tm.id FROM TableMetadata tm WHERE tm.project.id = :projectId AND tm.userId = :userId")
     List<Long> findIdsByProjectIdAndUserId(Long projectId, String userId);
@@ -32,4 +42,6 @@ public interface TableMetadataRepository extends JpaRepository<TableMetadata, Lo
     String findTableNameById(Long tableId);
 
     boolean existsByIdAndProject_IdAndUserId(Long id, Long projectId, String userId);
+
+    Optional<TableMetadata> findByIdAndProject_IdAndUserId(Long id, Long projectId, String userId);
 }
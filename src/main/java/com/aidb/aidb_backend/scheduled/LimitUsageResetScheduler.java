@@ -1,33 +1,66 @@
 package com.aidb.aidb_backend.scheduled;
 
-import com.aidb.aidb_backend.config.api.GlobalExceptionHandler;
+import com.aidb.aidb_backend.model.firestore.util.UsagePeriod;
 import com.aidb.aidb_backend.service.database.firestore.UserLimitsService;
+import com.aidb.aidb_backend.service.database.firestore.UserUsageLedger;
 import com.google.cloud.Timestamp;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+/**
+ * Resets every user's usage at the start of each month. Usage already rolls over lazily the first time a user
+ * is seen in a new billing period, so this bulk job is off unless {@code usage-reset.bulk.enabled} is set.
+ */
 @Component
 @RequiredArgsConstructor
+@ConditionalOnProperty(name = "usage-reset.bulk.enabled", havingValue = "true")
 public class LimitUsageResetScheduler {
 
     private static final Logger logger = LoggerFactory.getLogger(LimitUsageResetScheduler.class);
 
     private final UserLimitsService userLimitsService;
 
+    private final UserUsageLedger userUsageLedger;
+
     /**
      * Runs at midnight UTC on the first day of each month.
      */
     @Scheduled(cron = "0 0 0 1 * *", zone = "UTC")
     public void resetMonthlyLimits() {
+        resetUsage(UsagePeriod.current());
+    }
+
+    /**
+     * Picks up this month's reset if it was interrupted, e.g. by a crash or a failed write.
+     */
+    @Scheduled(fixedDelayString = "${usage-reset.resume-check-interval-ms:600000}",
+            initialDelayString = "${usage-reset.resume-check-interval-ms:600000}")
+    public void resumeIncompleteReset() {
+        try {
+            String period = userLimitsService.getIncompleteResetPeriod();
+            if (UsagePeriod.current().equals(period)) {
+                logger.info("Resuming usage reset for period {}", period);
+                resetUsage(period);
+            }
+        } catch (Exception e) {
+            logger.error("Error checking for an incomplete usage reset", e);
+        }
+    }
+
+    private synchronized void resetUsage(String period) {
         try {
             Timestamp now = Timestamp.now();
-            userLimitsService.resetUsageForAllUsers(now);
-            logger.info("Monthly usage limits reset successfully at {}", now);
+            // Write last month's pending usage before resetting, then drop the pre-reset baselines
+            userUsageLedger.flush();
+            userLimitsService.resetUsageForAllUsers(period, now);
+            userUsageLedger.invalidateAll();
+            logger.info("Monthly usage limits reset successfully for period {} at {}", period, now);
         } catch (Exception e) {
-            logger.error("Error resetting monthly usage limits", e);
+            logger.error("Error resetting monthly usage limits for period {}", period, e);
         }
     }
 }
@@ -3,13 +3,78 @@ package com.aidb.aidb_backend.security.authorization;
 import com.aidb.aidb_backend.exception.http.ForbiddenException;
 import com.aidb.aidb_backend.exception.http.UnauthorizedException;
 import com.aidb.aidb_backend.model.firestore.User;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseAuthException;
 import com.google.firebase.auth.FirebaseToken;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+
 @Service
 public class FirebaseAuthService {
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${auth.token-cache.max-size:100000}")
+    private long maxCacheSize;
+
+    // Upper bound on how long a verified token is trusted without asking Firebase again
+    @Value("${auth.token-cache.max-ttl-seconds:300}")
+    private long maxTtlSeconds;
+
+    // Also reject revoked tokens; costs a Firebase Auth round trip per cache miss
+    @Value("${auth.token-cache.check-revoked:false}")
+    private boolean checkRevoked;
+
+    // Keyed by a hash of the ID token so raw tokens aren't kept in memory
+    private Cache<String, VerifiedToken> verifiedTokens;
+
+    private Timer verificationTimer;
+
+    private record VerifiedToken(User user, long expiresAtMillis) {
+    }
+
+    @PostConstruct
+    void initCache() {
+        verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(maxCacheSize)
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String key, VerifiedToken token, long currentTime) {
+                        long untilExpiry = Math.max(0, token.expiresAtMillis() - System.currentTimeMillis());
+                        return Math.min(TimeUnit.MILLISECONDS.toNanos(untilExpiry), TimeUnit.SECONDS.toNanos(maxTtlSeconds));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, VerifiedToken token, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, token, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, VerifiedToken token, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "firebaseIdTokens");
+        verificationTimer = meterRegistry.timer("firebase.auth.verify");
+    }
 
     public User authorizeUser(String authToken) {
         try {
@@ -18,14 +83,36 @@ public class FirebaseAuthService {
             }
 
             String idToken = authToken.substring(7);
+            String tokenHash = hash(idToken);
+
+            VerifiedToken verified = verifiedTokens.getIfPresent(tokenHash);
+            if (verified != null && verified.expiresAtMillis() > System.currentTimeMillis()) {
+                return verified.user();
+            }
+
+            FirebaseToken decodedToken = verificationTimer.recordCallable(() -> verifyIdToken(idToken));
 
-            FirebaseToken decodedToken = FirebaseAuth.getInstance().verifyIdToken(idToken);
+            User user = new User(decodedToken.getUid(), decodedToken.getName(), decodedToken.getEmail());
 
-            return new User(decodedToken.getUid(), decodedToken.getName(), decodedToken.getEmail());
+            // Tokens without an expiry claim are never cached
+            if (decodedToken.getClaims().get("exp") instanceof Number exp) {
+                verifiedTokens.put(tokenHash, new VerifiedToken(user, TimeUnit.SECONDS.toMillis(exp.longValue())));
+            }
+
+            return user;
 
 
         } catch (Exception e) {
             throw new ForbiddenException("Error during authentication.");
         }
     }
+
+    FirebaseToken verifyIdToken(String idToken) throws FirebaseAuthException {
+        return FirebaseAuth.getInstance().verifyIdToken(idToken, checkRevoked);
+    }
+
+    private static String hash(String idToken) throws NoSuchAlgorithmException {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(idToken.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest);
+    }
 }
@@ -1,13 +1,26 @@
 package com.aidb.aidb_backend.service.api;
 
 import com.aidb.aidb_backend.exception.OpenAiApiException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 public class OpenAiClient {
@@ -23,9 +36,25 @@ public class OpenAiClient {
     @Value("${OPENAI_API_TEMPERATURE}")
     private double openAiTemp;
 
-    public String getSqlTranslation(String nlQuery) {
-        RestTemplate restTemplate = new RestTemplate();
+    // Time allowed for the response headers to arrive
+    @Value("${openai.http.read-timeout-ms:20000}")
+    private long readTimeoutMs;
+
+    // Time allowed for the whole call, including reading the body
+    @Value("${openai.http.deadline-ms:30000}")
+    private long deadlineMs;
+
+    @Autowired
+    @Qualifier("openAiHttpClient")
+    private HttpClient httpClient;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    public String getSqlTranslation(String nlQuery) {
         // TODO - MVP: remove hardcoding
         Map<String, Object> message = Map.of(
                 "role", "user",
@@ -38,20 +67,32 @@ public class OpenAiClient {
                 "temperature", openAiTemp
         );
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.setBearerAuth(openAiKey);
-
-        HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        CompletableFuture<HttpResponse<byte[]>> future = null;
 
         try {
-            ResponseEntity<Map> response = restTemplate.exchange(openAiUrl, HttpMethod.POST, request, Map.class);
+            HttpRequest request = HttpRequest.newBuilder(URI.create(openAiUrl))
+                    .timeout(Duration.ofMillis(readTimeoutMs))
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .header(HttpHeaders.AUTHORIZATION, "Bearer " + openAiKey)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(requestBody)))
+                    .build();
+
+            future = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+            HttpResponse<byte[]> response = future.get(deadlineMs, TimeUnit.MILLISECONDS);
+
+            if (!HttpStatusCode.valueOf(response.statusCode()).is2xxSuccessful()) {
+                throw new OpenAiApiException("Error fetching SQL translation from OpenAI", HttpStatus.INTERNAL_SERVER_ERROR);
+            }
 
-            if (response.getBody() == null) {
+            Map<String, Object> body = response.body() == null || response.body().length == 0 ? null
+                    : objectMapper.readValue(response.body(), Map.class);
+            if (body == null) {
                 throw new OpenAiApiException("OpenAI API returned a null body", HttpStatus.INTERNAL_SERVER_ERROR);
             }
 
-            List<Map<String, Object>> choices = (List<Map<String, Object>>) response.getBody().get("choices");
+            List<Map<String, Object>> choices = (List<Map<String, Object>>) body.get("choices");
             if (choices == null || choices.isEmpty()) {
                 throw new OpenAiApiException("No choices in OpenAI response", HttpStatus.BAD_REQUEST);
             }
@@ -61,12 +102,30 @@ public class OpenAiClient {
                 throw new OpenAiApiException("No message field in OpenAI response", HttpStatus.BAD_REQUEST);
             }
 
+            outcome = "success";
             return (String) messageMap.get("content");
 
         } catch (OpenAiApiException e) {
             throw e; // Propagate custom exception
+        } catch (TimeoutException e) {
+            // Cancelling the exchange releases the connection instead of letting it finish in the background
+            future.cancel(true);
+            outcome = "timeout";
+            throw new OpenAiApiException("Timed out fetching SQL translation from OpenAI", HttpStatus.GATEWAY_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (future != null) {
+                future.cancel(true);
+            }
+            throw new OpenAiApiException("Error fetching SQL translation from OpenAI", HttpStatus.INTERNAL_SERVER_ERROR);
         } catch (Exception e) {
+            if (e.getCause() instanceof HttpTimeoutException) {
+                outcome = "timeout";
+                throw new OpenAiApiException("Timed out fetching SQL translation from OpenAI", HttpStatus.GATEWAY_TIMEOUT);
+            }
             throw new OpenAiApiException("Error fetching SQL translation from OpenAI", HttpStatus.INTERNAL_SERVER_ERROR);
+        } finally {
+            sample.stop(meterRegistry.timer("openai.translation.requests", "outcome", outcome));
         }
     }
 }
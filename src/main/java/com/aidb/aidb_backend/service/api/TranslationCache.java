@@ -0,0 +1,188 @@
+package com.aidb.aidb_backend.service.api;
+
+import com.aidb.aidb_backend.model.firestore.Query;
+import com.aidb.aidb_backend.service.database.firestore.QueryService;
+import com.aidb.aidb_backend.service.database.postgres.TableMetadataService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Translations already returned by OpenAI, keyed by the normalized question and the schema of the project
+ * it was asked against. A re-asked question is answered from memory instead of calling OpenAI again.
+ */
+@Service
+public class TranslationCache {
+
+    @Autowired
+    private TableMetadataService tableMetadataService;
+
+    @Autowired
+    private QueryService queryService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${translation-cache.max-size:10000}")
+    private long maxSize;
+
+    @Value("${translation-cache.warmup-size:0}")
+    private int warmupSize;
+
+    private Cache<TranslationKey, String> translations;
+
+    private Counter upstreamCallsSaved;
+
+    private static final Logger logger = LoggerFactory.getLogger(TranslationCache.class);
+
+    public record TranslationKey(String schemaFingerprint, String nlQuery) {
+    }
+
+    @PostConstruct
+    void initCache() {
+        translations = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, translations, "translations");
+        upstreamCallsSaved = meterRegistry.counter("openai.translation.calls.saved");
+    }
+
+    /**
+     * Cache key for a question asked against a project, or null if the question can't be cached.
+     */
+    public TranslationKey keyFor(String userId, String projectId, String nlQuery) {
+        String normalized = normalize(nlQuery);
+        if (normalized == null || normalized.isEmpty()) {
+            return null;
+        }
+
+        return new TranslationKey(schemaFingerprint(userId, projectId), normalized);
+    }
+
+    public String get(TranslationKey key) {
+        String sqlQuery = translations.getIfPresent(key);
+        if (sqlQuery != null) {
+            upstreamCallsSaved.increment();
+        }
+        return sqlQuery;
+    }
+
+    public void put(TranslationKey key, String sqlQuery) {
+        if (key != null && sqlQuery != null) {
+            translations.put(key, sqlQuery);
+        }
+    }
+
+    /**
+     * Loads the most recent translations from query history so a restart doesn't start cold.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (warmupSize <= 0) {
+            return;
+        }
+
+        try {
+            List<Query> history = queryService.getRecentTranslations(warmupSize);
+
+            // Oldest first so the latest translation of a question wins
+            for (int i = history.size() - 1; i >= 0; i--) {
+                Query query = history.get(i);
+                put(keyFor(query.getUserId(), query.getProjectId(), query.getNlQuery()), query.getSqlQuery());
+            }
+
+            logger.info("Warmed translation cache with {} translations", history.size());
+        } catch (Exception e) {
+            logger.warn("Could not warm translation cache: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Case, surrounding whitespace, repeated whitespace and trailing punctuation don't change a question.
+     * Quoted text is kept exactly as written, since 'ACME' and 'acme' are different values to filter on.
+     */
+    static String normalize(String nlQuery) {
+        if (nlQuery == null) {
+            return null;
+        }
+
+        String question = nlQuery.strip();
+        StringBuilder normalized = new StringBuilder(question.length());
+        char quote = 0;
+        for (int i = 0; i < question.length(); i++) {
+            char ch = question.charAt(i);
+            if (quote != 0) {
+                if (ch == quote) {
+                    quote = 0;
+                }
+                normalized.append(ch);
+            } else if (Character.isWhitespace(ch)) {
+                if (!Character.isWhitespace(question.charAt(i - 1))) {
+                    normalized.append(' ');
+                }
+            } else {
+                if (ch == '\'' || ch == '"') {
+                    quote = ch;
+                }
+                normalized.append(Character.toLowerCase(ch));
+            }
+        }
+
+        // Punctuation inside an unclosed quote is part of the value
+        return quote != 0 ? normalized.toString() : normalized.toString().replaceAll("[\\s?.!]+$", "");
+    }
+
+    /**
+     * Hash of the project's tables as the user sees them. Physical table names are derived from the display name,
+     * so a table deleted and uploaded again keeps its names; the metadata ids change on every upload, so they are
+     * hashed too and any schema change produces a new fingerprint and old translations stop matching.
+     */
+    private String schemaFingerprint(String userId, String projectId) {
+        Long id;
+        try {
+            id = Long.valueOf(projectId);
+        } catch (NumberFormatException e) {
+            return "";
+        }
+
+        Map<String, String> tables = new TreeMap<>(tableMetadataService.getTableNameMapping(userId, id));
+        List<Long> tableIds = tableMetadataService.getTableIds(userId, id);
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            tables.forEach((displayName, tableName) -> {
+                digest.update(displayName.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(tableName.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            });
+            for (Long tableId : tableIds) {
+                digest.update(tableId.toString().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.aidb.aidb_backend.service.database.firestore;
+
+import com.aidb.aidb_backend.model.firestore.Query;
+import com.google.cloud.Timestamp;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Records query history without a Firestore round trip on the request path.
+ * <p>
+ * Queries are buffered in memory and written every {@code query-history.flush-interval-ms} in batches, see
+ * {@link QueryService#writeHistory}. Each query gets its id and timestamp when it is recorded, so callers can
+ * return it straight away and a batch that fails can be retried without duplicating entries. When the buffer
+ * ({@code query-history.buffer-size}) is full the query is written directly instead, so history is never dropped
+ * under load. A graceful shutdown flushes the buffer; a crash can lose the last flush interval of history.
+ */
+@Service
+public class QueryHistoryRecorder {
+
+    @Autowired
+    QueryService queryService;
+
+    @Value("${query-history.buffer-size:10000}")
+    int bufferSize;
+
+    // A failed batch is retried on later flushes this many times before its queries are dropped
+    @Value("${query-history.max-write-attempts:5}")
+    int maxWriteAttempts;
+
+    private BlockingQueue<QueryService.HistoryWrite> buffer;
+
+    // Batches that failed to write, retried before anything newer
+    private final List<FailedBatch> failedBatches = new ArrayList<>();
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryHistoryRecorder.class);
+
+    private record FailedBatch(List<QueryService.HistoryWrite> writes, int attempts) {
+    }
+
+    @PostConstruct
+    void initBuffer() {
+        buffer = new ArrayBlockingQueue<>(bufferSize);
+    }
+
+    /**
+     * Id for a new query, e.g. one that has to be cancellable while it runs, before it is recorded with {@link #add(Query, String)}.
+     */
+    public String newQueryId() {
+        return queryService.newQueryId();
+    }
+
+    /**
+     * Records a new query, setting its id and timestamp. See {@link QueryService#addQuery}.
+     */
+    public void add(Query query) throws ExecutionException, InterruptedException {
+        add(query, queryService.newQueryId());
+    }
+
+    /**
+     * Records a new query under an id from {@link #newQueryId}, for a query that needed its id before it was recorded.
+     */
+    public void add(Query query, String queryId) throws ExecutionException, InterruptedException {
+        query.setId(queryId);
+        query.setTimestamp(Timestamp.now());
+
+        // Stored under the id the caller returns, so later updates of it find the query
+        record(query, false, queryId);
+    }
+
+    /**
+     * Records a query that replaces the stored query with its id, or is stored as a new query if there is none.
+     * A query without an id gets one, as with {@link #add}. See {@link QueryService#addOrUpdateQuery}.
+     */
+    public void addOrUpdate(Query query) throws ExecutionException, InterruptedException {
+        if (query.getId() == null) {
+            add(query);
+            return;
+        }
+
+        record(query, true, queryService.newQueryId());
+    }
+
+    private void record(Query query, boolean update, String newId) throws ExecutionException, InterruptedException {
+        // The caller keeps using its query, so the buffer holds a copy
+        QueryService.HistoryWrite write = new QueryService.HistoryWrite(copyOf(query), update, newId, Timestamp.now());
+
+        if (!buffer.offer(write)) {
+            logger.warn("Query history buffer is full, writing query directly");
+            queryService.writeHistory(List.of(write));
+        }
+    }
+
+    /**
+     * Writes buffered queries to Firestore in batches, oldest first.
+     */
+    @Scheduled(fixedDelayString = "${query-history.flush-interval-ms:500}")
+    public synchronized void flush() {
+        List<FailedBatch> retries = new ArrayList<>(failedBatches);
+        failedBatches.clear();
+        for (FailedBatch failed : retries) {
+            writeBatch(failed.writes(), failed.attempts());
+        }
+
+        while (!buffer.isEmpty()) {
+            List<QueryService.HistoryWrite> batch = new ArrayList<>();
+            buffer.drainTo(batch, QueryService.MAX_BATCH_WRITES);
+            writeBatch(batch, 0);
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+
+        if (!failedBatches.isEmpty()) {
+            int lost = failedBatches.stream().mapToInt(failed -> failed.writes().size()).sum();
+            logger.error("Shutting down with {} queries that could not be written to history", lost);
+        }
+    }
+
+    private void writeBatch(List<QueryService.HistoryWrite> batch, int previousAttempts) {
+        try {
+            queryService.writeHistory(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failedBatches.add(new FailedBatch(batch, previousAttempts));
+        } catch (Exception e) {
+            int attempts = previousAttempts + 1;
+            if (attempts < maxWriteAttempts) {
+                logger.warn("Failed to write {} queries to history, will retry: {}", batch.size(), e.getMessage());
+                failedBatches.add(new FailedBatch(batch, attempts));
+            } else {
+                logger.error("Dropping {} queries after {} failed history writes: {}", batch.size(), attempts, e.getMessage());
+            }
+        }
+    }
+
+    private static Query copyOf(Query query) {
+        Query copy = new Query();
+        copy.setId(query.getId());
+        copy.setUserId(query.getUserId());
+        copy.setProjectId(query.getProjectId());
+        copy.setNlQuery(query.getNlQuery());
+        copy.setSqlQuery(query.getSqlQuery());
+        copy.setStatus(query.getStatus());
+        copy.setTimestamp(query.getTimestamp());
+        return copy;
+    }
+}
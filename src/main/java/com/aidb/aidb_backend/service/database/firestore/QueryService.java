@@ -1,17 +1,26 @@
 package com.aidb.aidb_backend.service.database.firestore;
 
+import com.aidb.aidb_backend.exception.http.BadRequestException;
 import com.aidb.aidb_backend.model.dto.QueryDTO;
+import com.aidb.aidb_backend.model.dto.QueryHistoryPageDTO;
 import com.aidb.aidb_backend.model.firestore.Query;
+import com.aidb.aidb_backend.model.firestore.Status;
 import com.google.api.core.ApiFuture;
 import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ExecutionException;
 
 import static com.google.cloud.firestore.Query.Direction.DESCENDING;
@@ -22,12 +31,24 @@ public class QueryService {
     @Autowired
     private Firestore firestore;
 
+    @Value("${query-history.page-size:50}")
+    private int defaultHistoryPageSize;
+
+    @Value("${query-history.max-page-size:500}")
+    private int maxHistoryPageSize;
+
     private static final Logger logger = LoggerFactory.getLogger(QueryService.class);
 
+    // Firestore's limit on writes in one batch
+    public static final int MAX_BATCH_WRITES = 500;
+
     private static final String QUERY_COLLECTION  = "queries";
     private static final String USER_ID = "userId";
     private static final String PROJECT_ID = "projectId";
     private static final String TIMESTAMP = "timestamp";
+    private static final String NL_QUERY = "nlQuery";
+    private static final String SQL_QUERY = "sqlQuery";
+    private static final String STATUS = "status";
 
     public Query addQuery(Query query) throws ExecutionException, InterruptedException {
         DocumentReference docRef = firestore.collection(QUERY_COLLECTION).document();
@@ -61,6 +82,75 @@ public class QueryService {
         return newDocRef.getId();
     }
 
+    // Generated client-side, so a query's id is known before it is written
+    public String newQueryId() {
+        return firestore.collection(QUERY_COLLECTION).document().getId();
+    }
+
+    /**
+     * A history entry waiting to be written by {@link #writeHistory}.
+     *
+     * @param query      the query to store
+     * @param update     whether the query should replace the existing query with its id, see {@link #addOrUpdateQuery}
+     * @param newId      id the query is stored under when it isn't an update of an existing query
+     * @param recordedAt when the entry was recorded, the timestamp of newly stored queries
+     */
+    public record HistoryWrite(Query query, boolean update, String newId, Timestamp recordedAt) {
+    }
+
+    /**
+     * Writes several history entries in one atomic batch, reading every query to update in one round trip first.
+     * Writes are upserts to ids chosen when the entries were recorded, so retrying a batch never duplicates entries.
+     * An update only replaces a query owned by the same user, one already stored or one earlier in the batch;
+     * otherwise it is stored as a new query, like {@link #addOrUpdateQuery} does for unknown ids.
+     * At most {@link #MAX_BATCH_WRITES} entries fit in one batch.
+     */
+    public void writeHistory(List<HistoryWrite> writes) throws ExecutionException, InterruptedException {
+        if (writes.size() > MAX_BATCH_WRITES) {
+            throw new IllegalArgumentException("At most " + MAX_BATCH_WRITES + " queries can be written in one batch");
+        }
+
+        CollectionReference queries = firestore.collection(QUERY_COLLECTION);
+
+        DocumentReference[] toUpdate = writes.stream()
+                .filter(write -> write.update() && write.query().getId() != null)
+                .map(write -> write.query().getId())
+                .distinct()
+                .map(queries::document)
+                .toArray(DocumentReference[]::new);
+
+        // Owner and timestamp of every query an update may replace
+        Map<String, Query> stored = new HashMap<>();
+        if (toUpdate.length > 0) {
+            for (DocumentSnapshot snapshot : firestore.getAll(toUpdate).get()) {
+                if (snapshot.exists()) {
+                    stored.put(snapshot.getId(), snapshot.toObject(Query.class));
+                }
+            }
+        }
+
+        WriteBatch batch = firestore.batch();
+
+        for (HistoryWrite write : writes) {
+            Query query = write.query();
+            Query existing = write.update() && query.getId() != null ? stored.get(query.getId()) : null;
+
+            if (existing != null && Objects.equals(existing.getUserId(), query.getUserId())) {
+                if (query.getTimestamp() == null) {
+                    query.setTimestamp(existing.getTimestamp());
+                }
+            } else {
+                query.setId(write.newId());
+                query.setTimestamp(write.recordedAt());
+            }
+
+            batch.set(queries.document(query.getId()), query);
+            stored.put(query.getId(), query);
+        }
+
+        batch.commit().get();
+    }
+
     public Query getQueryById(String id) throws ExecutionException, InterruptedException {
         DocumentSnapshot snapshot = firestore.collection(QUERY_COLLECTION).document(id).get().get();
         return snapshot.exists() ? snapshot.toObject(Query.class) : null;
@@ -85,4 +175,95 @@ public class QueryService {
 
         return results;
     }
+
+    /**
+     * One page of a user's query history for a project, newest first.
+     * Pages are read with a cursor on (timestamp, document id), so each page costs one query of at most
+     * {@code pageSize} documents however long the history is. Only the fields the history shows are read.
+     *
+     * @param after    nextCursor of the previous page, null for the first page
+     * @param pageSize queries per page, null for the default page size
+     */
+    public QueryHistoryPageDTO getQueryHistoryPage(String userId, String projectId, String after, Integer pageSize)
+            throws ExecutionException, InterruptedException {
+        int limit = Math.max(1, Math.min(pageSize == null ? defaultHistoryPageSize : pageSize, maxHistoryPageSize));
+
+        com.google.cloud.firestore.Query page = firestore.collection(QUERY_COLLECTION)
+                .whereEqualTo(USER_ID, userId)
+                .whereEqualTo(PROJECT_ID, projectId)
+                .orderBy(TIMESTAMP, DESCENDING)
+                .orderBy(FieldPath.documentId(), DESCENDING)
+                .select(NL_QUERY, SQL_QUERY, STATUS, TIMESTAMP)
+                .limit(limit + 1);
+
+        if (after != null && !after.isBlank()) {
+            HistoryCursor cursor = HistoryCursor.decode(after);
+            page = page.startAfter(cursor.timestamp(), cursor.queryId());
+        }
+
+        List<QueryDocumentSnapshot> documents = page.get().get().getDocuments();
+
+        List<QueryDTO> queries = new ArrayList<>();
+        for (QueryDocumentSnapshot doc : documents.subList(0, Math.min(limit, documents.size()))) {
+            Query query = doc.toObject(Query.class);
+            // Not read, since every query in the page has them
+            query.setUserId(userId);
+            query.setProjectId(projectId);
+            queries.add(new QueryDTO(query));
+        }
+
+        QueryHistoryPageDTO result = new QueryHistoryPageDTO();
+        result.setQueries(queries);
+
+        // The extra document only tells whether there is a next page
+        if (documents.size() > limit) {
+            QueryDocumentSnapshot last = documents.get(limit - 1);
+            result.setNextCursor(new HistoryCursor(last.getTimestamp(TIMESTAMP), last.getId()).encode());
+        }
+
+        return result;
+    }
+
+    // Position after a query in the history, as an opaque URL-safe token
+    private record HistoryCursor(Timestamp timestamp, String queryId) {
+
+        String encode() {
+            String raw = timestamp.getSeconds() + ":" + timestamp.getNanos() + ":" + queryId;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static HistoryCursor decode(String token) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(":", 3);
+                return new HistoryCursor(
+                        Timestamp.ofTimeSecondsAndNanos(Long.parseLong(parts[0]), Integer.parseInt(parts[1])),
+                        parts[2]);
+            } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                throw new BadRequestException("Invalid query history cursor");
+            }
+        }
+    }
+
+    /**
+     * The most recent translations across all users, newest first. Only reads the fields a translation needs.
+     */
+    public List<Query> getRecentTranslations(int limit) throws ExecutionException, InterruptedException {
+        ApiFuture<QuerySnapshot> future = firestore.collection(QUERY_COLLECTION)
+                .orderBy(TIMESTAMP, DESCENDING)
+                .select(USER_ID, PROJECT_ID, NL_QUERY, SQL_QUERY, STATUS)
+                .limit(limit)
+                .get();
+
+        List<Query> results = new ArrayList<>();
+
+        for (QueryDocumentSnapshot doc : future.get().getDocuments()) {
+            Query query = doc.toObject(Query.class);
+            // Executed queries may carry SQL the user edited after translation
+            if (query.getStatus() == Status.TRANSLATED && query.getNlQuery() != null && query.getSqlQuery() != null) {
+                results.add(query);
+            }
+        }
+
+        return results;
+    }
 }
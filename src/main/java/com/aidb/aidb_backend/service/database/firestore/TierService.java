@@ -2,58 +2,118 @@ package com.aidb.aidb_backend.service.database.firestore;
 
 import com.aidb.aidb_backend.model.firestore.Tier;
 import com.aidb.aidb_backend.model.firestore.util.TierId;
-import com.google.api.core.ApiFuture;
 import com.google.cloud.firestore.*;
-import lombok.Setter;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Catalog of tiers, held as an immutable snapshot that is swapped atomically whenever the tiers collection
+ * changes. Loaded at startup and kept current by a Firestore snapshot listener, with a periodic poll
+ * as a fallback in case the listener stops. Lookups never lock or allocate.
+ */
 @Service
 public class TierService {
 
     @Autowired
     private Firestore firestore;
 
-    @Setter
-    private HashMap<TierId, Tier> tierMap;
+    private volatile Map<TierId, Tier> tierMap = Collections.emptyMap();
+
+    private ListenerRegistration tierListener;
 
     private static final Logger logger = LoggerFactory.getLogger(TierService.class);
 
     private static final String TIER_COLLECTION = "tiers";
 
-    public HashMap<TierId, Tier> getTierMap() throws Exception {
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            // Loaded on first lookup instead
+            logger.warn("Failed to load tiers on startup: {}", e.getMessage());
+        }
+
+        tierListener = firestore.collection(TIER_COLLECTION).addSnapshotListener((snapshot, error) -> {
+            if (error != null) {
+                logger.warn("Tier listener failed, falling back to polling: {}", error.getMessage());
+                return;
+            }
+
+            if (snapshot != null) {
+                tierMap = toTierMap(snapshot.getDocuments());
+            }
+        });
+    }
 
-        if (tierMap != null && !tierMap.isEmpty()) {
-            return this.tierMap;
+    @Scheduled(fixedDelayString = "${tiers.refresh-interval-ms:300000}", initialDelayString = "${tiers.refresh-interval-ms:300000}")
+    public void refreshPeriodically() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            logger.warn("Failed to refresh tiers, keeping the current ones: {}", e.getMessage());
         }
+    }
 
-        CollectionReference tierCollection = firestore.collection(TIER_COLLECTION);
-        ApiFuture<QuerySnapshot> querySnapshot = tierCollection.get();
+    @PreDestroy
+    void stopListening() {
+        if (tierListener != null) {
+            tierListener.remove();
+        }
+    }
 
-        List<QueryDocumentSnapshot> documents = querySnapshot.get().getDocuments();
+    /**
+     * Reloads every tier from Firestore and replaces the snapshot in one step.
+     */
+    public Map<TierId, Tier> refresh() throws Exception {
+        List<QueryDocumentSnapshot> documents = firestore.collection(TIER_COLLECTION).get().get().getDocuments();
 
-        tierMap = new HashMap<>();
-        for (DocumentSnapshot doc : documents) {
-            Tier tier = doc.toObject(Tier.class);
-            if (tier != null && tier.getName() != null) {
-                TierId tierId = TierId.valueOf(tier.getName().toUpperCase());
-                tierMap.put(tierId, tier);
-            }
+        Map<TierId, Tier> tiers = toTierMap(documents);
+        tierMap = tiers;
+        return tiers;
+    }
+
+    public Map<TierId, Tier> getTierMap() throws Exception {
+        Map<TierId, Tier> tiers = tierMap;
+
+        if (tiers.isEmpty()) {
+            return refresh();
         }
 
-        return tierMap;
+        return tiers;
     }
 
     public Tier getTier(TierId tierName) throws Exception {
-        HashMap<TierId, Tier> tierMap = getTierMap();
-
-        return tierMap.get(tierName);
+        return getTierMap().get(tierName);
     }
 
+    private static Map<TierId, Tier> toTierMap(List<? extends DocumentSnapshot> documents) {
+        Map<TierId, Tier> tiers = new EnumMap<>(TierId.class);
+        for (DocumentSnapshot doc : documents) {
+            Tier tier = doc.toObject(Tier.class);
+            if (tier == null || tier.getName() == null) {
+                continue;
+            }
+
+            try {
+                tiers.put(TierId.valueOf(tier.getName().toUpperCase()), tier);
+            } catch (IllegalArgumentException e) {
+                logger.warn("Ignoring tier {} with unknown name {}", doc.getId(), tier.getName());
+            }
+        }
+
+        return Collections.unmodifiableMap(tiers);
+    }
 
 }
@@ -0,0 +1,152 @@
+package com.aidb.aidb_backend.service.database.firestore;
+
+import com.aidb.aidb_backend.model.firestore.util.LimitedOperation;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
+
+/**
+ * Decides how many shard documents a user's hottest usage counters are spread over.
+ * <p>
+ * A single Firestore document sustains about one write per second, so once a user's observed write rate
+ * gets close to that, or a write to their usage fails, their query and translation counters are spread over
+ * more shards. Shard counts only ever grow and are stored on the user's usage document, so every instance
+ * picks them up on its next read. A grown count is only written to once it is stored, so no instance writes
+ * to shards the others don't read. Growing is opt-in through {@code usage-shards.enabled}; existing shard
+ * counts are always honored.
+ */
+@Component
+public class UsageCounterShards {
+
+    // Operations counted often enough to need sharding; the others change a few times per month
+    public static final Set<LimitedOperation> SHARDED_OPERATIONS = EnumSet.of(LimitedOperation.QUERY, LimitedOperation.TRANSLATION);
+
+    @Value("${usage-shards.enabled:false}")
+    private boolean enabled;
+
+    @Value("${usage-shards.max-shards:16}")
+    private int maxShards;
+
+    // Sustained writes per second each shard is expected to absorb
+    @Value("${usage-shards.writes-per-shard-per-second:0.5}")
+    private double writesPerShardPerSecond;
+
+    @Value("${usage-shards.rate-window-ms:10000}")
+    private long rateWindowMs;
+
+    LongSupplier clock = System::nanoTime;
+
+    private final Cache<String, Integer> shardCounts = Caffeine.newBuilder()
+            .expireAfterAccess(Duration.ofHours(1))
+            .build();
+
+    // Grown counts whose write to the usage document hasn't succeeded yet
+    private final Cache<String, Integer> unstoredShardCounts = Caffeine.newBuilder()
+            .expireAfterAccess(Duration.ofHours(1))
+            .build();
+
+    private final Cache<String, WriteWindow> writeWindows = Caffeine.newBuilder()
+            .expireAfterAccess(Duration.ofHours(1))
+            .build();
+
+    public static boolean isSharded(LimitedOperation op) {
+        return SHARDED_OPERATIONS.contains(op);
+    }
+
+    /**
+     * Number of shards the user's sharded counters are written to, 0 if they live on the usage document.
+     */
+    public int getShardCount(String userId) {
+        Integer count = shardCounts.getIfPresent(userId);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Remembers the shard count read from the user's usage document. Never lowers a count stored by this instance
+     * that the read doesn't include yet.
+     */
+    public void observeShardCount(String userId, Integer count) {
+        if (count != null && count > 0) {
+            shardCounts.asMap().merge(userId, count, Math::max);
+        }
+    }
+
+    public int pickShard(String userId) {
+        return ThreadLocalRandom.current().nextInt(Math.max(1, getShardCount(userId)));
+    }
+
+    /**
+     * Records a write to the user's usage and returns the shard count to grow to, or null to keep the current one.
+     * The count is used once it has been stored, see {@link #shardCountStored}; until then it is returned again
+     * on every write, so storing it is retried even when the count is already at the maximum.
+     */
+    public Integer recordWrite(String userId, boolean failed) {
+        if (!enabled) {
+            return null;
+        }
+
+        Integer unstored = unstoredShardCounts.getIfPresent(userId);
+        if (unstored != null) {
+            return unstored;
+        }
+
+        int current = getShardCount(userId);
+        if (current >= maxShards) {
+            return null;
+        }
+
+        boolean hot = failed;
+        if (!hot) {
+            WriteWindow window = writeWindows.get(userId, id -> new WriteWindow(clock.getAsLong()));
+            hot = window.record(clock.getAsLong(), rateWindowMs, writesPerShardPerSecond * Math.max(1, current));
+        }
+
+        if (!hot) {
+            return null;
+        }
+
+        int grown = Math.min(maxShards, Math.max(2, current * 2));
+        unstoredShardCounts.put(userId, grown);
+        writeWindows.invalidate(userId);
+        return grown;
+    }
+
+    /**
+     * The grown count is on the user's usage document, so writes can go to the new shards.
+     */
+    public void shardCountStored(String userId, int count) {
+        observeShardCount(userId, count);
+        unstoredShardCounts.asMap().remove(userId, count);
+    }
+
+    private static final class WriteWindow {
+        private long startedAt;
+        private long writes;
+
+        WriteWindow(long startedAt) {
+            this.startedAt = startedAt;
+        }
+
+        // Counts a write and, once the window has elapsed, reports whether its rate exceeded the threshold
+        synchronized boolean record(long now, long windowMs, double maxWritesPerSecond) {
+            writes++;
+
+            long elapsedNanos = now - startedAt;
+            if (elapsedNanos < windowMs * 1_000_000 || elapsedNanos <= 0) {
+                return false;
+            }
+
+            double writesPerSecond = writes * 1_000_000_000.0 / elapsedNanos;
+            startedAt = now;
+            writes = 0;
+            return writesPerSecond > maxWritesPerSecond;
+        }
+    }
+}
@@ -2,18 +2,35 @@ package com.aidb.aidb_backend.service.database.firestore;
 
 import com.aidb.aidb_backend.exception.UserNotFoundException;
 import com.aidb.aidb_backend.exception.http.InternalServerErrorException;
+import com.aidb.aidb_backend.model.firestore.UsageResetCheckpoint;
 import com.aidb.aidb_backend.model.firestore.UserLimitsUsage;
 import com.aidb.aidb_backend.model.firestore.util.LimitedOperation;
+import com.aidb.aidb_backend.model.firestore.util.UsagePeriod;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
 import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.*;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class UserLimitsService {
@@ -21,38 +38,154 @@ public class UserLimitsService {
     @Autowired
     public Firestore firestore;
 
+    @Autowired
+    private UsageCounterShards usageCounterShards;
+
     private final String USER_LIMITS_COLLECTION = "user_limits";
 
+    public static final int MAX_BATCH_WRITES = 500;
+
+    // A user's increments take up to two writes: the usage document and one of its counter shards
+    public static final int MAX_BATCH_USERS = MAX_BATCH_WRITES / 2;
+
+    private static final String USAGE_SHARDS_COLLECTION = "usage_shards";
+
+    private static final String USAGE_PERIOD = "usagePeriod";
+
+    private static final String JOBS_COLLECTION = "scheduled_jobs";
+    private static final String USAGE_RESET_JOB = "monthly_usage_reset";
+
+    @Value("${usage-reset.page-size:500}")
+    private int resetPageSize;
+
+    @Value("${usage-reset.initial-ops-per-second:500}")
+    private int resetInitialOpsPerSecond;
+
+    @Value("${usage-reset.max-ops-per-second:2000}")
+    private int resetMaxOpsPerSecond;
+
+    @Value("${usage-lookup.max-attempts:3}")
+    private int lookupMaxAttempts;
+
+    @Value("${usage-lookup.base-delay-ms:50}")
+    private long lookupBaseDelayMs;
+
+    @Value("${usage-lookup.deadline-ms:500}")
+    private long lookupDeadlineMs;
+
+    @Value("${usage-lookup.negative-cache-ttl-ms:1000}")
+    private long negativeCacheTtlMs;
+
+    // Users whose limits document was recently found missing
+    private Cache<String, Boolean> missingUserLimits;
+
+    private final Map<String, CompletableFuture<DocumentSnapshot>> pendingLookups = new ConcurrentHashMap<>();
+
     private static final Logger logger = LoggerFactory.getLogger(UserLimitsService.class);
 
-    // Get the users limits with exponential backoff delay to prevent race condition
+    @PostConstruct
+    void initCache() {
+        missingUserLimits = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(negativeCacheTtlMs))
+                .maximumSize(100_000)
+                .build();
+    }
+
+    /**
+     * Gets the user's limit usage, rolled over to the current billing period.
+     * A missing document is retried with exponential backoff, since a new user's requests can race the signup
+     * that creates it. Retries are scheduled on a timer rather than sleeping, end at {@code usage-lookup.deadline-ms},
+     * and are shared by every concurrent lookup for the same user. A user found missing stays missing for
+     * {@code usage-lookup.negative-cache-ttl-ms}, so a burst of requests doesn't each run the full backoff.
+     */
     public UserLimitsUsage getUserLimitsById(String id) throws ExecutionException, InterruptedException {
-        int maxRetries = 3;
-        int baseDelayMs = 50; // Start with 50ms
+        DocumentSnapshot snapshot = findUserLimits(id, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lookupDeadlineMs)).get();
 
-        for (int attempt = 0; attempt < maxRetries; attempt++) {
-            try {
-                DocumentSnapshot snapshot = firestore.collection(USER_LIMITS_COLLECTION).document(id).get().get();
+        if (snapshot == null) {
+            logger.warn("User limits not found for id: {}", id);
+            throw new UserNotFoundException("Could not find user limit by id");
+        }
 
-                if (snapshot.exists()) {
-                    return snapshot.toObject(UserLimitsUsage.class);
-                }
+        UserLimitsUsage usage = snapshot.toObject(UserLimitsUsage.class);
+
+        // First touch in a new billing period
+        if (!UsagePeriod.current().equals(usage.getUsagePeriod())) {
+            usage = rollOverUsage(id);
+        }
+
+        return withShardUsage(usage);
+    }
+
+    /**
+     * The user's limits document, or null if it still doesn't exist once retries are used up or the deadline
+     * (a System.nanoTime() value) has passed.
+     */
+    CompletableFuture<DocumentSnapshot> findUserLimits(String id, long deadlineNanos) {
+        if (missingUserLimits.getIfPresent(id) != null) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        CompletableFuture<DocumentSnapshot> lookup = new CompletableFuture<>();
+        CompletableFuture<DocumentSnapshot> inFlight = pendingLookups.putIfAbsent(id, lookup);
+        if (inFlight != null) {
+            return inFlight;
+        }
+
+        readUserLimits(id, 0, deadlineNanos).whenComplete((snapshot, error) -> {
+            // Removed before completing, so lookups arriving afterwards read again
+            pendingLookups.remove(id, lookup);
+
+            if (error != null) {
+                lookup.completeExceptionally(error);
+                return;
+            }
+
+            if (snapshot == null) {
+                missingUserLimits.put(id, Boolean.TRUE);
+            }
+            lookup.complete(snapshot);
+        });
+
+        return lookup;
+    }
+
+    private CompletableFuture<DocumentSnapshot> readUserLimits(String id, int attempt, long deadlineNanos) {
+        return toCompletableFuture(firestore.collection(USER_LIMITS_COLLECTION).document(id).get())
+                .thenCompose(snapshot -> {
+                    if (snapshot.exists()) {
+                        return CompletableFuture.completedFuture(snapshot);
+                    }
+
+                    // Exponential backoff: 50ms, 100ms, 200ms with the defaults
+                    long delayMs = lookupBaseDelayMs << attempt;
+                    if (attempt + 1 >= lookupMaxAttempts
+                            || System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs) > deadlineNanos) {
+                        return CompletableFuture.completedFuture(null);
+                    }
 
-                // If document doesn't exist and we have retries left, wait and try again
-                if (attempt < maxRetries - 1) {
-                    int delayMs = baseDelayMs * (int) Math.pow(2, attempt); // Exponential backoff: 50ms, 100ms, 200ms
-                    Thread.sleep(delayMs);
                     logger.debug("User limits not found for id: {}, retrying in {}ms (attempt {}/{})",
-                            id, delayMs, attempt + 1, maxRetries);
-                }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw e;
+                            id, delayMs, attempt + 1, lookupMaxAttempts);
+
+                    Executor delayed = CompletableFuture.delayedExecutor(delayMs, TimeUnit.MILLISECONDS);
+                    return CompletableFuture.supplyAsync(() -> attempt + 1, delayed)
+                            .thenCompose(next -> readUserLimits(id, next, deadlineNanos));
+                });
+    }
+
+    private static <T> CompletableFuture<T> toCompletableFuture(ApiFuture<T> apiFuture) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        ApiFutures.addCallback(apiFuture, new ApiFutureCallback<>() {
+            @Override
+            public void onFailure(Throwable t) {
+                future.completeExceptionally(t);
             }
-        }
 
-        logger.warn("User limits not found after {} attempts for id: {}", maxRetries, id);
-        throw new UserNotFoundException("Could not find user limit by id");
+            @Override
+            public void onSuccess(T result) {
+                future.complete(result);
+            }
+        }, Runnable::run);
+        return future;
     }
 
     public String addUserLimits(UserLimitsUsage userLimitsUsage) throws ExecutionException, InterruptedException {
@@ -77,53 +210,304 @@ public class UserLimitsService {
         // Write to Firestore
         ApiFuture<WriteResult> future = docRef.set(userLimitsUsage);
         future.get();
+        missingUserLimits.invalidate(userLimitsUsage.getId());
 
         return docRef.getId();
     }
 
-    public Long updateLimitUsage(String userId, LimitedOperation operation, int opIncrementVal) {
+    /**
+     * Starts the current billing period for a user whose usage document belongs to an earlier one.
+     * Runs in a transaction so concurrent first touches, on any instance, roll the counters over only once.
+     */
+    private UserLimitsUsage rollOverUsage(String userId) throws ExecutionException, InterruptedException {
         DocumentReference docRef = firestore.collection(USER_LIMITS_COLLECTION).document(userId);
 
+        return firestore.runTransaction((Transaction.Function<UserLimitsUsage>) transaction -> {
+            UserLimitsUsage usage = transaction.get(docRef).get().toObject(UserLimitsUsage.class);
+
+            Map<String, Object> updates = rollOver(usage);
+            if (!updates.isEmpty()) {
+                updates.put("lastUpdated", FieldValue.serverTimestamp());
+                transaction.update(docRef, updates);
+            }
+
+            return usage;
+        }).get();
+    }
+
+    /**
+     * Moves the usage to the current billing period if it belongs to an earlier one, zeroing the counters
+     * that reset monthly. Returns the field updates that persist the change, empty if it is already current.
+     */
+    private Map<String, Object> rollOver(UserLimitsUsage usage) {
+        Map<String, Object> updates = new HashMap<>();
+        String period = UsagePeriod.current();
+
+        if (period.equals(usage.getUsagePeriod())) {
+            return updates;
+        }
+
+        // Documents from before billing periods were tracked were reset in bulk and already hold this period's usage
+        if (usage.getUsagePeriod() != null) {
+            for (LimitedOperation op : LimitedOperation.values()) {
+                if (op.isResetMonthly()) {
+                    usage.setUsage(op, 0L);
+                    updates.put(op.getUsageFieldName(), 0L);
+                }
+            }
+        }
+
+        usage.setUsagePeriod(period);
+        updates.put(USAGE_PERIOD, period);
+
+        return updates;
+    }
+
+    /**
+     * Applies usage deltas for several users in one atomic batch of server-side increments, folding each user's
+     * operations together. Unlike a read-modify-write transaction, concurrent updates for the same user never
+     * contend or retry. Doesn't roll counters over to a new billing period, so the users should have been read
+     * with {@link #getUserLimitsById} in the current period.
+     * Either every increment is written or none is. At most {@link #MAX_BATCH_USERS} users fit in one batch.
+     */
+    public void incrementUsage(Map<String, Map<LimitedOperation, Long>> deltasByUserId) throws ExecutionException, InterruptedException {
+        if (deltasByUserId.size() > MAX_BATCH_USERS) {
+            throw new IllegalArgumentException("At most " + MAX_BATCH_USERS + " users can be updated in one batch");
+        }
+
+        String period = UsagePeriod.current();
+        WriteBatch batch = firestore.batch();
+
+        deltasByUserId.forEach((userId, deltas) -> addIncrements(batch, userId, deltas, period));
+
         try {
-            return firestore.runTransaction((Transaction.Function<Long>) transaction -> {
-                DocumentSnapshot snapshot = transaction.get(docRef).get();
+            batch.commit().get();
+        } catch (ExecutionException e) {
+            // Only a single-user batch tells which document couldn't keep up
+            if (deltasByUserId.size() == 1) {
+                deltasByUserId.keySet().forEach(userId -> growShards(userId, usageCounterShards.recordWrite(userId, true)));
+            }
+            throw e;
+        }
 
-                Long curUsage = snapshot.getLong(operation.getUsageFieldName());
-                Long updatedUsage = curUsage == null ? (long) opIncrementVal : curUsage + opIncrementVal;
+        deltasByUserId.keySet().forEach(userId -> growShards(userId, usageCounterShards.recordWrite(userId, false)));
+    }
 
-                transaction.update(docRef,
-                        operation.getUsageFieldName(), updatedUsage,
-                        "lastUpdated", FieldValue.serverTimestamp()
-                );
+    /**
+     * Adds a user's increments to the batch. Sharded counters go to one of the user's shards for the period,
+     * the rest to the usage document, which isn't written at all when every delta is sharded.
+     */
+    private void addIncrements(WriteBatch batch, String userId, Map<LimitedOperation, Long> deltas, String period) {
+        Map<LimitedOperation, Long> documentDeltas = documentDeltas(userId, deltas);
+        Map<LimitedOperation, Long> shardDeltas = new EnumMap<>(LimitedOperation.class);
+        deltas.forEach((op, delta) -> {
+            if (!documentDeltas.containsKey(op)) {
+                shardDeltas.put(op, delta);
+            }
+        });
 
-                return updatedUsage;
-            }).get();
-        } catch (Exception e) {
-            logger.error("Graceful error occurred while updating limit usage: {}", e.getMessage());
-            return null;
+        DocumentReference docRef = firestore.collection(USER_LIMITS_COLLECTION).document(userId);
+
+        if (!documentDeltas.isEmpty()) {
+            batch.update(docRef, incrementFields(documentDeltas));
+        }
+
+        if (!shardDeltas.isEmpty()) {
+            Map<String, Object> fields = incrementFields(shardDeltas);
+            fields.put(USAGE_PERIOD, period);
+
+            // Shards are created on first write; merge keeps the other counters
+            DocumentReference shardRef = docRef.collection(USAGE_SHARDS_COLLECTION)
+                    .document(period + "_" + usageCounterShards.pickShard(userId));
+            batch.set(shardRef, fields, SetOptions.merge());
+        }
+    }
+
+    private Map<LimitedOperation, Long> documentDeltas(String userId, Map<LimitedOperation, Long> deltas) {
+        boolean sharded = usageCounterShards.getShardCount(userId) > 0;
+
+        Map<LimitedOperation, Long> documentDeltas = new EnumMap<>(LimitedOperation.class);
+        deltas.forEach((op, delta) -> {
+            if (!sharded || !UsageCounterShards.isSharded(op)) {
+                documentDeltas.put(op, delta);
+            }
+        });
+        return documentDeltas;
+    }
+
+    private Map<String, Object> incrementFields(Map<LimitedOperation, Long> deltas) {
+        Map<String, Object> updates = new HashMap<>();
+        deltas.forEach((operation, delta) -> updates.put(operation.getUsageFieldName(), FieldValue.increment(delta)));
+        updates.put("lastUpdated", FieldValue.serverTimestamp());
+        return updates;
+    }
+
+    /**
+     * Adds the user's counter shards for the usage's billing period to the counters on the usage document.
+     * Shards from earlier periods are ignored, so they never need to be reset.
+     */
+    private UserLimitsUsage withShardUsage(UserLimitsUsage usage) throws ExecutionException, InterruptedException {
+        usageCounterShards.observeShardCount(usage.getId(), usage.getUsageShardCount());
+        if (usageCounterShards.getShardCount(usage.getId()) == 0) {
+            return usage;
+        }
+
+        List<QueryDocumentSnapshot> shards = firestore.collection(USER_LIMITS_COLLECTION).document(usage.getId())
+                .collection(USAGE_SHARDS_COLLECTION)
+                .whereEqualTo(USAGE_PERIOD, usage.getUsagePeriod())
+                .get().get().getDocuments();
+
+        for (QueryDocumentSnapshot shard : shards) {
+            for (LimitedOperation op : UsageCounterShards.SHARDED_OPERATIONS) {
+                Long shardUsage = shard.getLong(op.getUsageFieldName());
+                if (shardUsage != null) {
+                    Long usageOnDocument = usage.getUsage(op);
+                    usage.setUsage(op, usageOnDocument == null ? shardUsage : usageOnDocument + shardUsage);
+                }
+            }
+        }
+
+        return usage;
+    }
+
+    // Persists a grown shard count, then starts writing to the new shards; other instances pick it up on their next read
+    private void growShards(String userId, Integer shardCount) {
+        if (shardCount == null) {
+            return;
+        }
+
+        try {
+            firestore.collection(USER_LIMITS_COLLECTION).document(userId).update("usageShardCount", shardCount).get();
+            usageCounterShards.shardCountStored(userId, shardCount);
+            logger.info("Spread usage counters of user {} over {} shards", userId, shardCount);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Not used until stored; the write is retried after the user's next usage write
+            logger.warn("Failed to store usage shard count for user {}: {}", userId, e.getMessage());
         }
     }
 
     /**
-     * Resets usage fields for all users and updates lastUpdated timestamp.
-     * Data limit is not reset
+     * Resets usage fields for all users for a billing period and updates their lastUpdated timestamp.
+     * Data limit is not reset.
+     * Not needed while usage rolls over lazily on first touch in a new period (see {@link #getUserLimitsById});
+     * only scheduled when {@code usage-reset.bulk.enabled} is set.
+     * Users are read one page at a time by document id, and written through a rate-limited BulkWriter that
+     * ramps up within Firestore's traffic guidelines and retries failed writes. Progress is checkpointed after
+     * every page, so calling this again for the same period resumes after the last completed page,
+     * and a completed period is never reset twice.
      * This method should only be called from scheduled reset.
+     *
+     * @return number of users reset by this call
      */
-    public void resetUsageForAllUsers(Timestamp now) throws Exception {
-        ApiFuture<QuerySnapshot> query = firestore.collection(USER_LIMITS_COLLECTION).get();
-        List<QueryDocumentSnapshot> documents = query.get().getDocuments();
+    public long resetUsageForAllUsers(String period, Timestamp now) throws Exception {
+        DocumentReference checkpointRef = firestore.collection(JOBS_COLLECTION).document(USAGE_RESET_JOB);
+        UsageResetCheckpoint checkpoint = startOrResumeReset(checkpointRef, period, now);
+
+        if (checkpoint.isCompleted()) {
+            return 0;
+        }
+
+        String lastDocumentId = checkpoint.getLastDocumentId();
+        long resetCount = checkpoint.getResetCount();
+        long resetByThisCall = 0;
+
+        BulkWriter bulkWriter = firestore.bulkWriter(BulkWriterOptions.builder()
+                .setInitialOpsPerSecond(resetInitialOpsPerSecond)
+                .setMaxOpsPerSecond(resetMaxOpsPerSecond)
+                .build());
+
+        try {
+            while (true) {
+                Query page = firestore.collection(USER_LIMITS_COLLECTION)
+                        .orderBy(FieldPath.documentId())
+                        .select(FieldPath.documentId())
+                        .limit(resetPageSize);
+                if (lastDocumentId != null) {
+                    page = page.startAfter(lastDocumentId);
+                }
 
-        for (QueryDocumentSnapshot doc : documents) {
-            UserLimitsUsage usage = doc.toObject(UserLimitsUsage.class);
-            usage.setQueryLimitUsage(0L);
-            usage.setTranslationLimitUsage(0L);
-            usage.setProjectLimitUsage(0L);
-            usage.setLastUpdated(now);
+                List<QueryDocumentSnapshot> documents = page.get().get().getDocuments();
+                if (documents.isEmpty()) {
+                    break;
+                }
+
+                List<ApiFuture<WriteResult>> writes = new ArrayList<>(documents.size());
+                for (QueryDocumentSnapshot doc : documents) {
+                    // update rather than set, so concurrent changes to other fields aren't overwritten
+                    writes.add(bulkWriter.update(doc.getReference(), resetFields(period, now)));
+                }
+                bulkWriter.flush().get();
+
+                // Writes still failing after BulkWriter's retries throw here, leaving the checkpoint before this page
+                for (ApiFuture<WriteResult> write : writes) {
+                    write.get();
+                }
+
+                lastDocumentId = documents.get(documents.size() - 1).getId();
+                resetCount += documents.size();
+                resetByThisCall += documents.size();
+                checkpointRef.update(
+                        "lastDocumentId", lastDocumentId,
+                        "resetCount", resetCount,
+                        "updatedAt", FieldValue.serverTimestamp()).get();
+
+                if (documents.size() < resetPageSize) {
+                    break;
+                }
+            }
 
-            firestore.collection(USER_LIMITS_COLLECTION)
-                    .document(usage.getId())
-                    .set(usage);
+            checkpointRef.update(
+                    "completed", true,
+                    "updatedAt", FieldValue.serverTimestamp()).get();
+        } finally {
+            bulkWriter.close();
         }
+
+        logger.info("Reset usage for {} users for period {} ({} total)", resetByThisCall, period, resetCount);
+        return resetByThisCall;
+    }
+
+    private Map<String, Object> resetFields(String period, Timestamp now) {
+        Map<String, Object> fields = new HashMap<>();
+        for (LimitedOperation op : LimitedOperation.values()) {
+            if (op.isResetMonthly()) {
+                fields.put(op.getUsageFieldName(), 0L);
+            }
+        }
+        fields.put(USAGE_PERIOD, period);
+        fields.put("lastUpdated", now);
+        return fields;
+    }
+
+    /**
+     * Period of a reset that was started but hasn't completed, or null if there is none.
+     */
+    public String getIncompleteResetPeriod() throws ExecutionException, InterruptedException {
+        DocumentSnapshot snapshot = firestore.collection(JOBS_COLLECTION).document(USAGE_RESET_JOB).get().get();
+        if (!snapshot.exists()) {
+            return null;
+        }
+
+        UsageResetCheckpoint checkpoint = snapshot.toObject(UsageResetCheckpoint.class);
+        return checkpoint == null || checkpoint.isCompleted() ? null : checkpoint.getPeriod();
+    }
+
+    private UsageResetCheckpoint startOrResumeReset(DocumentReference checkpointRef, String period, Timestamp now)
+            throws ExecutionException, InterruptedException {
+        return firestore.runTransaction((Transaction.Function<UsageResetCheckpoint>) transaction -> {
+            DocumentSnapshot snapshot = transaction.get(checkpointRef).get();
+            UsageResetCheckpoint checkpoint = snapshot.exists() ? snapshot.toObject(UsageResetCheckpoint.class) : null;
+
+            if (checkpoint != null && period.equals(checkpoint.getPeriod())) {
+                return checkpoint;
+            }
+
+            checkpoint = UsageResetCheckpoint.start(period, now);
+            transaction.set(checkpointRef, checkpoint);
+            return checkpoint;
+        }).get();
     }
 
 }
@@ -0,0 +1,369 @@
+package com.aidb.aidb_backend.service.database.firestore;
+
+import com.aidb.aidb_backend.model.firestore.UserLimitsUsage;
+import com.aidb.aidb_backend.model.firestore.util.LimitedOperation;
+import com.aidb.aidb_backend.model.firestore.util.UsagePeriod;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * In-memory view of every active user's limit usage, so limited requests are checked and counted without
+ * a Firestore round trip.
+ * <p>
+ * Each user's usage is a Firestore baseline plus the increments recorded here that haven't been written yet.
+ * Baselines are reloaded once they are older than {@code usage-ledger.max-staleness-ms}, which is how usage
+ * recorded by other instances becomes visible, and as soon as a new billing period starts. Pending increments
+ * are flushed every {@code usage-ledger.flush-interval-ms} as batched server-side increments, so concurrent
+ * instances never overwrite each other. Monthly increments still unwritten when a billing period ends are dropped
+ * rather than charged to the next period. After a restart the ledger starts empty and reloads from Firestore; only increments
+ * from the last flush interval before a crash can be lost, and a graceful shutdown flushes them.
+ */
+@Service
+public class UserUsageLedger {
+
+    @Autowired
+    UserLimitsService userLimitsService;
+
+    @Value("${usage-ledger.max-staleness-ms:5000}")
+    long maxStalenessMs;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private static final Logger logger = LoggerFactory.getLogger(UserUsageLedger.class);
+
+    /**
+     * The user's usage including increments that haven't been flushed yet. Only reads Firestore when the
+     * user's baseline is missing or stale.
+     */
+    public UserLimitsUsage getUsage(String userId) throws ExecutionException, InterruptedException {
+        while (true) {
+            Entry entry = entries.computeIfAbsent(userId, id -> new Entry());
+
+            synchronized (entry) {
+                if (entry.retired) {
+                    continue;
+                }
+
+                loadIfNeeded(userId, entry);
+                return entry.snapshot();
+            }
+        }
+    }
+
+    /**
+     * Checks and reserves usage in one step, so concurrent requests can't both pass the limit.
+     * Returns the user's resulting usage for the operation including every open reservation, or null, with nothing
+     * reserved, if that would exceed the limit. A null limit means unlimited. Only reads Firestore when the user's
+     * baseline is missing or stale. The reservation must be settled with {@link #commit} or {@link #release}.
+     */
+    public Long reserve(String userId, LimitedOperation op, long amount, Long limit) throws ExecutionException, InterruptedException {
+        while (true) {
+            Entry entry = entries.computeIfAbsent(userId, id -> new Entry());
+
+            synchronized (entry) {
+                if (entry.retired) {
+                    continue;
+                }
+
+                loadIfNeeded(userId, entry);
+
+                Long usage = entry.usage(op);
+                long reservedUsage = (usage == null ? 0 : usage) + amount;
+                if (limit != null && reservedUsage > limit) {
+                    return null;
+                }
+
+                entry.reserved.merge(op, amount, Long::sum);
+                return reservedUsage;
+            }
+        }
+    }
+
+    /**
+     * Turns a reservation into recorded usage, see {@link #record}.
+     */
+    public Long commit(String userId, LimitedOperation op, long amount) {
+        while (true) {
+            Entry entry = entries.computeIfAbsent(userId, id -> new Entry());
+
+            synchronized (entry) {
+                if (entry.retired) {
+                    continue;
+                }
+
+                entry.unreserve(op, amount);
+                entry.pending.merge(op, amount, Long::sum);
+                return entry.usage(op);
+            }
+        }
+    }
+
+    /**
+     * Gives back a reservation whose action didn't go through.
+     */
+    public void release(String userId, LimitedOperation op, long amount) {
+        Entry entry = entries.get(userId);
+        if (entry == null) {
+            return;
+        }
+
+        synchronized (entry) {
+            entry.unreserve(op, amount);
+        }
+    }
+
+    private void loadIfNeeded(String userId, Entry entry) throws ExecutionException, InterruptedException {
+        if (!entry.needsReload(System.nanoTime(), maxStalenessMs)) {
+            return;
+        }
+
+        try {
+            entry.reload(userLimitsService.getUserLimitsById(userId), System.nanoTime());
+        } catch (RuntimeException | ExecutionException | InterruptedException e) {
+            if (entry.isEmpty()) {
+                retire(userId, entry);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Records usage locally and returns the user's resulting usage for the operation,
+     * or null if the user's baseline isn't loaded. The increment is written to Firestore by the next flush.
+     */
+    public Long record(String userId, LimitedOperation op, long increment) {
+        while (true) {
+            Entry entry = entries.computeIfAbsent(userId, id -> new Entry());
+
+            synchronized (entry) {
+                if (entry.retired) {
+                    continue;
+                }
+
+                entry.pending.merge(op, increment, Long::sum);
+                return entry.usage(op);
+            }
+        }
+    }
+
+    /**
+     * Forces every baseline to be reloaded on next use, e.g. after usage was reset in Firestore.
+     * Pending increments are kept.
+     */
+    public void invalidateAll() {
+        entries.values().forEach(entry -> {
+            synchronized (entry) {
+                entry.loadedAt = null;
+            }
+        });
+    }
+
+    /**
+     * Writes pending increments to Firestore in batches and drops idle users from memory.
+     * Increments from a batch that fails are kept and retried on the next flush.
+     */
+    @Scheduled(fixedDelayString = "${usage-ledger.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        long now = System.nanoTime();
+        Map<String, Map<LimitedOperation, Long>> batch = new LinkedHashMap<>();
+
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            String userId = e.getKey();
+            Entry entry = e.getValue();
+
+            synchronized (entry) {
+                // Flushed increments land in the current period, so usage counted in an earlier one can't be written
+                entry.dropPendingFromEarlierPeriod(UsagePeriod.current());
+
+                if (!entry.pending.isEmpty()) {
+                    entry.inFlight.putAll(entry.pending);
+                    entry.pending.clear();
+                    batch.put(userId, new EnumMap<>(entry.inFlight));
+                } else if (entry.isEmpty() && entry.needsReload(now, maxStalenessMs)) {
+                    // Idle and stale; keeping a fresh baseline saves the next request a Firestore read
+                    retire(userId, entry);
+                }
+            }
+
+            if (batch.size() == UserLimitsService.MAX_BATCH_USERS) {
+                writeBatch(batch);
+                batch = new LinkedHashMap<>();
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            writeBatch(batch);
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+
+    private void writeBatch(Map<String, Map<LimitedOperation, Long>> batch) {
+        try {
+            userLimitsService.incrementUsage(batch);
+            batch.keySet().forEach(userId -> settle(userId, true));
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            batch.keySet().forEach(userId -> settle(userId, false));
+            return;
+        } catch (Exception e) {
+            logger.warn("Failed to flush usage for {} users: {}", batch.size(), e.getMessage());
+        }
+
+        if (batch.size() == 1) {
+            batch.keySet().forEach(userId -> settle(userId, false));
+            return;
+        }
+
+        // One bad document fails the whole batch, so retry users one by one to isolate it
+        List<String> userIds = new ArrayList<>(batch.keySet());
+        for (String userId : userIds) {
+            writeBatch(Map.of(userId, batch.get(userId)));
+        }
+    }
+
+    private void settle(String userId, boolean committed) {
+        Entry entry = entries.get(userId);
+        if (entry == null) {
+            return;
+        }
+
+        synchronized (entry) {
+            if (committed) {
+                entry.applyToBaseline(entry.inFlight);
+            } else {
+                entry.inFlight.forEach((op, delta) -> entry.pending.merge(op, delta, Long::sum));
+            }
+            entry.inFlight.clear();
+        }
+    }
+
+    private void retire(String userId, Entry entry) {
+        entry.retired = true;
+        entries.remove(userId, entry);
+    }
+
+    private static final class Entry {
+        private UserLimitsUsage baseline;
+
+        // System.nanoTime() of the last baseline load, null when the baseline must be reloaded
+        private Long loadedAt;
+
+        // Recorded locally, not yet sent to Firestore
+        private final Map<LimitedOperation, Long> pending = new EnumMap<>(LimitedOperation.class);
+
+        // Sent to Firestore by the current flush, not yet acknowledged
+        private final Map<LimitedOperation, Long> inFlight = new EnumMap<>(LimitedOperation.class);
+
+        // Reserved by requests still running, neither recorded nor released yet
+        private final Map<LimitedOperation, Long> reserved = new EnumMap<>(LimitedOperation.class);
+
+        // Removed from the ledger; callers holding it must look the user up again
+        private boolean retired;
+
+        boolean needsReload(long now, long maxStalenessMs) {
+            if (baseline == null) {
+                return true;
+            }
+
+            // A read racing an unacknowledged flush may or may not include it, so wait for the flush to settle
+            if (!inFlight.isEmpty()) {
+                return false;
+            }
+
+            // A new billing period has started; reloading rolls the user's counters over
+            if (!UsagePeriod.current().equals(baseline.getUsagePeriod())) {
+                return true;
+            }
+
+            return loadedAt == null || now - loadedAt > maxStalenessMs * 1_000_000;
+        }
+
+        void reload(UserLimitsUsage usage, long now) {
+            dropPendingFromEarlierPeriod(usage.getUsagePeriod());
+            baseline = usage;
+            // A baseline read during a flush is reloaded again once the flush has settled
+            loadedAt = inFlight.isEmpty() ? now : null;
+        }
+
+        /**
+         * Drops pending increments of counters that reset monthly if they were counted against a baseline from
+         * before the given period. They belong to a month that is over, and writing them would charge it
+         * to the new one. Data rows carry over between periods, so their increments are kept.
+         */
+        void dropPendingFromEarlierPeriod(String period) {
+            if (baseline == null || period == null || period.equals(baseline.getUsagePeriod())) {
+                return;
+            }
+
+            pending.keySet().removeIf(LimitedOperation::isResetMonthly);
+        }
+
+        // Entries with open reservations are never retired, so their reservations stay counted
+        boolean isEmpty() {
+            return pending.isEmpty() && inFlight.isEmpty() && reserved.isEmpty();
+        }
+
+        void unreserve(LimitedOperation op, long amount) {
+            reserved.computeIfPresent(op, (k, v) -> v > amount ? v - amount : null);
+        }
+
+        void applyToBaseline(Map<LimitedOperation, Long> deltas) {
+            if (baseline == null) {
+                return;
+            }
+
+            deltas.forEach((op, delta) -> baseline.setUsage(op, add(baseline.getUsage(op), delta)));
+        }
+
+        Long usage(LimitedOperation op) {
+            if (baseline == null) {
+                return null;
+            }
+
+            return add(add(add(baseline.getUsage(op), inFlight.get(op)), pending.get(op)), reserved.get(op));
+        }
+
+        UserLimitsUsage snapshot() {
+            UserLimitsUsage usage = new UserLimitsUsage();
+            usage.setId(baseline.getId());
+            usage.setTierId(baseline.getTierId());
+            usage.setCreatedAt(baseline.getCreatedAt());
+            usage.setLastUpdated(baseline.getLastUpdated());
+
+            usage.setUsagePeriod(baseline.getUsagePeriod());
+            usage.setUsageShardCount(baseline.getUsageShardCount());
+
+            for (LimitedOperation op : LimitedOperation.values()) {
+                usage.setUsage(op, usage(op));
+            }
+
+            return usage;
+        }
+
+        private static Long add(Long usage, Long delta) {
+            if (delta == null) {
+                return usage;
+            }
+
+            return usage == null ? delta : usage + delta;
+        }
+    }
+}
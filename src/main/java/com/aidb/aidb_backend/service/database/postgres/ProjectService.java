@@ -83,6 +83,8 @@ public class ProjectService {
 
         // Finally, delete the row
         projectRepository.deleteById(projectId);
+
+        tableMetadataService.invalidateTableNameMapping(projectId);
     }
 
 
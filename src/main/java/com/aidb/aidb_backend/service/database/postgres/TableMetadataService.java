@@ -1,15 +1,29 @@
 package com.aidb.aidb_backend.service.database.postgres;
 
 import com.aidb.aidb_backend.exception.TableNotFoundException;
+import com.aidb.aidb_backend.model.dto.TableNameDTO;
+import com.aidb.aidb_backend.model.dto.TableRowsDTO;
+import com.aidb.aidb_backend.model.postgres.ColumnMetadata;
 import com.aidb.aidb_backend.model.postgres.TableMetadata;
 import com.aidb.aidb_backend.repository.ColumnMetadataRepository;
+import com.aidb.aidb_backend.repository.DynamicTableRepository;
 import com.aidb.aidb_backend.repository.ProjectRepository;
 import com.aidb.aidb_backend.repository.TableMetadataRepository;
+import com.aidb.aidb_backend.service.database.postgres.user_created_tables.QueryResultCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -30,18 +44,138 @@ public class TableMetadataService {
     @Autowired
     private ProjectRepository projectRepository;
 
+    @Autowired
+    private DynamicTableRepository dynamicTableRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private QueryResultCache queryResultCache;
+
+    @Value("${table-rows.page-size:500}")
+    private int defaultRowsPageSize;
+
+    @Value("${table-rows.max-page-size:5000}")
+    private int maxRowsPageSize;
+
+    @Value("${table-name-mapping.cache.max-size:10000}")
+    private long mappingCacheMaxSize;
+
+    @Value("${table-name-mapping.cache.ttl-minutes:30}")
+    private long mappingCacheTtlMinutes;
+
+    private Cache<MappingKey, ProjectTables> tableNameMappingCache;
+
+    private record MappingKey(String userId, Long projectId) {
+    }
+
+    private record ProjectTables(Map<String, String> tableNameMapping, List<Long> tableIds) {
+    }
+
+    @PostConstruct
+    void initCache() {
+        tableNameMappingCache = Caffeine.newBuilder()
+                .maximumSize(mappingCacheMaxSize)
+                .expireAfterWrite(Duration.ofMinutes(mappingCacheTtlMinutes))
+                .recordStats()
+                .build();
+
+        // Publishes cache.gets{result=hit|miss}, cache.size and cache.evictions
+        CaffeineCacheMetrics.monitor(meterRegistry, tableNameMappingCache, "tableNameMapping");
+    }
+
     public Set<String> getTableNames(String userId, Long projectId) {
         return tableMetadataRepository.findTableDisplayNames(userId, projectId);
     }
 
+    /**
+     * Display name to physical table name for a project. Served from memory in the common case;
+     * uploads and deletes invalidate the project's entry.
+     */
     public Map<String, String> getTableNameMapping(String userId, Long projectId) {
-        List<TableMetadata> tables = tableMetadataRepository.findByProject_IdAndUserId(projectId, userId);
+        return getProjectTables(userId, projectId).tableNameMapping();
+    }
+
+    /**
+     * Ids of the project's table metadata, in ascending order. Every upload saves metadata with a new id,
+     * so the ids change whenever a table's columns or data may have, even if its display and physical names don't.
+     * Cached and invalidated together with the table name mapping.
+     */
+    public List<Long> getTableIds(String userId, Long projectId) {
+        return getProjectTables(userId, projectId).tableIds();
+    }
 
-        return tables.stream()
-                .collect(Collectors.toMap(
-                        TableMetadata::getDisplayName,
-                        TableMetadata::getTableName
+    private ProjectTables getProjectTables(String userId, Long projectId) {
+        return tableNameMappingCache.get(new MappingKey(userId, projectId),
+                key -> loadProjectTables(key.userId(), key.projectId()));
+    }
+
+    private ProjectTables loadProjectTables(String userId, Long projectId) {
+        List<TableNameDTO> tables = tableMetadataRepository.findTableNameDTOs(projectId, userId);
+
+        Map<String, String> tableNameMapping = tables.stream()
+                .collect(Collectors.toUnmodifiableMap(
+                        TableNameDTO::getDisplayName,
+                        TableNameDTO::getTableName
                 ));
+        List<Long> tableIds = tableMetadataRepository.findIdsByProjectIdAndUserId(projectId, userId).stream()
+                .sorted()
+                .toList();
+
+        return new ProjectTables(tableNameMapping, tableIds);
+    }
+
+    /**
+     * Drops the cached mapping for a project whose tables changed.
+     * Also drops it again after the surrounding transaction commits, so a mapping read
+     * by a concurrent request before the commit doesn't stay cached.
+     */
+    public void invalidateTableNameMapping(Long projectId) {
+        invalidateNowAndAfterCommit(() ->
+                tableNameMappingCache.asMap().keySet().removeIf(key -> key.projectId().equals(projectId)));
+    }
+
+    private void invalidateTableNameMappingContaining(String tableName) {
+        invalidateNowAndAfterCommit(() ->
+                tableNameMappingCache.asMap().values().removeIf(tables -> tables.tableNameMapping().containsValue(tableName)));
+    }
+
+    private void invalidateNowAndAfterCommit(Runnable invalidation) {
+        invalidation.run();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidation.run();
+                }
+            });
+        }
+    }
+
+    /**
+     * One page of a table's rows, ordered by the table's id column.
+     * @param afterId cursor returned with the previous page, null for the first page
+     * @param pageSize rows per page, null for the default page size
+     */
+    @Transactional(readOnly = true)
+    public TableRowsDTO getTableRows(String userId, Long projectId, Long tableId, Long afterId, Integer pageSize) {
+        // Verify ownership
+        TableMetadata table = tableMetadataRepository.findByIdAndProject_IdAndUserId(tableId, projectId, userId)
+                .orElseThrow(TableNotFoundException::new);
+
+        List<String> columnNames = table.getColumns().stream()
+                .map(ColumnMetadata::getName)
+                .toList();
+
+        int limit = Math.max(1, Math.min(pageSize == null ? defaultRowsPageSize : pageSize, maxRowsPageSize));
+
+        TableRowsDTO page = dynamicTableRepository.fetchRowsPage(table.getTableName(), columnNames,
+                afterId == null ? 0L : afterId, limit);
+        page.setTableId(String.valueOf(tableId));
+
+        return page;
     }
 
     @Transactional
@@ -75,5 +209,8 @@ public class TableMetadataService {
 
         // Delete table metadata row
         tableMetadataRepository.deleteById(tableId);
+
+        invalidateTableNameMappingContaining(tableName);
+        queryResultCache.invalidateTable(tableName);
     }
 }
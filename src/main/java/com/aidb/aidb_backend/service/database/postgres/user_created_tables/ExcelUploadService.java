@@ -9,6 +9,7 @@ import com.aidb.aidb_backend.model.postgres.ColumnMetadata;
 
 import com.aidb.aidb_backend.repository.TableMetadataRepository;
 import com.aidb.aidb_backend.repository.ColumnMetadataRepository;
+import com.aidb.aidb_backend.service.database.postgres.TableMetadataService;
 import com.aidb.aidb_backend.service.util.sql.SnowflakeIdGenerator;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,8 +20,6 @@ import org.springframework.transaction.annotation.Transactional;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.time.Instant;
-import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 public class ExcelUploadService {
@@ -37,6 +36,15 @@ public class ExcelUploadService {
     @Autowired
     private SnowflakeIdGenerator snowflakeIdGenerator;
 
+    @Autowired
+    private PgCopyLoader pgCopyLoader;
+
+    @Autowired
+    private TableMetadataService tableMetadataService;
+
+    @Autowired
+    private QueryResultCache queryResultCache;
+
     @Transactional
     public void upload(Long projectId, ProjectDTO project) {
         for (TableDTO tableDto : project.getTables()) {
@@ -79,11 +87,15 @@ public class ExcelUploadService {
             String createTableSql = generateCreateTableSql(tableName, tableDto);
             jdbcTemplate.execute(createTableSql);
 
-            // Insert data into physical table
-            for (List<Object> row : tableDto.getRows()) {
-                insertTable(tableName, tableDto, row);
-            }
+            // Bulk load data into physical table
+            pgCopyLoader.copyRows(tableName, tableDto.getColumns(), tableDto.getRows());
+
+            // Re-uploading a display name appends to the same physical table, so its cached results are stale
+            queryResultCache.invalidateTable(tableName);
         }
+
+        // New tables must be visible to queries right away
+        tableMetadataService.invalidateTableNameMapping(projectId);
     }
 
     private String generateTableName(Long projectId, String displayName) {
@@ -115,20 +127,6 @@ public class ExcelUploadService {
         return sql.toString();
     }
 
-    private void insertTable(String tableName, TableDTO table, List<Object> row) {
-        // Build SQL with placeholders `?` for JdbcTemplate
-        String sql = "INSERT INTO \"" + tableName + "\" (" +
-                table.getColumns().stream()
-                        .map(c -> "\"" + c.getName() + "\"")
-                        .collect(Collectors.joining(", ")) +
-                ") VALUES (" +
-                table.getColumns().stream().map(c -> "?").collect(Collectors.joining(", ")) +
-                ")";
-
-        // Execute with JdbcTemplate and pass parameters
-        jdbcTemplate.update(sql, row.toArray());
-    }
-
     private String mapColumnTypeToSqlType(TableDTO.ColumnTypeDTO columnType) {
         if (columnType == TableDTO.ColumnTypeDTO.TEXT) {
             return "TEXT";
@@ -0,0 +1,67 @@
+package com.aidb.aidb_backend.service.database.postgres.user_created_tables;
+
+import com.aidb.aidb_backend.model.dto.TableDTO;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * COPY binary format: no text parsing on the server side.
+ * Numbers are sent as float8 and dates as days since the PostgreSQL epoch.
+ */
+public class PgBinaryCopyEncoder implements PgCopyEncoder {
+
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+
+    private static final LocalDate PG_EPOCH = LocalDate.of(2000, 1, 1);
+
+    @Override
+    public Format getFormat() {
+        return Format.BINARY;
+    }
+
+    @Override
+    public void writeHeader(DataOutputStream out) throws IOException {
+        out.write(SIGNATURE);
+        out.writeInt(0); // flags
+        out.writeInt(0); // header extension length
+    }
+
+    @Override
+    public void writeRow(DataOutputStream out, List<TableDTO.ColumnTypeDTO> columnTypes, List<Object> row) throws IOException {
+        out.writeShort(columnTypes.size());
+
+        for (int i = 0; i < columnTypes.size(); i++) {
+            Object value = i < row.size() ? row.get(i) : null;
+            if (value == null) {
+                out.writeInt(-1);
+                continue;
+            }
+
+            switch (columnTypes.get(i)) {
+                case TEXT -> {
+                    byte[] bytes = PgCopyEncoder.toText(value).getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+                case NUMBER -> {
+                    out.writeInt(Double.BYTES);
+                    out.writeDouble(PgCopyEncoder.toDouble(value));
+                }
+                case DATE -> {
+                    out.writeInt(Integer.BYTES);
+                    out.writeInt((int) ChronoUnit.DAYS.between(PG_EPOCH, PgCopyEncoder.toLocalDate(value)));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void writeTrailer(DataOutputStream out) throws IOException {
+        out.writeShort(-1);
+    }
+}
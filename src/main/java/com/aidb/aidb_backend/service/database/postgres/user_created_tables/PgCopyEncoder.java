@@ -0,0 +1,67 @@
+package com.aidb.aidb_backend.service.database.postgres.user_created_tables;
+
+import com.aidb.aidb_backend.model.dto.TableDTO;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Encodes uploaded rows for PostgreSQL {@code COPY ... FROM STDIN}.
+ */
+public interface PgCopyEncoder {
+
+    enum Format {
+        TEXT, BINARY
+    }
+
+    static PgCopyEncoder forFormat(Format format) {
+        return switch (format) {
+            case TEXT -> new PgTextCopyEncoder();
+            case BINARY -> new PgBinaryCopyEncoder();
+        };
+    }
+
+    Format getFormat();
+
+    default void writeHeader(DataOutputStream out) throws IOException {
+    }
+
+    void writeRow(DataOutputStream out, List<TableDTO.ColumnTypeDTO> columnTypes, List<Object> row) throws IOException;
+
+    default void writeTrailer(DataOutputStream out) throws IOException {
+    }
+
+    /**
+     * Excel dates are read as midnight in the JVM time zone, so convert back in the same zone
+     */
+    static LocalDate toLocalDate(Object value) {
+        if (value instanceof Date date) {
+            return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+        }
+        if (value instanceof LocalDate localDate) {
+            return localDate;
+        }
+        throw new IllegalArgumentException("Expected a date but got: " + value.getClass().getSimpleName());
+    }
+
+    /**
+     * Dates in text columns are written as ISO-8601, the same as they are in date columns
+     */
+    static String toText(Object value) {
+        if (value instanceof Date || value instanceof LocalDate) {
+            return toLocalDate(value).toString();
+        }
+        return value.toString();
+    }
+
+    static double toDouble(Object value) {
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+        throw new IllegalArgumentException("Expected a number but got: " + value.getClass().getSimpleName());
+    }
+}
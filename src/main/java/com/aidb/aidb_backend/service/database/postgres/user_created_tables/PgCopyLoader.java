@@ -0,0 +1,84 @@
+package com.aidb.aidb_backend.service.database.postgres.user_created_tables;
+
+import com.aidb.aidb_backend.model.dto.TableDTO;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk loads rows with {@code COPY ... FROM STDIN} in a single round trip per table.
+ * Runs on the JdbcTemplate's connection so the load is part of the caller's transaction.
+ */
+@Service
+public class PgCopyLoader {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${upload.copy.format:BINARY}")
+    private PgCopyEncoder.Format copyFormat;
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private static final Logger logger = LoggerFactory.getLogger(PgCopyLoader.class);
+
+    public long copyRows(String tableName, List<TableDTO.ColumnDTO> columns, Iterable<List<Object>> rows) {
+        return copyRows(tableName, columns, rows, PgCopyEncoder.forFormat(copyFormat));
+    }
+
+    public long copyRows(String tableName, List<TableDTO.ColumnDTO> columns, Iterable<List<Object>> rows, PgCopyEncoder encoder) {
+        if (columns.isEmpty()) {
+            return 0;
+        }
+
+        String sql = generateCopySql(tableName, columns, encoder.getFormat());
+        List<TableDTO.ColumnTypeDTO> columnTypes = columns.stream().map(TableDTO.ColumnDTO::getType).toList();
+
+        Long copied = jdbcTemplate.execute((ConnectionCallback<Long>) con -> {
+            PGCopyOutputStream copyStream = new PGCopyOutputStream(con.unwrap(PGConnection.class), sql, COPY_BUFFER_SIZE);
+            try {
+                DataOutputStream out = new DataOutputStream(copyStream);
+                encoder.writeHeader(out);
+                for (List<Object> row : rows) {
+                    encoder.writeRow(out, columnTypes, row);
+                }
+                encoder.writeTrailer(out);
+                out.flush();
+
+                return copyStream.endCopy();
+            } catch (IOException | RuntimeException e) {
+                // Leave the connection usable; the surrounding transaction rolls back
+                if (copyStream.isActive()) {
+                    copyStream.cancelCopy();
+                }
+                if (e instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw new SQLException("COPY into " + tableName + " failed", e);
+            }
+        });
+
+        logger.debug("Copied {} rows into {} using {} format", copied, tableName, encoder.getFormat());
+        return copied == null ? 0 : copied;
+    }
+
+    private String generateCopySql(String tableName, List<TableDTO.ColumnDTO> columns, PgCopyEncoder.Format format) {
+        return "COPY \"" + tableName + "\" (" +
+                columns.stream()
+                        .map(c -> "\"" + c.getName() + "\"")
+                        .collect(Collectors.joining(", ")) +
+                ") FROM STDIN WITH (FORMAT " + format.name().toLowerCase() + ")";
+    }
+}
@@ -0,0 +1,60 @@
+package com.aidb.aidb_backend.service.database.postgres.user_created_tables;
+
+import com.aidb.aidb_backend.model.dto.TableDTO;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * COPY text format: tab separated columns, one line per row, \N for null.
+ */
+public class PgTextCopyEncoder implements PgCopyEncoder {
+
+    private final StringBuilder line = new StringBuilder();
+
+    @Override
+    public Format getFormat() {
+        return Format.TEXT;
+    }
+
+    @Override
+    public void writeRow(DataOutputStream out, List<TableDTO.ColumnTypeDTO> columnTypes, List<Object> row) throws IOException {
+        line.setLength(0);
+
+        for (int i = 0; i < columnTypes.size(); i++) {
+            if (i > 0) {
+                line.append('\t');
+            }
+
+            Object value = i < row.size() ? row.get(i) : null;
+            if (value == null) {
+                line.append("\\N");
+                continue;
+            }
+
+            switch (columnTypes.get(i)) {
+                case TEXT -> appendEscaped(PgCopyEncoder.toText(value));
+                case NUMBER -> line.append(PgCopyEncoder.toDouble(value));
+                case DATE -> line.append(PgCopyEncoder.toLocalDate(value));
+            }
+        }
+
+        line.append('\n');
+        out.write(line.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void appendEscaped(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '\\' -> line.append("\\\\");
+                case '\t' -> line.append("\\t");
+                case '\n' -> line.append("\\n");
+                case '\r' -> line.append("\\r");
+                default -> line.append(ch);
+            }
+        }
+    }
+}
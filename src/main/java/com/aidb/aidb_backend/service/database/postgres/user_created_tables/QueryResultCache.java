@@ -0,0 +1,183 @@
+package com.aidb.aidb_backend.service.database.postgres.user_created_tables;
+
+import com.aidb.aidb_backend.model.dto.QueryResultDTO;
+import com.aidb.aidb_backend.model.dto.ResultColumnDTO;
+import com.aidb.aidb_backend.service.util.sql.SafeSqlCompiler;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Results of user SELECT queries kept in memory, so running the same query again doesn't touch Postgres.
+ * <p>
+ * Entries are keyed by the rewritten SQL and the version of every table it reads. Uploads and deletes bump the
+ * versions of the tables they change, so a result read before the change is never served after it, even when it
+ * is cached by a query that was still running. The cache is bounded by the estimated size of the results
+ * ({@code query-result-cache.max-bytes}). Versions are per instance, so entries also expire after
+ * {@code query-result-cache.ttl-seconds} to bound how long another instance's upload can go unseen.
+ */
+@Service
+public class QueryResultCache {
+
+    private final Cache<ResultKey, Entry> resultCache;
+
+    private final long maxEntryBytes;
+
+    // Tables that were never changed on this instance are at version 0
+    private final Map<String, Long> tableVersions = new ConcurrentHashMap<>();
+
+    /**
+     * @param sql           rewritten SQL, as run against Postgres
+     * @param columnar      whether the result is a {@link QueryResultDTO} rather than a list of rows
+     * @param tableVersions version of every table the SQL reads when the key was made
+     */
+    public record ResultKey(String sql, boolean columnar, Map<String, Long> tableVersions) {
+    }
+
+    private record Entry(Object result, int bytes) {
+    }
+
+    public QueryResultCache(@Value("${query-result-cache.max-bytes:67108864}") long maxBytes,
+                            @Value("${query-result-cache.max-entry-bytes:4194304}") long maxEntryBytes,
+                            @Value("${query-result-cache.ttl-seconds:60}") long ttlSeconds,
+                            MeterRegistry meterRegistry) {
+        this.maxEntryBytes = maxEntryBytes;
+        this.resultCache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((ResultKey key, Entry entry) -> entry.bytes())
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+
+        // Publishes cache.gets{result=hit|miss}, cache.size and cache.evictions
+        CaffeineCacheMetrics.monitor(meterRegistry, resultCache, "queryResult");
+    }
+
+    /**
+     * Key for a query, made before it runs so a table changed while it runs makes the key stale.
+     * Null if the result can't be cached: the SQL reads no project table, reads a table that isn't one,
+     * or calls a function like now() or random() that gives another result the next time it runs.
+     *
+     * @param projectTables physical tables of the query's project
+     */
+    public ResultKey keyFor(SafeSqlCompiler.CompiledSql compiledSql, boolean columnar, Collection<String> projectTables) {
+        if (!compiledSql.deterministic() || compiledSql.tables().isEmpty()) {
+            return null;
+        }
+
+        // Table names from the parsed statement are lower case
+        Map<String, String> tablesByLowerName = new HashMap<>();
+        for (String table : projectTables) {
+            tablesByLowerName.put(table.toLowerCase(Locale.ROOT), table);
+        }
+
+        Map<String, Long> versions = new HashMap<>();
+        for (String readTable : compiledSql.tables()) {
+            String table = tablesByLowerName.get(readTable);
+            if (table == null) {
+                return null;
+            }
+            versions.put(table, tableVersions.getOrDefault(table, 0L));
+        }
+
+        return new ResultKey(compiledSql.sql(), columnar, Map.copyOf(versions));
+    }
+
+    /**
+     * The cached result for a key, of the type its {@code columnar} flag says, or null.
+     */
+    public Object get(ResultKey key) {
+        if (key == null) {
+            return null;
+        }
+
+        Entry entry = resultCache.getIfPresent(key);
+        return entry == null ? null : entry.result();
+    }
+
+    /**
+     * Caches a result unless it is larger than {@code query-result-cache.max-entry-bytes},
+     * so one large result doesn't evict many small ones. The result must not be modified afterwards.
+     */
+    public void put(ResultKey key, Object result) {
+        if (key == null) {
+            return;
+        }
+
+        long bytes = estimateBytes(result);
+        if (bytes <= maxEntryBytes) {
+            resultCache.put(key, new Entry(result, (int) Math.min(bytes, Integer.MAX_VALUE)));
+        }
+    }
+
+    /**
+     * Makes every cached result that reads the table stale. Like
+     * {@link com.aidb.aidb_backend.service.database.postgres.TableMetadataService#invalidateTableNameMapping},
+     * it happens again after the surrounding transaction commits, so a result read before the commit doesn't stay cached.
+     */
+    public void invalidateTable(String tableName) {
+        invalidateNowAndAfterCommit(() -> {
+            tableVersions.merge(tableName, 1L, Long::sum);
+            // Stale entries can't be hit any more; drop them now rather than when they are evicted
+            resultCache.asMap().keySet().removeIf(key -> key.tableVersions().containsKey(tableName));
+        });
+    }
+
+    private void invalidateNowAndAfterCommit(Runnable invalidation) {
+        invalidation.run();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidation.run();
+                }
+            });
+        }
+    }
+
+    // Rough heap size of a result; only needs to be proportional to it
+    static long estimateBytes(Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof CharSequence s) {
+            return 40 + 2L * s.length();
+        } else if (value instanceof Number || value instanceof Boolean) {
+            return 24;
+        } else if (value instanceof byte[] bytes) {
+            return 16 + bytes.length;
+        } else if (value instanceof QueryResultDTO result) {
+            return 24 + estimateBytes(result.getColumns()) + estimateBytes(result.getRows());
+        } else if (value instanceof ResultColumnDTO column) {
+            return 24 + estimateBytes(column.getName()) + estimateBytes(column.getType());
+        } else if (value instanceof Map<?, ?> map) {
+            long bytes = 64;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                bytes += 48 + estimateBytes(entry.getKey()) + estimateBytes(entry.getValue());
+            }
+            return bytes;
+        } else if (value instanceof List<?> list) {
+            long bytes = 24 + 8L * list.size();
+            for (Object element : list) {
+                bytes += estimateBytes(element);
+            }
+            return bytes;
+        }
+
+        // Dates, timestamps and driver objects
+        return 48;
+    }
+}
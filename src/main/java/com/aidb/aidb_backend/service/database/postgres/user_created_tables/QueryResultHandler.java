@@ -0,0 +1,18 @@
+package com.aidb.aidb_backend.service.database.postgres.user_created_tables;
+
+import com.aidb.aidb_backend.model.dto.ResultColumnDTO;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Receives a query result one row at a time from {@link UserQueryDataService#streamSql}.
+ */
+public interface QueryResultHandler {
+
+    void onColumns(List<ResultColumnDTO> columns) throws IOException;
+
+    /**
+     * Values are in column order. The array is reused for the next row, so copy it to keep it.
+     */
+    void onRow(Object[] values) throws IOException;
+}
@@ -0,0 +1,86 @@
+package com.aidb.aidb_backend.service.database.postgres.user_created_tables;
+
+import com.aidb.aidb_backend.exception.http.QueryCancelledException;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * A user query while it runs on the query-user pool, registered with {@link RunningQueryRegistry} so it can be
+ * cancelled by the user, by a client disconnect or by the statement timeout of the user's tier.
+ * Close it once the query is done.
+ */
+public class RunningQuery implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(RunningQuery.class);
+
+    // Null for queries that were never saved; those can't be cancelled by id
+    @Getter
+    private final String queryId;
+
+    @Getter
+    private final String userId;
+
+    // Postgres statement_timeout for the query, 0 for none
+    @Getter
+    private final long timeoutMs;
+
+    // The request the query runs for, see RunningQueryRegistry#bindRequest
+    @Getter
+    private final Object requestKey;
+
+    private final RunningQueryRegistry registry;
+
+    private Statement statement;
+
+    private boolean cancelled;
+
+    RunningQuery(String queryId, String userId, long timeoutMs, Object requestKey, RunningQueryRegistry registry) {
+        this.queryId = queryId;
+        this.userId = userId;
+        this.timeoutMs = timeoutMs;
+        this.requestKey = requestKey;
+        this.registry = registry;
+    }
+
+    /**
+     * Called with the statement before it is executed, so {@link #cancel} can reach it.
+     */
+    synchronized void attach(Statement statement) {
+        if (cancelled) {
+            throw new QueryCancelledException("Query was cancelled");
+        }
+        this.statement = statement;
+    }
+
+    synchronized void detach() {
+        this.statement = null;
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Asks Postgres to stop the statement; executeQuery then fails with SQLState 57014.
+     */
+    public synchronized void cancel() {
+        cancelled = true;
+
+        if (statement != null) {
+            try {
+                statement.cancel();
+            } catch (SQLException e) {
+                logger.warn("Failed to cancel query {}: {}", queryId, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        registry.remove(this);
+    }
+}
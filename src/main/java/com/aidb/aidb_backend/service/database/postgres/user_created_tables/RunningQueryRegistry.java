@@ -0,0 +1,71 @@
+package com.aidb.aidb_backend.service.database.postgres.user_created_tables;
+
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The user queries running on this instance. There are at most a few per query-user connection,
+ * so lookups scan them all.
+ */
+@Component
+public class RunningQueryRegistry {
+
+    private final Set<RunningQuery> running = ConcurrentHashMap.newKeySet();
+
+    // Set on threads that serve an async request, see QueryDisconnectConfig
+    private final ThreadLocal<Object> currentRequest = new ThreadLocal<>();
+
+    public RunningQuery start(String queryId, String userId, long timeoutMs) {
+        RunningQuery runningQuery = new RunningQuery(queryId, userId, timeoutMs, currentRequest.get(), this);
+        running.add(runningQuery);
+        return runningQuery;
+    }
+
+    void remove(RunningQuery runningQuery) {
+        running.remove(runningQuery);
+    }
+
+    /**
+     * Cancels the user's running executions of a query. Executions of other users are left alone,
+     * so a query id reveals nothing about queries the user doesn't own.
+     *
+     * @return whether any execution was cancelled
+     */
+    public boolean cancel(String userId, String queryId) {
+        List<RunningQuery> matches = running.stream()
+                .filter(runningQuery -> queryId.equals(runningQuery.getQueryId()))
+                .filter(runningQuery -> Objects.equals(runningQuery.getUserId(), userId))
+                .toList();
+
+        matches.forEach(RunningQuery::cancel);
+        return !matches.isEmpty();
+    }
+
+    /**
+     * Marks queries started on this thread until {@link #unbindRequest} as belonging to the request with this key.
+     */
+    public void bindRequest(Object requestKey) {
+        currentRequest.set(requestKey);
+    }
+
+    public void unbindRequest() {
+        currentRequest.remove();
+    }
+
+    /**
+     * Cancels every query running for the request, e.g. because its client disconnected.
+     */
+    public void cancelRequest(Object requestKey) {
+        if (requestKey == null) {
+            return;
+        }
+
+        running.stream()
+                .filter(runningQuery -> runningQuery.getRequestKey() == requestKey)
+                .forEach(RunningQuery::cancel);
+    }
+}
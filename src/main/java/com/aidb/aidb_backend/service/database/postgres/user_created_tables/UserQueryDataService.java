@@ -1,21 +1,202 @@
 package com.aidb.aidb_backend.service.database.postgres.user_created_tables;
 
+import com.aidb.aidb_backend.exception.http.QueryCancelledException;
+import com.aidb.aidb_backend.exception.http.QueryTimeoutException;
+import com.aidb.aidb_backend.model.dto.QueryResultDTO;
+import com.aidb.aidb_backend.model.dto.ResultColumnDTO;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.util.LinkedCaseInsensitiveMap;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 @Service
 public class UserQueryDataService {
     private final JdbcTemplate queryUserJdbcTemplate;
 
+    @Value("${user.sql.query.fetch-size:500}")
+    private int fetchSize;
+
+    // SQLState Postgres reports for both statement_timeout and a cancel request
+    private static final String QUERY_CANCELED = "57014";
+
     public UserQueryDataService(@Qualifier("queryUserJdbcTemplate") JdbcTemplate queryUserJdbcTemplate) {
         this.queryUserJdbcTemplate = queryUserJdbcTemplate;
     }
 
-    public List<Map<String, Object>> executeSql(String safeSql) {
-        return queryUserJdbcTemplate.queryForList(safeSql);
+    /**
+     * Runs the query within the running query's timeout, reading rows the same way as {@link JdbcTemplate#queryForList}
+     * except that columns with the same name are all kept, see {@link #readColumns}.
+     */
+    public List<Map<String, Object>> executeSql(String safeSql, RunningQuery runningQuery) {
+        return runQuery(safeSql, runningQuery, false, rs -> {
+            List<ResultColumnDTO> columns = readColumns(rs.getMetaData());
+
+            List<Map<String, Object>> rows = new ArrayList<>();
+            Object[] values = new Object[columns.size()];
+            while (rs.next()) {
+                readRow(rs, values);
+                Map<String, Object> row = new LinkedCaseInsensitiveMap<>(columns.size());
+                for (int i = 0; i < values.length; i++) {
+                    row.put(columns.get(i).getName(), values[i]);
+                }
+                rows.add(row);
+            }
+            return rows;
+        });
+    }
+
+    /**
+     * Same values as {@link #executeSql}, with the column names and types read once instead of repeated per row.
+     */
+    public QueryResultDTO executeSqlColumnar(String safeSql, RunningQuery runningQuery) {
+        return runQuery(safeSql, runningQuery, false, rs -> {
+            List<ResultColumnDTO> columns = readColumns(rs.getMetaData());
+
+            List<List<Object>> rows = new ArrayList<>();
+            while (rs.next()) {
+                Object[] values = new Object[columns.size()];
+                readRow(rs, values);
+                rows.add(Arrays.asList(values));
+            }
+
+            QueryResultDTO result = new QueryResultDTO();
+            result.setColumns(columns);
+            result.setRows(rows);
+            return result;
+        });
+    }
+
+    /**
+     * Runs the query on a server-side cursor and hands rows to the handler as they are fetched,
+     * so at most one fetch of rows is held in memory. Values are read the same way as {@link #executeSql}.
+     */
+    public void streamSql(String safeSql, RunningQuery runningQuery, QueryResultHandler handler) {
+        runQuery(safeSql, runningQuery, true, rs -> {
+            streamResultSet(rs, handler);
+            return null;
+        });
+    }
+
+    /**
+     * Runs the query in its own read-only transaction, which scopes statement_timeout to it,
+     * with the statement attached to the running query so it can be cancelled.
+     */
+    private <T> T runQuery(String safeSql, RunningQuery runningQuery, boolean cursor, ResultSetExtractor<T> extractor) {
+        return queryUserJdbcTemplate.execute((ConnectionCallback<T>) con -> {
+            boolean autoCommit = con.getAutoCommit();
+
+            // PgJDBC only honours the fetch size with a cursor, which needs a transaction too
+            con.setAutoCommit(false);
+            try {
+                setStatementTimeout(con, runningQuery.getTimeoutMs());
+
+                T result;
+                try (PreparedStatement ps = con.prepareStatement(safeSql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                    if (cursor) {
+                        ps.setFetchSize(fetchSize);
+                    }
+
+                    runningQuery.attach(ps);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        result = extractor.extractData(rs);
+                    } finally {
+                        runningQuery.detach();
+                    }
+                }
+
+                con.commit();
+                return result;
+            } catch (SQLException e) {
+                con.rollback();
+
+                if (QUERY_CANCELED.equals(e.getSQLState())) {
+                    if (runningQuery.isCancelled()) {
+                        throw new QueryCancelledException("Query was cancelled");
+                    }
+                    throw new QueryTimeoutException("Query exceeded the time limit of " + runningQuery.getTimeoutMs() + " ms");
+                }
+                throw e;
+            } catch (RuntimeException e) {
+                con.rollback();
+                throw e;
+            } finally {
+                con.setAutoCommit(autoCommit);
+            }
+        });
+    }
+
+    private void setStatementTimeout(Connection con, long timeoutMs) throws SQLException {
+        if (timeoutMs <= 0) {
+            return;
+        }
+
+        // Same as SET LOCAL, which can't take a bind parameter
+        try (PreparedStatement ps = con.prepareStatement("SELECT set_config('statement_timeout', ?, true)")) {
+            ps.setString(1, Long.toString(timeoutMs));
+            ps.execute();
+        }
+    }
+
+    private void streamResultSet(ResultSet rs, QueryResultHandler handler) throws SQLException {
+        List<ResultColumnDTO> columns = readColumns(rs.getMetaData());
+
+        try {
+            handler.onColumns(columns);
+
+            Object[] values = new Object[columns.size()];
+            while (rs.next()) {
+                readRow(rs, values);
+                handler.onRow(values);
+            }
+        } catch (IOException e) {
+            // Usually the client went away mid-response
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Columns with a name already taken, as in {@code SELECT a.id, b.id}, get a numbered suffix ({@code id_2}),
+     * so each is its own key in a row object rather than a duplicate or a lost value.
+     */
+    private List<ResultColumnDTO> readColumns(ResultSetMetaData metaData) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+
+        List<ResultColumnDTO> columns = new ArrayList<>(columnCount);
+        // Lower case, since rows are case-insensitive maps
+        Set<String> taken = new HashSet<>();
+        for (int i = 1; i <= columnCount; i++) {
+            String name = JdbcUtils.lookupColumnName(metaData, i);
+            String uniqueName = name;
+            for (int n = 2; !taken.add(uniqueName.toLowerCase(Locale.ROOT)); n++) {
+                uniqueName = name + "_" + n;
+            }
+            columns.add(new ResultColumnDTO(uniqueName, metaData.getColumnTypeName(i)));
+        }
+        return columns;
+    }
+
+    private void readRow(ResultSet rs, Object[] values) throws SQLException {
+        for (int i = 1; i <= values.length; i++) {
+            values[i - 1] = JdbcUtils.getResultSetValue(rs, i);
+        }
     }
 }
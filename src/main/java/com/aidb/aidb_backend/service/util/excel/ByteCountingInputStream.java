@@ -0,0 +1,52 @@
+package com.aidb.aidb_backend.service.util.excel;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.LongConsumer;
+
+/**
+ * Reports the running total of bytes read so callers can abort a read once a size limit is crossed.
+ */
+class ByteCountingInputStream extends FilterInputStream {
+
+    private final LongConsumer onBytesRead;
+    private long totalBytes = 0;
+
+    ByteCountingInputStream(InputStream in, LongConsumer onBytesRead) {
+        super(in);
+        this.onBytesRead = onBytesRead;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            count(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            count(n);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        if (skipped > 0) {
+            count(skipped);
+        }
+        return skipped;
+    }
+
+    private void count(long n) {
+        totalBytes += n;
+        onBytesRead.accept(totalBytes);
+    }
+}
@@ -3,8 +3,6 @@ package com.aidb.aidb_backend.service.util.excel;
 import com.aidb.aidb_backend.model.dto.ProjectDTO;
 import com.aidb.aidb_backend.model.dto.ProjectOverviewDTO;
 import com.aidb.aidb_backend.model.dto.TableDTO;
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.springframework.stereotype.Service;
 
 import java.io.InputStream;
@@ -15,132 +13,188 @@ import java.util.*;
 public class ExcelParserService {
 
     public ProjectDTO parseExcelFile(ProjectOverviewDTO projectOverview, Set<String> tableNames, InputStream fileInputStream) throws IOException {
-        try (Workbook workbook = new XSSFWorkbook(fileInputStream)) {
-            NameDeduplicationContext deduplicationContext = new NameDeduplicationContext(tableNames);
+        return parseExcelFile(projectOverview, tableNames, fileInputStream, new ExcelSheetListener() {
+        });
+    }
 
-            ProjectDTO project = new ProjectDTO();
-            project.setUserId(projectOverview.getUserId());
-            List<TableDTO> tables = new ArrayList<>();
+    /**
+     * Same as {@link #parseExcelFile(ProjectOverviewDTO, Set, InputStream)}, forwarding every event to the observer
+     * so callers can meter or reject the upload while it is still being read.
+     */
+    public ProjectDTO parseExcelFile(ProjectOverviewDTO projectOverview, Set<String> tableNames, InputStream fileInputStream,
+                                     ExcelSheetListener observer) throws IOException {
+        ProjectDTO project = new ProjectDTO();
+        project.setUserId(projectOverview.getUserId());
+        List<TableDTO> tables = new ArrayList<>();
+
+        streamExcelFile(tableNames, fileInputStream, new ExcelSheetListener() {
+            @Override
+            public void onHeader(TableDTO table) {
+                table.setRows(new ArrayList<>());
+                tables.add(table);
+                observer.onHeader(table);
+            }
 
-            // Iterate through each sheet (table)
-            for (int sheetIndex = 0; sheetIndex < workbook.getNumberOfSheets(); sheetIndex++) {
-                Sheet sheet = workbook.getSheetAt(sheetIndex);
-                TableDTO table = createTable(sheet, deduplicationContext);
+            @Override
+            public void onColumnTypes(TableDTO table) {
+                observer.onColumnTypes(table);
+            }
 
-                tables.add(table);
+            @Override
+            public void onRow(TableDTO table, List<Object> row) {
+                observer.onRow(table, row);
+                table.getRows().add(row);
+            }
 
+            @Override
+            public void onSheetEnd(TableDTO table) {
+                observer.onSheetEnd(table);
             }
 
-            project.setTables(tables);
+            @Override
+            public void onBytesRead(long totalBytes) {
+                observer.onBytesRead(totalBytes);
+            }
+        });
 
-            return project;
-        }
-    }
+        project.setTables(tables);
 
-    private TableDTO createTable(Sheet sheet, NameDeduplicationContext deduplicationContext) {
-        TableDTO table = new TableDTO();
-        String sanitizedName = ExcelNameService.sanitize(sheet.getSheetName(), true);
-        table.setFileName(sanitizedName);
-        String dedupedName = deduplicationContext.deduplicate(sheet.getSheetName(), sanitizedName, true);
-        table.setDisplayName(dedupedName);
+        return project;
+    }
 
-        List<TableDTO.ColumnDTO> columns = parseColumns(sheet, deduplicationContext);
-        table.setColumns(columns);
+    /**
+     * Parses the workbook one row at a time and reports each table to the listener without keeping rows in memory.
+     * Each sheet (table) uses its first row as the header and the row below it to infer column types.
+     */
+    public void streamExcelFile(Set<String> tableNames, InputStream fileInputStream, ExcelSheetListener listener) throws IOException {
+        NameDeduplicationContext deduplicationContext = new NameDeduplicationContext(tableNames);
 
-        List<List<Object>> rows = parseRows(sheet, table.getColumns());
-        table.setRows(rows);
+        InputStream countingInputStream = fileInputStream == null ? null
+                : new ByteCountingInputStream(fileInputStream, listener::onBytesRead);
 
-        return table;
+        new StreamingExcelReader().read(countingInputStream, new TableEventAdapter(deduplicationContext, listener));
     }
 
-    private List<TableDTO.ColumnDTO> parseColumns (Sheet sheet, NameDeduplicationContext deduplicationContext) {
-        List<TableDTO.ColumnDTO> columns = new ArrayList<>();
-        Row headerRow = sheet.getRow(0);
+    /**
+     * Turns raw sheet rows into table events with the same column and row semantics as the workbook model parser.
+     */
+    private static class TableEventAdapter implements StreamingExcelReader.RowHandler {
+        private final NameDeduplicationContext deduplicationContext;
+        private final ExcelSheetListener listener;
+
+        private String sheetName;
+        private TableDTO table;
+        private List<Integer> headerColumnIndexes;
+        private boolean headerSeen;
+        private boolean typesInferred;
+
+        TableEventAdapter(NameDeduplicationContext deduplicationContext, ExcelSheetListener listener) {
+            this.deduplicationContext = deduplicationContext;
+            this.listener = listener;
+        }
 
-        if (headerRow != null) {
-            for (Cell cell : headerRow) {
-                TableDTO.ColumnDTO column = new TableDTO.ColumnDTO();
+        @Override
+        public void startSheet(String sheetName) {
+            this.sheetName = sheetName;
+            this.table = new TableDTO();
+            this.headerColumnIndexes = new ArrayList<>();
+            this.headerSeen = false;
+            this.typesInferred = false;
+
+            String sanitizedName = ExcelNameService.sanitize(sheetName, true);
+            table.setFileName(sanitizedName);
+            String dedupedName = deduplicationContext.deduplicate(sheetName, sanitizedName, true);
+            table.setDisplayName(dedupedName);
+            table.setColumns(new ArrayList<>());
+        }
 
-                String sanitizedName = ExcelNameService.sanitize(cell.getStringCellValue(), false);
-                String dedupedName = deduplicationContext.deduplicate(sheet.getSheetName(), sanitizedName, false);
-                column.setName(dedupedName);
+        @Override
+        public void row(int rowIndex, List<StreamingExcelReader.ExcelCell> cells) {
+            if (!headerSeen) {
+                headerSeen = true;
+                if (rowIndex == 0) {
+                    parseColumns(cells);
+                }
+                listener.onHeader(table);
 
-                column.setType(inferColumnType(sheet, cell));
-                columns.add(column);
+                if (rowIndex == 0) {
+                    return;
+                }
             }
-        }
 
-        return columns;
-    }
+            if (!typesInferred) {
+                // Check the row below the header to determine column types
+                inferColumnTypes(rowIndex == 1 ? cells : List.of());
+            }
 
-    private List<List<Object>> parseRows(Sheet sheet, List<TableDTO.ColumnDTO> columns) {
-        List<List<Object>> rows = new ArrayList<>();
+            listener.onRow(table, parseRow(cells));
+        }
 
-        for (int i = 1; i < sheet.getPhysicalNumberOfRows(); i++) {
-            Row dataRow = sheet.getRow(i);
+        @Override
+        public void endSheet() {
+            if (!headerSeen) {
+                headerSeen = true;
+                listener.onHeader(table);
+            }
 
-            if (dataRow != null) {
-                List<Object> row = new ArrayList<>();
-                for (int j = 0; j < columns.size(); j++) {
-                    Cell dataCell = dataRow.getCell(j);
-                    row.add(getCellValue(dataCell));
-                }
-                rows.add(row);
+            if (!typesInferred) {
+                inferColumnTypes(List.of());
             }
+
+            listener.onSheetEnd(table);
         }
 
-        return rows;
-    }
+        private void parseColumns(List<StreamingExcelReader.ExcelCell> headerCells) {
+            for (int colIdx = 0; colIdx < headerCells.size(); colIdx++) {
+                StreamingExcelReader.ExcelCell cell = headerCells.get(colIdx);
+                if (cell == null) {
+                    continue;
+                }
 
-    private TableDTO.ColumnTypeDTO inferColumnType(Sheet sheet, Cell columnCell) {
+                TableDTO.ColumnDTO column = new TableDTO.ColumnDTO();
 
-        // Check the cell below the column to determine column type
-        Cell firstDataCell = getCell(sheet, columnCell.getRowIndex() + 1, columnCell.getColumnIndex());
+                String sanitizedName = ExcelNameService.sanitize(String.valueOf(cell.getValue()), false);
+                String dedupedName = deduplicationContext.deduplicate(sheetName, sanitizedName, false);
+                column.setName(dedupedName);
 
-        if (firstDataCell == null) {
-            return TableDTO.ColumnTypeDTO.TEXT;
+                table.getColumns().add(column);
+                headerColumnIndexes.add(colIdx);
+            }
         }
 
+        private void inferColumnTypes(List<StreamingExcelReader.ExcelCell> firstDataRow) {
+            List<TableDTO.ColumnDTO> columns = table.getColumns();
+            for (int i = 0; i < columns.size(); i++) {
+                StreamingExcelReader.ExcelCell firstDataCell = getCell(firstDataRow, headerColumnIndexes.get(i));
+                columns.get(i).setType(firstDataCell == null ? TableDTO.ColumnTypeDTO.TEXT : firstDataCell.getType());
+            }
 
-        return inferCellType(firstDataCell);
-    }
-
-    private Object getCellValue(Cell cell) {
-        if (cell == null) {
-            return null;
+            typesInferred = true;
+            listener.onColumnTypes(table);
         }
 
-        TableDTO.ColumnTypeDTO cellType = inferCellType(cell);
-
-        if (cellType == TableDTO.ColumnTypeDTO.TEXT) {
-            return ExcelSanitizerService.formatString(cell.getStringCellValue());
-        } else if (cellType == TableDTO.ColumnTypeDTO.DATE) {
-            return cell.getDateCellValue();
-        } else if (cellType == TableDTO.ColumnTypeDTO.NUMBER) {
-            return cell.getNumericCellValue();
+        private List<Object> parseRow(List<StreamingExcelReader.ExcelCell> cells) {
+            List<Object> row = new ArrayList<>(table.getColumns().size());
+            for (int j = 0; j < table.getColumns().size(); j++) {
+                row.add(getCellValue(getCell(cells, j)));
+            }
+            return row;
         }
-        
-        return null;
-    }
 
-    private Cell getCell(Sheet sheet, int rowIndex, int colIndex) {
-        Row row = sheet.getRow(rowIndex);
-        return row != null ? row.getCell(colIndex) : null;
-    }
+        private Object getCellValue(StreamingExcelReader.ExcelCell cell) {
+            if (cell == null) {
+                return null;
+            }
+
+            if (cell.getType() == TableDTO.ColumnTypeDTO.TEXT) {
+                return ExcelSanitizerService.formatString((String) cell.getValue());
+            }
 
-    private TableDTO.ColumnTypeDTO inferCellType(Cell cell) {
-        if (cell == null) {
-            return TableDTO.ColumnTypeDTO.TEXT;
+            return cell.getValue();
         }
 
-        if (Objects.requireNonNull(cell.getCellType()) == CellType.NUMERIC) {
-            if (DateUtil.isCellDateFormatted(cell)) {
-                return TableDTO.ColumnTypeDTO.DATE;
-            } else {
-                return TableDTO.ColumnTypeDTO.NUMBER;
-            }
+        private StreamingExcelReader.ExcelCell getCell(List<StreamingExcelReader.ExcelCell> cells, int colIndex) {
+            return colIndex < cells.size() ? cells.get(colIndex) : null;
         }
-        return TableDTO.ColumnTypeDTO.TEXT;
     }
-
 }
@@ -0,0 +1,39 @@
+package com.aidb.aidb_backend.service.util.excel;
+
+import com.aidb.aidb_backend.model.dto.TableDTO;
+
+import java.util.List;
+
+/**
+ * Receives table events from {@link ExcelParserService#streamExcelFile} while a workbook is being parsed.
+ * Events for a sheet always arrive in order: header, column types, rows, sheet end.
+ */
+public interface ExcelSheetListener {
+
+    /**
+     * Table names and column names are known. Column types are not inferred yet.
+     */
+    default void onHeader(TableDTO table) {
+    }
+
+    /**
+     * Column types have been inferred from the first data row. Fired before the first row of the sheet.
+     */
+    default void onColumnTypes(TableDTO table) {
+    }
+
+    /**
+     * A data row with one value per column, converted the same way as {@link ExcelParserService#parseExcelFile}.
+     */
+    default void onRow(TableDTO table, List<Object> row) {
+    }
+
+    default void onSheetEnd(TableDTO table) {
+    }
+
+    /**
+     * Running total of bytes read from the uploaded file. Throwing here aborts the parse.
+     */
+    default void onBytesRead(long totalBytes) {
+    }
+}
@@ -0,0 +1,282 @@
+package com.aidb.aidb_backend.service.util.excel;
+
+import com.aidb.aidb_backend.model.dto.TableDTO;
+import lombok.Getter;
+import org.apache.poi.UnsupportedFileFormatException;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads an XLSX workbook sheet by sheet with SAX, one row at a time.
+ * Only the current row, the shared strings table and the styles table are held in memory.
+ */
+public class StreamingExcelReader {
+
+    public interface RowHandler {
+        void startSheet(String sheetName);
+
+        /**
+         * @param rowIndex zero-based row index
+         * @param cells    cells indexed by column, null where the sheet has no cell
+         */
+        void row(int rowIndex, List<ExcelCell> cells);
+
+        void endSheet();
+    }
+
+    @Getter
+    public static class ExcelCell {
+        private final TableDTO.ColumnTypeDTO type;
+
+        // String for TEXT, Double for NUMBER, java.util.Date for DATE
+        private final Object value;
+
+        ExcelCell(TableDTO.ColumnTypeDTO type, Object value) {
+            this.type = type;
+            this.value = value;
+        }
+    }
+
+    public void read(InputStream fileInputStream, RowHandler rowHandler) throws IOException {
+        if (fileInputStream == null) {
+            throw new IOException("Cannot read from null input stream");
+        }
+
+        // OPCPackage buffers the whole archive when opened from a stream, so spool to disk first
+        Path spoolFile = Files.createTempFile("aidb-upload-", ".xlsx");
+        try {
+            Files.copy(fileInputStream, spoolFile, StandardCopyOption.REPLACE_EXISTING);
+
+            OPCPackage pkg = OPCPackage.open(spoolFile.toFile(), PackageAccess.READ);
+            try {
+                readPackage(pkg, rowHandler);
+            } finally {
+                pkg.revert();
+            }
+        } catch (OpenXML4JException | UnsupportedFileFormatException | ParserConfigurationException e) {
+            // UnsupportedFileFormatException is what opening a file that isn't a zip archive throws
+            throw new IOException("Invalid Excel file format", e);
+        } catch (SAXException e) {
+            // Handlers may throw validation errors mid-parse; surface them unchanged
+            if (e.getException() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException("Invalid Excel file format", e);
+        } finally {
+            Files.deleteIfExists(spoolFile);
+        }
+    }
+
+    private void readPackage(OPCPackage pkg, RowHandler rowHandler)
+            throws IOException, OpenXML4JException, SAXException, ParserConfigurationException {
+        XSSFReader reader = new XSSFReader(pkg);
+        ReadOnlySharedStringsTable sharedStrings = new ReadOnlySharedStringsTable(pkg);
+        StylesTable styles = reader.getStylesTable();
+        boolean date1904 = isDate1904(reader);
+
+        XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+        while (sheets.hasNext()) {
+            try (InputStream sheetStream = sheets.next()) {
+                rowHandler.startSheet(sheets.getSheetName());
+
+                XMLReader xmlReader = XMLHelper.newXMLReader();
+                xmlReader.setContentHandler(new SheetHandler(sharedStrings, styles, date1904, rowHandler));
+                xmlReader.parse(new InputSource(sheetStream));
+
+                rowHandler.endSheet();
+            }
+        }
+    }
+
+    private boolean isDate1904(XSSFReader reader)
+            throws IOException, OpenXML4JException, SAXException, ParserConfigurationException {
+        WorkbookPropertiesHandler handler = new WorkbookPropertiesHandler();
+        try (InputStream workbookStream = reader.getWorkbookData()) {
+            XMLReader xmlReader = XMLHelper.newXMLReader();
+            xmlReader.setContentHandler(handler);
+            xmlReader.parse(new InputSource(workbookStream));
+        }
+        return handler.isDate1904();
+    }
+
+    private static String elementName(String localName, String qName) {
+        return localName == null || localName.isEmpty() ? qName : localName;
+    }
+
+    @Getter
+    private static class WorkbookPropertiesHandler extends DefaultHandler {
+        private boolean date1904 = false;
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            if ("workbookPr".equals(elementName(localName, qName))) {
+                String value = attributes.getValue("date1904");
+                date1904 = "1".equals(value) || "true".equalsIgnoreCase(value);
+            }
+        }
+    }
+
+    private static class SheetHandler extends DefaultHandler {
+        private final ReadOnlySharedStringsTable sharedStrings;
+        private final StylesTable styles;
+        private final boolean date1904;
+        private final RowHandler rowHandler;
+        private final Map<Integer, Boolean> dateStyles = new HashMap<>();
+
+        private final StringBuilder value = new StringBuilder();
+        private List<ExcelCell> cells = new ArrayList<>();
+        private int rowIndex;
+        private int nextRowIndex = 0;
+        private int columnIndex;
+        private int nextColumnIndex;
+        private String cellType;
+        private int styleIndex;
+        private boolean inValue;
+        private boolean hasValue;
+
+        SheetHandler(ReadOnlySharedStringsTable sharedStrings, StylesTable styles, boolean date1904, RowHandler rowHandler) {
+            this.sharedStrings = sharedStrings;
+            this.styles = styles;
+            this.date1904 = date1904;
+            this.rowHandler = rowHandler;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (elementName(localName, qName)) {
+                case "row" -> {
+                    String ref = attributes.getValue("r");
+                    rowIndex = ref != null ? Integer.parseInt(ref) - 1 : nextRowIndex;
+                    nextRowIndex = rowIndex + 1;
+                    nextColumnIndex = 0;
+                    cells = new ArrayList<>();
+                }
+                case "c" -> {
+                    String ref = attributes.getValue("r");
+                    columnIndex = ref != null ? columnIndexOf(ref) : nextColumnIndex;
+                    nextColumnIndex = columnIndex + 1;
+                    cellType = attributes.getValue("t");
+                    String style = attributes.getValue("s");
+                    styleIndex = style != null ? Integer.parseInt(style) : 0;
+                    value.setLength(0);
+                    hasValue = false;
+                }
+                case "v" -> {
+                    inValue = true;
+                    hasValue = true;
+                }
+                case "t" -> {
+                    // Inline strings keep their text in <is><t>, possibly split across rich text runs
+                    if ("inlineStr".equals(cellType)) {
+                        inValue = true;
+                        hasValue = true;
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inValue) {
+                value.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            switch (elementName(localName, qName)) {
+                case "v", "t" -> inValue = false;
+                case "c" -> setCell(columnIndex, toCell());
+                case "row" -> rowHandler.row(rowIndex, cells);
+                default -> {
+                }
+            }
+        }
+
+        private void setCell(int index, ExcelCell cell) {
+            while (cells.size() <= index) {
+                cells.add(null);
+            }
+            cells.set(index, cell);
+        }
+
+        private ExcelCell toCell() {
+            // A cell element without a value is a blank cell, which the workbook model reads as empty text
+            if (!hasValue) {
+                return new ExcelCell(TableDTO.ColumnTypeDTO.TEXT, "");
+            }
+
+            String raw = value.toString();
+            String type = cellType == null ? "n" : cellType;
+
+            return switch (type) {
+                case "s" -> new ExcelCell(TableDTO.ColumnTypeDTO.TEXT,
+                        sharedStrings.getItemAt(Integer.parseInt(raw.trim())).getString());
+                case "b" -> new ExcelCell(TableDTO.ColumnTypeDTO.TEXT, "1".equals(raw) ? "TRUE" : "FALSE");
+                case "n" -> toNumericCell(raw);
+                default -> new ExcelCell(TableDTO.ColumnTypeDTO.TEXT, raw);
+            };
+        }
+
+        private ExcelCell toNumericCell(String raw) {
+            double number = Double.parseDouble(raw);
+
+            if (isDateFormatted(number)) {
+                return new ExcelCell(TableDTO.ColumnTypeDTO.DATE, DateUtil.getJavaDate(number, date1904));
+            }
+
+            return new ExcelCell(TableDTO.ColumnTypeDTO.NUMBER, number);
+        }
+
+        private boolean isDateFormatted(double number) {
+            if (styles == null || !DateUtil.isValidExcelDate(number)) {
+                return false;
+            }
+
+            return dateStyles.computeIfAbsent(styleIndex, idx -> {
+                XSSFCellStyle style = styles.getStyleAt(idx);
+                return style != null && DateUtil.isADateFormat(style.getDataFormat(), style.getDataFormatString());
+            });
+        }
+
+        /**
+         * Column part of a cell reference, e.g. "AB12" -> 27
+         */
+        private static int columnIndexOf(String cellRef) {
+            int column = 0;
+            for (int i = 0; i < cellRef.length(); i++) {
+                char ch = cellRef.charAt(i);
+                if (Character.isDigit(ch)) {
+                    break;
+                }
+                column = column * 26 + (Character.toUpperCase(ch) - 'A' + 1);
+            }
+            return column - 1;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.aidb.aidb_backend.service.util.sql;
+
+import com.aidb.aidb_backend.model.dto.ResultColumnDTO;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes a streamed query result as an object with the columns once and then one array per row,
+ * the same shape as serializing a {@link com.aidb.aidb_backend.model.dto.QueryResultDTO}.
+ */
+public class ColumnarQueryResultWriter implements QueryResultWriter {
+
+    private final JsonGenerator generator;
+
+    public ColumnarQueryResultWriter(JsonGenerator generator) {
+        this.generator = generator;
+    }
+
+    @Override
+    public void start() throws IOException {
+        generator.writeStartObject();
+    }
+
+    @Override
+    public void onColumns(List<ResultColumnDTO> columns) throws IOException {
+        generator.writeArrayFieldStart("columns");
+        for (ResultColumnDTO column : columns) {
+            generator.writeStartObject();
+            generator.writeStringField("name", column.getName());
+            generator.writeStringField("type", column.getType());
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+
+        generator.writeArrayFieldStart("rows");
+    }
+
+    @Override
+    public void onRow(Object[] values) throws IOException {
+        generator.writeStartArray();
+        for (Object value : values) {
+            generator.writeObject(value);
+        }
+        generator.writeEndArray();
+    }
+
+    @Override
+    public void end() throws IOException {
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+}
@@ -0,0 +1,47 @@
+package com.aidb.aidb_backend.service.util.sql;
+
+import com.aidb.aidb_backend.model.dto.ResultColumnDTO;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes a streamed query result as a JSON array with one object per row,
+ * the same shape as serializing the List<Map<String, Object>> from a buffered query.
+ */
+public class JsonQueryResultWriter implements QueryResultWriter {
+
+    private final JsonGenerator generator;
+
+    private List<String> columnNames;
+
+    public JsonQueryResultWriter(JsonGenerator generator) {
+        this.generator = generator;
+    }
+
+    @Override
+    public void start() throws IOException {
+        generator.writeStartArray();
+    }
+
+    @Override
+    public void onColumns(List<ResultColumnDTO> columns) {
+        this.columnNames = columns.stream().map(ResultColumnDTO::getName).toList();
+    }
+
+    @Override
+    public void onRow(Object[] values) throws IOException {
+        generator.writeStartObject();
+        for (int i = 0; i < values.length; i++) {
+            generator.writeFieldName(columnNames.get(i));
+            generator.writeObject(values[i]);
+        }
+        generator.writeEndObject();
+    }
+
+    @Override
+    public void end() throws IOException {
+        generator.writeEndArray();
+    }
+}
@@ -5,21 +5,18 @@ import com.aidb.aidb_backend.model.dto.TableDTO;
 import com.aidb.aidb_backend.model.postgres.ColumnMetadata;
 import com.aidb.aidb_backend.model.postgres.Project;
 import com.aidb.aidb_backend.model.postgres.TableMetadata;
-import com.aidb.aidb_backend.repository.DynamicTableRepository;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
 public class ProjectConversionService {
 
-    @Autowired
-    DynamicTableRepository dynamicTableRepository;
-
+    /**
+     * Project and table metadata only. Table rows are fetched a page at a time
+     * through TableMetadataService.getTableRows.
+     */
     public ProjectDTO convertProjectToDTO(Project project) {
         ProjectDTO dto = new ProjectDTO();
         dto.setId(String.valueOf(project.getId()));
@@ -28,7 +25,7 @@ public class ProjectConversionService {
 
         if (project.getTables() != null) {
             List<TableDTO> tableDTOS = project.getTables().stream()
-                    .map(this::convertTableToTableDtoWithData)
+                    .map(this::convertTableToTableDto)
                     .collect(Collectors.toList());
             dto.setTables(tableDTOS);
         }
@@ -36,7 +33,7 @@ public class ProjectConversionService {
         return dto;
     }
 
-    private TableDTO convertTableToTableDtoWithData(TableMetadata table) {
+    private TableDTO convertTableToTableDto(TableMetadata table) {
         TableDTO dto = new TableDTO();
         dto.setId(String.valueOf(table.getId()));
         dto.setFileName(table.getFileName());
@@ -50,16 +47,6 @@ public class ProjectConversionService {
             dto.setColumns(columnDTOS);
         }
 
-        // Fetch actual table data via repository
-        List<List<Object>> tableRows = dynamicTableRepository.fetchAllRows(table.getTableName()).stream()
-                .map(row -> row.entrySet().stream()
-                        .filter(e -> !e.getKey().equalsIgnoreCase("id")) // skip the id column
-                        .map(Map.Entry::getValue)
-                        .collect(Collectors.toList())
-                )
-                .collect(Collectors.toList());
-
-        dto.setRows(tableRows);
         return dto;
     }
 
@@ -0,0 +1,15 @@
+package com.aidb.aidb_backend.service.util.sql;
+
+import com.aidb.aidb_backend.service.database.postgres.user_created_tables.QueryResultHandler;
+
+import java.io.IOException;
+
+/**
+ * Writes a streamed query result to a response as one value, opened by {@link #start} and closed by {@link #end}.
+ */
+public interface QueryResultWriter extends QueryResultHandler {
+
+    void start() throws IOException;
+
+    void end() throws IOException;
+}
@@ -0,0 +1,266 @@
+package com.aidb.aidb_backend.service.util.sql;
+
+import com.aidb.aidb_backend.exception.IllegalSqlException;
+import com.aidb.aidb_backend.exception.TableNotFoundException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.FromItem;
+import net.sf.jsqlparser.statement.select.Join;
+import net.sf.jsqlparser.statement.select.ParenthesedFromItem;
+import net.sf.jsqlparser.statement.select.ParenthesedSelect;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.statement.select.SetOperationList;
+import net.sf.jsqlparser.statement.select.WithItem;
+import net.sf.jsqlparser.util.TablesNamesFinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Turns user SQL into SQL that is safe to run as the query user.
+ * The SQL is parsed once; validation and table name rewriting both work on that tree.
+ * Results are cached per (project, SQL, table name mapping), so re-running a query skips parsing entirely.
+ */
+@Service
+public class SafeSqlCompiler {
+
+    private static final String DISALLOWED_OPERATIONS = "SQL contains disallowed operations.";
+
+    private static final Pattern DISALLOWED_KEYWORDS = Pattern.compile(
+            "\\b(insert|update|delete|merge|drop|truncate|alter|create|grant|revoke|exec|execute|copy|call)\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    // FOR UPDATE, FOR NO KEY UPDATE, FOR SHARE, FOR KEY SHARE
+    private static final Pattern LOCKING_CLAUSE = Pattern.compile(
+            "\\bfor\\s+(no\\s+key\\s+update|update|key\\s+share|share)\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    // Functions whose result changes between runs of the same SQL, so the result can't be reused
+    private static final Pattern VOLATILE_FUNCTIONS = Pattern.compile(
+            "\\b(now|random|setseed|clock_timestamp|statement_timestamp|transaction_timestamp|timeofday"
+                    + "|current_date|current_time|current_timestamp|localtime|localtimestamp"
+                    + "|current_user|current_role|current_schema|session_user|user"
+                    + "|nextval|currval|lastval|setval|gen_random_uuid|uuid_generate_v\\w*|txid_current\\w*|pg_\\w+)\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    private final Cache<CacheKey, CompiledSql> compiledSqlCache;
+
+    public SafeSqlCompiler(@Value("${sql.compiled-cache.max-size:1000}") long maxSize) {
+        this.compiledSqlCache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .build();
+    }
+
+    // The mapping is part of the key, so a changed mapping is a different entry and stale rewrites are never served
+    private record CacheKey(Long projectId, String sql, Map<String, String> tableNameMapping) {
+    }
+
+    /**
+     * @param sql           rewritten SQL, safe to run as the query user
+     * @param tables        physical tables the SQL reads, lower case, as found in the parsed statement
+     * @param deterministic false if the SQL calls a function whose result changes between runs, like now() or random()
+     */
+    public record CompiledSql(String sql, Set<String> tables, boolean deterministic) {
+    }
+
+    public String compile(Long projectId, String rawSql, Map<String, String> tableNameMapping) {
+        return compileQuery(projectId, rawSql, tableNameMapping).sql();
+    }
+
+    /**
+     * Same as {@link #compile}, along with what the SQL reads, for callers that reuse its results.
+     */
+    public CompiledSql compileQuery(Long projectId, String rawSql, Map<String, String> tableNameMapping) {
+        String sql = rawSql.trim();
+        CacheKey key = new CacheKey(projectId, sql, Map.copyOf(tableNameMapping));
+
+        CompiledSql compiledSql = compiledSqlCache.getIfPresent(key);
+        if (compiledSql == null) {
+            compiledSql = compileUncached(sql, tableNameMapping);
+            compiledSqlCache.put(key, compiledSql);
+        }
+
+        return compiledSql;
+    }
+
+    private CompiledSql compileUncached(String sql, Map<String, String> tableNameMapping) {
+        // Comments and statement separators are dropped by the parser, so they have to be checked on the text
+        if (!startsWithSelect(sql) || sql.contains(";") || sql.contains("--") || sql.contains("/*")) {
+            throw new IllegalSqlException(DISALLOWED_OPERATIONS, HttpStatus.BAD_REQUEST);
+        }
+
+        // Also checked on the text, so a construct the tree walk below misses is still caught
+        String code = withoutQuotedText(sql);
+        if (DISALLOWED_KEYWORDS.matcher(code).find() || LOCKING_CLAUSE.matcher(code).find()) {
+            throw new IllegalSqlException(DISALLOWED_OPERATIONS, HttpStatus.BAD_REQUEST);
+        }
+
+        Statement statement;
+        try {
+            statement = CCJSqlParserUtil.parse(sql);
+        } catch (Exception e) {
+            throw new IllegalSqlException("Invalid SQL syntax: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+
+        validateStatement(statement);
+
+        String compiledSql = new SqlTableNameReplacer(tableNameMapping).replaceTables(statement);
+        boolean deterministic = !VOLATILE_FUNCTIONS.matcher(withoutQuotedText(compiledSql)).find();
+
+        return new CompiledSql(compiledSql, findTables(statement, tableNameMapping), deterministic);
+    }
+
+    /**
+     * Every table the rewritten statement reads, wherever it appears.
+     * The replacer only rewrites the places it knows about, so anything left that isn't one of the project's
+     * tables (e.g. in a select-list subquery) is rejected here rather than run.
+     */
+    private Set<String> findTables(Statement statement, Map<String, String> tableNameMapping) {
+        Set<String> allowed = new HashSet<>();
+        for (String table : tableNameMapping.values()) {
+            allowed.add(table.toLowerCase(Locale.ROOT));
+        }
+
+        Set<String> found;
+        try {
+            found = new TopLevelCteTablesNamesFinder((Select) statement).getTables(statement);
+        } catch (IllegalSqlException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new IllegalSqlException("Unable to determine which tables the SQL reads.", HttpStatus.BAD_REQUEST);
+        }
+
+        Set<String> tables = new HashSet<>();
+        for (String table : found) {
+            String name = table.replace("\"", "").toLowerCase(Locale.ROOT);
+            if (!allowed.contains(name)) {
+                throw new TableNotFoundException(table);
+            }
+            tables.add(name);
+        }
+        return Set.copyOf(tables);
+    }
+
+    /**
+     * CTE names are left out of the tables found for the whole statement, not just their scope,
+     * so only WITH at the top level is allowed; there its names are visible everywhere.
+     */
+    private static class TopLevelCteTablesNamesFinder extends TablesNamesFinder {
+
+        private final List<WithItem> topLevelWithItems;
+
+        TopLevelCteTablesNamesFinder(Select select) {
+            this.topLevelWithItems = select.getWithItemsList() != null ? select.getWithItemsList() : List.of();
+        }
+
+        @Override
+        public void visit(WithItem withItem) {
+            if (topLevelWithItems.stream().noneMatch(topLevel -> topLevel == withItem)) {
+                throw new IllegalSqlException("WITH is only allowed at the start of the query.", HttpStatus.BAD_REQUEST);
+            }
+            super.visit(withItem);
+        }
+    }
+
+    // String literals and quoted identifiers blanked out, so keywords inside them don't count
+    private String withoutQuotedText(String sql) {
+        StringBuilder code = new StringBuilder(sql.length());
+        char quote = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char ch = sql.charAt(i);
+            if (quote == 0) {
+                if (ch == '\'' || ch == '"') {
+                    quote = ch;
+                }
+                code.append(quote == 0 ? ch : ' ');
+            } else {
+                // A doubled quote is an escaped quote and stays inside
+                if (ch == quote && (i + 1 >= sql.length() || sql.charAt(i + 1) != quote)) {
+                    quote = 0;
+                } else if (ch == quote) {
+                    i++;
+                }
+                code.append(' ');
+            }
+        }
+        return code.toString();
+    }
+
+    private boolean startsWithSelect(String sql) {
+        int end = 0;
+        while (end < sql.length() && Character.isLetter(sql.charAt(end))) {
+            end++;
+        }
+        String firstWord = sql.substring(0, end);
+
+        return firstWord.equalsIgnoreCase("select")
+                || firstWord.equalsIgnoreCase("with")
+                || sql.startsWith("(");
+    }
+
+    private void validateStatement(Statement statement) {
+        if (!(statement instanceof Select select)) {
+            throw new IllegalSqlException(DISALLOWED_OPERATIONS, HttpStatus.BAD_REQUEST);
+        }
+
+        validateSelect(select);
+    }
+
+    private void validateSelect(Select select) {
+        // Postgres allows data-modifying statements in WITH, e.g. WITH x AS (DELETE ... RETURNING *) SELECT ...
+        if (select.getWithItemsList() != null) {
+            for (WithItem withItem : select.getWithItemsList()) {
+                if (withItem.getSelect() == null) {
+                    throw new IllegalSqlException(DISALLOWED_OPERATIONS, HttpStatus.BAD_REQUEST);
+                }
+                validateSelect(withItem.getSelect());
+            }
+        }
+
+        if (select instanceof PlainSelect plain) {
+            // SELECT ... INTO creates a table
+            if (plain.getIntoTables() != null && !plain.getIntoTables().isEmpty()) {
+                throw new IllegalSqlException(DISALLOWED_OPERATIONS, HttpStatus.BAD_REQUEST);
+            }
+
+            validateFromItem(plain.getFromItem());
+            if (plain.getJoins() != null) {
+                for (Join join : plain.getJoins()) {
+                    validateFromItem(join.getRightItem());
+                }
+            }
+        } else if (select instanceof SetOperationList setOps) {
+            for (Select body : setOps.getSelects()) {
+                validateSelect(body);
+            }
+        } else if (select instanceof ParenthesedSelect ps) {
+            validateSelect(ps.getSelect());
+        } else {
+            throw new IllegalSqlException("Only SELECT statements are allowed.", HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    // Subqueries in FROM and JOIN are validated like the outer query
+    private void validateFromItem(FromItem fromItem) {
+        if (fromItem instanceof Select nested) {
+            validateSelect(nested);
+        } else if (fromItem instanceof ParenthesedFromItem parenthesed) {
+            validateFromItem(parenthesed.getFromItem());
+            if (parenthesed.getJoins() != null) {
+                for (Join join : parenthesed.getJoins()) {
+                    validateFromItem(join.getRightItem());
+                }
+            }
+        }
+    }
+}
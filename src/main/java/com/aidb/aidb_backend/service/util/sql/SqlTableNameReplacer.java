@@ -13,32 +13,55 @@ import net.sf.jsqlparser.expression.Expression;
 import net.sf.jsqlparser.expression.BinaryExpression;
 
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Function;
 
 /**
  * Table name replacer for Select statements
  * Supports subqueries, joins, and nested queries.
- * CTEs not currently supported.
+ * CTEs are supported at the top level of the statement, which is the only place SafeSqlCompiler allows them.
  */
 public class SqlTableNameReplacer {
 
     private final Map<String, String> tableNameMapping;
     private final Map<String, String> aliasToTable = new HashMap<>();
 
+    // Lower-case names of the statement's CTEs; references to them are left as written
+    private final Set<String> cteNames = new HashSet<>();
+
     public SqlTableNameReplacer(Map<String, String> tableNameMapping) {
         this.tableNameMapping = tableNameMapping;
     }
 
     public String replaceTables(String sql) throws JSQLParserException {
-        Statement stmt = CCJSqlParserUtil.parse(sql);
+        return replaceTables(CCJSqlParserUtil.parse(sql));
+    }
 
+    /**
+     * Rewrites an already parsed statement in place and returns the resulting SQL.
+     */
+    public String replaceTables(Statement stmt) {
         if (!(stmt instanceof net.sf.jsqlparser.statement.select.PlainSelect
                 || stmt instanceof SetOperationList
                 || stmt instanceof ParenthesedSelect)) {
             throw new IllegalArgumentException("Only SELECT statements are supported.");
         }
 
+        // Top-level CTEs are visible in the whole statement, including each other's bodies
+        List<WithItem> withItems = ((Select) stmt).getWithItemsList();
+        if (withItems != null) {
+            for (WithItem withItem : withItems) {
+                cteNames.add(withItem.getAlias().getName().toLowerCase(Locale.ROOT));
+            }
+            for (WithItem withItem : withItems) {
+                handleSelectStatement(withItem.getSelect());
+            }
+        }
+
         // Handle top-level statement
         handleSelectStatement(stmt);
 
@@ -92,9 +115,8 @@ public class SqlTableNameReplacer {
 
     private void processExpression(Expression expr) {
         if (expr instanceof Column column) {
-            String tableName = column.getTable() != null ? column.getTable().getName() : null;
-            if (tableName != null) {
-                column.getTable().setName(mapTableNameIfFound(tableName));
+            if (column.getTable() != null && column.getTable().getName() != null) {
+                mapTable(column.getTable());
             }
         } else if (expr instanceof BinaryExpression be) {
             processExpression(be.getLeftExpression());
@@ -113,7 +135,7 @@ public class SqlTableNameReplacer {
     private void processFromItem(FromItem fromItem) {
         if (fromItem instanceof Table table) {
             // Replace table name using mapping, preserving alias
-            table.setName(mapTableNameIfFound(table.getName()));
+            mapTable(table);
         } else if (fromItem instanceof ParenthesedFromItem pfi) {
             // Only process the inner FromItem; joins are handled in enclosing PlainSelect
             processFromItem(pfi.getFromItem());
@@ -122,6 +144,15 @@ public class SqlTableNameReplacer {
         }
     }
 
+    private void mapTable(Table table) {
+        // A CTE is only ever referenced by its bare name
+        if (table.getSchemaName() == null && cteNames.contains(table.getName().toLowerCase(Locale.ROOT))) {
+            return;
+        }
+
+        table.setName(mapTableNameIfFound(table.getName()));
+    }
+
     private String mapTableNameIfFound(String tableName) throws TableNotFoundException {
         String mappedName = tableNameMapping.get(tableName);
 
@@ -0,0 +1,38 @@
+package com.aidb.aidb_backend.config.api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JacksonConfigTest {
+
+    private final JacksonConfig jacksonConfig = new JacksonConfig();
+
+    @Test
+    void smileConverter_encodesLongsAsNumbers_likeJson() throws Exception {
+        ObjectMapper jsonMapper = jacksonConfig.objectMapper();
+        ObjectMapper smileMapper = jacksonConfig.smileHttpMessageConverter().getObjectMapper();
+        Map<String, Object> row = Map.of("id", 9007199254740993L);
+
+        JsonNode json = jsonMapper.readTree(jsonMapper.writeValueAsBytes(row));
+        JsonNode smile = smileMapper.readTree(smileMapper.writeValueAsBytes(row));
+
+        assertTrue(json.get("id").isIntegralNumber());
+        assertTrue(smile.get("id").isIntegralNumber());
+        assertEquals(9007199254740993L, smile.get("id").longValue());
+    }
+
+    @Test
+    void smileConverter_encodesJavaTimeTypes() throws Exception {
+        ObjectMapper smileMapper = jacksonConfig.smileHttpMessageConverter().getObjectMapper();
+
+        byte[] encoded = smileMapper.writeValueAsBytes(Map.of("day", LocalDate.of(2024, 1, 31)));
+
+        assertFalse(smileMapper.readTree(encoded).get("day").isMissingNode());
+    }
+}
@@ -0,0 +1,167 @@
+package com.aidb.aidb_backend.controller;
+
+import com.aidb.aidb_backend.config.api.StreamingUsageInterceptor;
+import com.aidb.aidb_backend.exception.UserLimitExceededException;
+import com.aidb.aidb_backend.model.api.APIResponse;
+import com.aidb.aidb_backend.model.api.StreamingData;
+import com.aidb.aidb_backend.model.api.TierInfo;
+import com.aidb.aidb_backend.model.firestore.User;
+import com.aidb.aidb_backend.model.firestore.util.LimitedOperation;
+import com.aidb.aidb_backend.orchestrator.LimitsOrchestrator;
+import com.aidb.aidb_backend.orchestrator.UsageMeter;
+import com.aidb.aidb_backend.orchestrator.UsageReservation;
+import com.aidb.aidb_backend.security.authorization.FirebaseAuthService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class BaseControllerTest {
+
+    static class TestController extends BaseController {
+    }
+
+    @Mock
+    private FirebaseAuthService firebaseAuthService;
+
+    @Mock
+    private LimitsOrchestrator limitsOrchestrator;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Spy
+    private MappingJackson2SmileHttpMessageConverter smileConverter = new MappingJackson2SmileHttpMessageConverter();
+
+    @InjectMocks
+    private TestController controller;
+
+    private final UsageReservation reservation = mock(UsageReservation.class);
+
+    private MockHttpServletRequest request;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+
+        when(firebaseAuthService.authorizeUser("token")).thenReturn(new User("user-1", "name", "email"));
+        when(limitsOrchestrator.reserve("user-1", LimitedOperation.QUERY, 1)).thenReturn(reservation);
+
+        request = new MockHttpServletRequest();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void streaming_success_commitsUsage() throws Exception {
+        StreamingResponseBody body = stream(generator -> generator.writeString("rows")).getBody();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        body.writeTo(out);
+
+        verify(limitsOrchestrator).commit(reservation);
+        assertTrue(out.toString().startsWith("{\"data\":\"rows\""));
+    }
+
+    @Test
+    void streaming_dataFails_releasesUsage() throws Exception {
+        StreamingResponseBody body = stream(generator -> {
+            throw new IllegalStateException("query failed");
+        }).getBody();
+
+        assertThrows(IllegalStateException.class, () -> body.writeTo(new ByteArrayOutputStream()));
+
+        verify(limitsOrchestrator).release(reservation);
+        verify(limitsOrchestrator, never()).commit(any());
+    }
+
+    @Test
+    void streaming_failsBeforeStreaming_releasesUsage() throws Exception {
+        StreamingResponseBody body = stream(generator -> generator.writeString("rows")).getBody();
+
+        // Fails before the data is reached
+        doThrow(new IllegalStateException("no factory")).when(objectMapper).getFactory();
+
+        assertThrows(IllegalStateException.class, () -> body.writeTo(new ByteArrayOutputStream()));
+
+        verify(limitsOrchestrator).release(reservation);
+        verify(limitsOrchestrator, never()).commit(any());
+    }
+
+    @Test
+    void streaming_bodyNeverRuns_releasedAfterCompletion() throws Exception {
+        stream(generator -> generator.writeString("rows"));
+
+        // Async processing timed out or the client disconnected before the body was written
+        new StreamingUsageInterceptor(limitsOrchestrator).afterCompletion(new ServletWebRequest(request), null);
+
+        verify(limitsOrchestrator).release(reservation);
+        verify(limitsOrchestrator, never()).commit(any());
+    }
+
+    @Test
+    void streaming_actionFails_releasesUsage() throws Exception {
+        assertThrows(IOException.class, () -> controller.handleStreamingRequestWithLimit("token",
+                LimitedOperation.QUERY, 1, (user, args) -> {
+                    throw new IOException("bad request");
+                }));
+
+        verify(limitsOrchestrator).release(reservation);
+        assertNull(request.getAttribute(StreamingUsageInterceptor.RESERVATION_ATTRIBUTE));
+    }
+
+    @Test
+    void metered_success_commitsMeter() throws Exception {
+        UsageMeter meter = mock(UsageMeter.class);
+        TierInfo tierInfo = TierInfo.builder().userId("user-1").build();
+        when(limitsOrchestrator.getUserTierInfo("user-1")).thenReturn(tierInfo);
+        when(limitsOrchestrator.openMeter(tierInfo, LimitedOperation.DATA_ROW)).thenReturn(meter);
+        when(meter.commit()).thenReturn(tierInfo);
+
+        ResponseEntity<APIResponse<String>> response = controller.handleMeteredRequestWithLimit("token",
+                LimitedOperation.DATA_ROW, (user, usageMeter, args) -> "uploaded");
+
+        assertEquals("uploaded", response.getBody().getData());
+        verify(meter).commit();
+        verify(meter, never()).release();
+    }
+
+    @Test
+    void metered_actionFails_releasesMeter() throws Exception {
+        UsageMeter meter = mock(UsageMeter.class);
+        TierInfo tierInfo = TierInfo.builder().userId("user-1").build();
+        when(limitsOrchestrator.getUserTierInfo("user-1")).thenReturn(tierInfo);
+        when(limitsOrchestrator.openMeter(tierInfo, LimitedOperation.DATA_ROW)).thenReturn(meter);
+
+        assertThrows(UserLimitExceededException.class, () -> controller.handleMeteredRequestWithLimit("token",
+                LimitedOperation.DATA_ROW, (user, usageMeter, args) -> {
+                    throw new UserLimitExceededException("Exceeded limit: DATA_ROW");
+                }));
+
+        verify(meter).release();
+        verify(meter, never()).commit();
+    }
+
+    private ResponseEntity<StreamingResponseBody> stream(StreamingData data) throws Exception {
+        return controller.handleStreamingRequestWithLimit("token", LimitedOperation.QUERY, 1, (user, args) -> data);
+    }
+}
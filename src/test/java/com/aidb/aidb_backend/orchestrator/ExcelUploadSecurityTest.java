@@ -45,6 +45,9 @@ class ExcelUploadSecurityTest {
     @Mock
     private ExcelUploadService excelUploadService;
 
+    @Mock
+    private UsageMeter dataRowMeter;
+
     @InjectMocks
     private ProjectOrchestrator orchestrator;
 
@@ -69,11 +72,11 @@ class ExcelUploadSecurityTest {
         when(tableMetadataService.getTableNames(USER_ID, PROJECT_ID_LONG)).thenReturn(tableNames);
 
         // The parser service handles null input stream gracefully
-        when(parserService.parseExcelFile(eq(projectOverview), eq(tableNames), isNull()))
+        when(parserService.parseExcelFile(eq(projectOverview), eq(tableNames), isNull(), any()))
             .thenThrow(new IOException("Cannot read from null input stream"));
 
-        assertThrows(IOException.class, () -> orchestrator.uploadExcel(USER_ID, PROJECT_ID, file));
-        verify(parserService).parseExcelFile(eq(projectOverview), eq(tableNames), isNull());
+        assertThrows(IOException.class, () -> orchestrator.uploadExcel(USER_ID, PROJECT_ID, file, dataRowMeter));
+        verify(parserService).parseExcelFile(eq(projectOverview), eq(tableNames), isNull(), any());
         verifyNoInteractions(dataValidatorService, excelUploadService);
     }
 
@@ -90,11 +93,11 @@ class ExcelUploadSecurityTest {
         Set<String> tableNames = Set.of("table1");
         when(tableMetadataService.getTableNames(USER_ID, PROJECT_ID_LONG)).thenReturn(tableNames);
 
-        when(parserService.parseExcelFile(eq(projectOverview), eq(tableNames), any()))
+        when(parserService.parseExcelFile(eq(projectOverview), eq(tableNames), any(), any()))
                 .thenThrow(new IOException("Invalid Excel file format"));
 
-        assertThrows(IOException.class, () -> orchestrator.uploadExcel(USER_ID, PROJECT_ID, file));
-        verify(parserService).parseExcelFile(eq(projectOverview), eq(tableNames), any());
+        assertThrows(IOException.class, () -> orchestrator.uploadExcel(USER_ID, PROJECT_ID, file, dataRowMeter));
+        verify(parserService).parseExcelFile(eq(projectOverview), eq(tableNames), any(), any());
         verifyNoInteractions(dataValidatorService, excelUploadService);
     }
 
@@ -111,10 +114,10 @@ class ExcelUploadSecurityTest {
         when(tableMetadataService.getTableNames(USER_ID, PROJECT_ID_LONG)).thenReturn(tableNames);
 
         ProjectDTO projectData = new ProjectDTO();
-        when(parserService.parseExcelFile(eq(projectOverview), eq(tableNames), any())).thenReturn(projectData);
+        when(parserService.parseExcelFile(eq(projectOverview), eq(tableNames), any(), any())).thenReturn(projectData);
 
         // The system should still process the file content, not the filename
-        ProjectDTO result = orchestrator.uploadExcel(USER_ID, PROJECT_ID, file);
+        ProjectDTO result = orchestrator.uploadExcel(USER_ID, PROJECT_ID, file, dataRowMeter);
 
         assertSame(projectData, result);
         verify(dataValidatorService).validateData(projectData);
@@ -134,10 +137,10 @@ class ExcelUploadSecurityTest {
         when(tableMetadataService.getTableNames(USER_ID, PROJECT_ID_LONG)).thenReturn(tableNames);
 
         ProjectDTO projectData = new ProjectDTO();
-        when(parserService.parseExcelFile(eq(projectOverview), eq(tableNames), any())).thenReturn(projectData);
+        when(parserService.parseExcelFile(eq(projectOverview), eq(tableNames), any(), any())).thenReturn(projectData);
 
         // The system should process the file without being affected by the malicious filename
-        ProjectDTO result = orchestrator.uploadExcel(USER_ID, PROJECT_ID, file);
+        ProjectDTO result = orchestrator.uploadExcel(USER_ID, PROJECT_ID, file, dataRowMeter);
 
         assertSame(projectData, result);
         verify(dataValidatorService).validateData(projectData);
@@ -156,13 +159,13 @@ class ExcelUploadSecurityTest {
         when(tableMetadataService.getTableNames(USER_ID, PROJECT_ID_LONG)).thenReturn(tableNames);
 
         ProjectDTO projectData = new ProjectDTO();
-        when(parserService.parseExcelFile(eq(projectOverview), eq(tableNames), any())).thenReturn(projectData);
+        when(parserService.parseExcelFile(eq(projectOverview), eq(tableNames), any(), any())).thenReturn(projectData);
 
         // Simulate validation rejection of malicious content
         doThrow(new ExcelValidationException("Malicious content detected", null))
                 .when(dataValidatorService).validateData(projectData);
 
-        assertThrows(ExcelValidationException.class, () -> orchestrator.uploadExcel(USER_ID, PROJECT_ID, file));
+        assertThrows(ExcelValidationException.class, () -> orchestrator.uploadExcel(USER_ID, PROJECT_ID, file, dataRowMeter));
         verify(dataValidatorService).validateData(projectData);
         verifyNoInteractions(excelUploadService);
     }
@@ -179,13 +182,13 @@ class ExcelUploadSecurityTest {
         when(tableMetadataService.getTableNames(USER_ID, PROJECT_ID_LONG)).thenReturn(tableNames);
 
         ProjectDTO projectData = new ProjectDTO();
-        when(parserService.parseExcelFile(eq(projectOverview), eq(tableNames), any())).thenReturn(projectData);
+        when(parserService.parseExcelFile(eq(projectOverview), eq(tableNames), any(), any())).thenReturn(projectData);
 
         // Simulate database failure during upload
         doThrow(new RuntimeException("Database connection failed"))
                 .when(excelUploadService).upload(PROJECT_ID_LONG, projectData);
 
-        assertThrows(RuntimeException.class, () -> orchestrator.uploadExcel(USER_ID, PROJECT_ID, file));
+        assertThrows(RuntimeException.class, () -> orchestrator.uploadExcel(USER_ID, PROJECT_ID, file, dataRowMeter));
         verify(dataValidatorService).validateData(projectData);
         verify(excelUploadService).upload(PROJECT_ID_LONG, projectData);
     }
@@ -202,11 +205,11 @@ class ExcelUploadSecurityTest {
         when(tableMetadataService.getTableNames(USER_ID, PROJECT_ID_LONG)).thenReturn(tableNames);
 
         // Simulate parser throwing out of memory error for extremely large files
-        when(parserService.parseExcelFile(eq(projectOverview), eq(tableNames), any()))
+        when(parserService.parseExcelFile(eq(projectOverview), eq(tableNames), any(), any()))
                 .thenThrow(new OutOfMemoryError("Excel file too large"));
 
-        assertThrows(OutOfMemoryError.class, () -> orchestrator.uploadExcel(USER_ID, PROJECT_ID, file));
-        verify(parserService).parseExcelFile(eq(projectOverview), eq(tableNames), any());
+        assertThrows(OutOfMemoryError.class, () -> orchestrator.uploadExcel(USER_ID, PROJECT_ID, file, dataRowMeter));
+        verify(parserService).parseExcelFile(eq(projectOverview), eq(tableNames), any(), any());
         verifyNoInteractions(dataValidatorService, excelUploadService);
     }
 
@@ -223,11 +226,11 @@ class ExcelUploadSecurityTest {
         when(tableMetadataService.getTableNames(USER_ID, PROJECT_ID_LONG)).thenReturn(tableNames);
 
         // If the content is not valid Excel, parser should throw an exception
-        when(parserService.parseExcelFile(eq(projectOverview), eq(tableNames), any()))
+        when(parserService.parseExcelFile(eq(projectOverview), eq(tableNames), any(), any()))
                 .thenThrow(new IOException("Invalid Excel file format"));
 
-        assertThrows(IOException.class, () -> orchestrator.uploadExcel(USER_ID, PROJECT_ID, file));
-        verify(parserService).parseExcelFile(eq(projectOverview), eq(tableNames), any());
+        assertThrows(IOException.class, () -> orchestrator.uploadExcel(USER_ID, PROJECT_ID, file, dataRowMeter));
+        verify(parserService).parseExcelFile(eq(projectOverview), eq(tableNames), any(), any());
         verifyNoInteractions(dataValidatorService, excelUploadService);
     }
 
@@ -248,10 +251,10 @@ class ExcelUploadSecurityTest {
         when(tableMetadataService.getTableNames(USER_ID, PROJECT_ID_LONG)).thenReturn(tableNames);
 
         ProjectDTO projectData = new ProjectDTO();
-        when(parserService.parseExcelFile(eq(projectOverview), eq(tableNames), any())).thenReturn(projectData);
+        when(parserService.parseExcelFile(eq(projectOverview), eq(tableNames), any(), any())).thenReturn(projectData);
 
         // Should still complete successfully even if stream closure fails
-        ProjectDTO result = orchestrator.uploadExcel(USER_ID, PROJECT_ID, file);
+        ProjectDTO result = orchestrator.uploadExcel(USER_ID, PROJECT_ID, file, dataRowMeter);
 
         assertSame(projectData, result);
         verify(dataValidatorService).validateData(projectData);
@@ -271,13 +274,13 @@ class ExcelUploadSecurityTest {
         when(tableMetadataService.getTableNames(USER_ID, PROJECT_ID_LONG)).thenReturn(existingTableNames);
 
         ProjectDTO projectData = new ProjectDTO();
-        when(parserService.parseExcelFile(eq(projectOverview), eq(existingTableNames), any())).thenReturn(projectData);
+        when(parserService.parseExcelFile(eq(projectOverview), eq(existingTableNames), any(), any())).thenReturn(projectData);
 
-        ProjectDTO result = orchestrator.uploadExcel(USER_ID, PROJECT_ID, file);
+        ProjectDTO result = orchestrator.uploadExcel(USER_ID, PROJECT_ID, file, dataRowMeter);
 
         assertSame(projectData, result);
         // Verify that the existing table names were passed to prevent collisions
-        verify(parserService).parseExcelFile(eq(projectOverview), eq(existingTableNames), any());
+        verify(parserService).parseExcelFile(eq(projectOverview), eq(existingTableNames), any(), any());
         verify(dataValidatorService).validateData(projectData);
         verify(excelUploadService).upload(PROJECT_ID_LONG, projectData);
     }
@@ -294,11 +297,11 @@ class ExcelUploadSecurityTest {
         when(tableMetadataService.getTableNames(USER_ID, PROJECT_ID_LONG)).thenReturn(tableNames);
 
         // Simulate zip bomb detection (extremely large uncompressed size)
-        when(parserService.parseExcelFile(eq(projectOverview), eq(tableNames), any()))
+        when(parserService.parseExcelFile(eq(projectOverview), eq(tableNames), any(), any()))
                 .thenThrow(new IOException("Zip bomb detected: uncompressed size exceeds limit"));
 
-        assertThrows(IOException.class, () -> orchestrator.uploadExcel(USER_ID, PROJECT_ID, file));
-        verify(parserService).parseExcelFile(eq(projectOverview), eq(tableNames), any());
+        assertThrows(IOException.class, () -> orchestrator.uploadExcel(USER_ID, PROJECT_ID, file, dataRowMeter));
+        verify(parserService).parseExcelFile(eq(projectOverview), eq(tableNames), any(), any());
         verifyNoInteractions(dataValidatorService, excelUploadService);
     }
 }
\ No newline at end of file
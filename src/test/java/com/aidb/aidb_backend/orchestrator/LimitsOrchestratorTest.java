@@ -9,14 +9,17 @@ import com.aidb.aidb_backend.model.firestore.util.LimitedOperation;
 import com.aidb.aidb_backend.model.firestore.util.TierId;
 import com.aidb.aidb_backend.service.database.firestore.TierService;
 import com.aidb.aidb_backend.service.database.firestore.UserLimitsService;
+import com.aidb.aidb_backend.service.database.firestore.UserUsageLedger;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.concurrent.ExecutionException;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -28,6 +31,9 @@ class LimitsOrchestratorTest {
     @Mock
     private UserLimitsService userLimitsService;
 
+    @Mock
+    private UserUsageLedger userUsageLedger;
+
     @InjectMocks
     private LimitsOrchestrator limitsOrchestrator;
 
@@ -56,7 +62,7 @@ class LimitsOrchestratorTest {
         tier.setProjectLimit(2L);
         tier.setMaxFileSize(123L);
 
-        when(userLimitsService.getUserLimitsById(userId)).thenReturn(usage);
+        when(userUsageLedger.getUsage(userId)).thenReturn(usage);
         when(tierService.getTier(TierId.FREE)).thenReturn(tier);
 
         TierInfo info = limitsOrchestrator.getUserTierInfo(userId);
@@ -78,7 +84,7 @@ class LimitsOrchestratorTest {
     @Test
     void getUserTierInfo_userNotFound_propagatesException() throws Exception {
         String missingUserId = "missing";
-        when(userLimitsService.getUserLimitsById(missingUserId))
+        when(userUsageLedger.getUsage(missingUserId))
                 .thenThrow(new UserNotFoundException("not found"));
 
         assertThrows(UserNotFoundException.class, () ->
@@ -146,7 +152,7 @@ class LimitsOrchestratorTest {
     }
 
     @Test
-    void updateLimit_updatesUsageOnTierInfo_whenServiceReturnsValue() {
+    void updateLimit_updatesUsageOnTierInfo_fromLedger() throws Exception {
         TierInfo info = TierInfo.builder()
                 .name("FREE")
                 .userId("user-1")
@@ -161,18 +167,20 @@ class LimitsOrchestratorTest {
                 .maxFileSize(0L)
                 .build();
 
-        when(userLimitsService.updateLimitUsage("user-1", LimitedOperation.QUERY, 3))
+        when(userUsageLedger.record("user-1", LimitedOperation.QUERY, 3))
                 .thenReturn(4L);
 
         TierInfo returned = limitsOrchestrator.updateLimit(info, LimitedOperation.QUERY, 3);
 
         assertSame(info, returned);
         assertEquals(4L, returned.getQueryLimitUsage());
-        verify(userLimitsService, times(1)).updateLimitUsage("user-1", LimitedOperation.QUERY, 3);
+        verify(userUsageLedger, times(1)).record("user-1", LimitedOperation.QUERY, 3);
+        // Firestore is written by the ledger's flush, not on the request path
+        verify(userLimitsService, never()).incrementUsage(anyMap());
     }
 
     @Test
-    void updateLimit_setsNullUsage_whenServiceReturnsNullGracefully() {
+    void updateLimit_addsToRequestUsage_whenLedgerHasNoBaseline() {
         TierInfo info = TierInfo.builder()
                 .name("FREE")
                 .userId("user-1")
@@ -187,13 +195,172 @@ class LimitsOrchestratorTest {
                 .maxFileSize(0L)
                 .build();
 
-        when(userLimitsService.updateLimitUsage("user-1", LimitedOperation.QUERY, 5))
+        when(userUsageLedger.record("user-1", LimitedOperation.QUERY, 5))
                 .thenReturn(null);
 
         TierInfo returned = limitsOrchestrator.updateLimit(info, LimitedOperation.QUERY, 5);
 
-        assertNull(returned.getQueryLimitUsage());
-        verify(userLimitsService, times(1)).updateLimitUsage("user-1", LimitedOperation.QUERY, 5);
+        assertEquals(6L, returned.getQueryLimitUsage());
+        verify(userUsageLedger, times(1)).record("user-1", LimitedOperation.QUERY, 5);
+    }
+
+    @Test
+    void reserve_reservesAgainstTierLimit() throws Exception {
+        stubTierInfo("user-1", 10L);
+        when(userUsageLedger.reserve("user-1", LimitedOperation.QUERY, 1, 10L)).thenReturn(4L);
+
+        UsageReservation reservation = limitsOrchestrator.reserve("user-1", LimitedOperation.QUERY, 1);
+
+        assertEquals(LimitedOperation.QUERY, reservation.getOp());
+        assertEquals(1, reservation.getAmount());
+        assertFalse(reservation.isSettled());
+        verify(userUsageLedger, times(1)).reserve("user-1", LimitedOperation.QUERY, 1, 10L);
+    }
+
+    @Test
+    void reserve_throwsWhenLimitWouldBeExceeded() throws Exception {
+        stubTierInfo("user-1", 10L);
+        when(userUsageLedger.reserve("user-1", LimitedOperation.QUERY, 1, 10L)).thenReturn(null);
+
+        assertThrows(UserLimitExceededException.class, () ->
+                limitsOrchestrator.reserve("user-1", LimitedOperation.QUERY, 1)
+        );
+    }
+
+    @Test
+    void reserve_passesNoLimitForUnlimitedTier() throws Exception {
+        stubTierInfo("user-1", -1L);
+        when(userUsageLedger.reserve("user-1", LimitedOperation.QUERY, 1, null)).thenReturn(10_001L);
+
+        assertDoesNotThrow(() -> limitsOrchestrator.reserve("user-1", LimitedOperation.QUERY, 1));
+    }
+
+    @Test
+    void commit_recordsReservedUsage_onlyOnce() throws Exception {
+        stubTierInfo("user-1", 10L);
+        when(userUsageLedger.reserve("user-1", LimitedOperation.QUERY, 1, 10L)).thenReturn(4L);
+        when(userUsageLedger.commit("user-1", LimitedOperation.QUERY, 1)).thenReturn(4L);
+
+        UsageReservation reservation = limitsOrchestrator.reserve("user-1", LimitedOperation.QUERY, 1);
+        TierInfo info = limitsOrchestrator.commit(reservation);
+
+        assertEquals(4L, info.getQueryLimitUsage());
+        assertThrows(IllegalStateException.class, () -> limitsOrchestrator.commit(reservation));
+
+        // Releasing after commit must not give the usage back
+        limitsOrchestrator.release(reservation);
+        verify(userUsageLedger, never()).release(any(), any(), anyLong());
+    }
+
+    @Test
+    void release_givesReservationBack() throws Exception {
+        stubTierInfo("user-1", 10L);
+        when(userUsageLedger.reserve("user-1", LimitedOperation.QUERY, 2, 10L)).thenReturn(5L);
+
+        UsageReservation reservation = limitsOrchestrator.reserve("user-1", LimitedOperation.QUERY, 2);
+        limitsOrchestrator.release(reservation);
+        limitsOrchestrator.release(reservation);
+
+        verify(userUsageLedger, times(1)).release("user-1", LimitedOperation.QUERY, 2);
+        verify(userUsageLedger, never()).commit(any(), any(), anyLong());
+    }
+
+    @Test
+    void commit_ofPartOfReservation_releasesTheRest() throws Exception {
+        stubTierInfo("user-1", 10L);
+        when(userUsageLedger.reserve("user-1", LimitedOperation.QUERY, 5, 10L)).thenReturn(8L);
+        when(userUsageLedger.commit("user-1", LimitedOperation.QUERY, 2)).thenReturn(5L);
+
+        UsageReservation reservation = limitsOrchestrator.reserve("user-1", LimitedOperation.QUERY, 5);
+        TierInfo info = limitsOrchestrator.commit(reservation, 2);
+
+        assertEquals(5L, info.getQueryLimitUsage());
+        verify(userUsageLedger, times(1)).release("user-1", LimitedOperation.QUERY, 3);
+        verify(userUsageLedger, times(1)).commit("user-1", LimitedOperation.QUERY, 2);
+    }
+
+    @Test
+    void meter_reservesAheadThroughLedger_andGivesBackUnusedUsageOnCommit() throws Exception {
+        UserUsageLedger ledger = useLedgerWithDataRows("user-1", 0L);
+        UsageMeter meter = limitsOrchestrator.openMeter(dataRowTierInfo("user-1", 100L), LimitedOperation.DATA_ROW);
+
+        for (int i = 0; i < 5; i++) {
+            meter.record(1);
+        }
+
+        // Two batches of 4 are held while the upload runs
+        assertEquals(8L, ledger.getUsage("user-1").getDataRowLimitUsage());
+
+        TierInfo info = meter.commit();
+
+        assertEquals(5L, info.getDataRowLimitUsage());
+        assertEquals(5L, ledger.getUsage("user-1").getDataRowLimitUsage());
+    }
+
+    @Test
+    void meter_concurrentUploadsCannotBothPassTheLimit() throws Exception {
+        UserUsageLedger ledger = useLedgerWithDataRows("user-1", 0L);
+        UsageMeter first = limitsOrchestrator.openMeter(dataRowTierInfo("user-1", 10L), LimitedOperation.DATA_ROW);
+        UsageMeter second = limitsOrchestrator.openMeter(dataRowTierInfo("user-1", 10L), LimitedOperation.DATA_ROW);
+
+        for (int i = 0; i < 6; i++) {
+            first.record(1);
+        }
+        // Only what the first upload hasn't reserved is left, one row at a time
+        second.record(1);
+        second.record(1);
+        assertThrows(UserLimitExceededException.class, () -> second.record(1));
+
+        second.release();
+        first.commit();
+
+        assertEquals(6L, ledger.getUsage("user-1").getDataRowLimitUsage());
+    }
+
+    @Test
+    void meter_release_givesEverythingBack() throws Exception {
+        UserUsageLedger ledger = useLedgerWithDataRows("user-1", 2L);
+        UsageMeter meter = limitsOrchestrator.openMeter(dataRowTierInfo("user-1", 10L), LimitedOperation.DATA_ROW);
+
+        meter.record(3);
+        meter.release();
+
+        assertEquals(2L, ledger.getUsage("user-1").getDataRowLimitUsage());
+    }
+
+    private UserUsageLedger useLedgerWithDataRows(String userId, Long dataRowUsage) throws Exception {
+        UserLimitsUsage usage = UserLimitsUsage.createNewUserLimits(userId);
+        usage.setDataRowLimitUsage(dataRowUsage);
+        when(userLimitsService.getUserLimitsById(userId)).thenReturn(usage);
+
+        UserUsageLedger ledger = new UserUsageLedger();
+        ReflectionTestUtils.setField(ledger, "userLimitsService", userLimitsService);
+        ReflectionTestUtils.setField(ledger, "maxStalenessMs", 60_000L);
+
+        ReflectionTestUtils.setField(limitsOrchestrator, "userUsageLedger", ledger);
+        ReflectionTestUtils.setField(limitsOrchestrator, "meterReserveBatchSize", 4);
+        return ledger;
+    }
+
+    private TierInfo dataRowTierInfo(String userId, Long dataRowLimit) {
+        return TierInfo.builder()
+                .userId(userId)
+                .dataRowLimit(dataRowLimit)
+                .dataRowLimitUsage(0L)
+                .build();
+    }
+
+    @Test
+    void getQueryTimeoutMs_usesTierTimeout_orDefault() throws Exception {
+        ReflectionTestUtils.setField(limitsOrchestrator, "defaultQueryTimeoutMs", 30_000L);
+        stubTierInfo("user-1", 10L);
+        assertEquals(30_000L, limitsOrchestrator.getQueryTimeoutMs("user-1"));
+
+        tierService.getTier(TierId.FREE).setQueryTimeoutMs(5_000L);
+        assertEquals(5_000L, limitsOrchestrator.getQueryTimeoutMs("user-1"));
+
+        when(userUsageLedger.getUsage("user-2")).thenThrow(new UserNotFoundException("not found"));
+        assertEquals(30_000L, limitsOrchestrator.getQueryTimeoutMs("user-2"));
     }
 
     @Test
@@ -218,6 +385,18 @@ class LimitsOrchestratorTest {
         assertNull(saved.getLastUpdated());
     }
 
+    private void stubTierInfo(String userId, Long queryLimit) throws Exception {
+        UserLimitsUsage usage = UserLimitsUsage.createNewUserLimits(userId);
+        usage.setQueryLimitUsage(3L);
+
+        Tier tier = new Tier();
+        tier.setName("FREE");
+        tier.setQueryLimit(queryLimit);
+
+        when(userUsageLedger.getUsage(userId)).thenReturn(usage);
+        when(tierService.getTier(TierId.FREE)).thenReturn(tier);
+    }
+
     @Test
     void setupLimitsForNewUser_propagatesServiceException() throws Exception {
         String newUserId = "new-user";
@@ -54,6 +54,9 @@ class ProjectOrchestratorSecurityTest {
     @Mock
     private ProjectConversionService projectConversionService;
 
+    @Mock
+    private UsageMeter dataRowMeter;
+
     @InjectMocks
     private ProjectOrchestrator orchestrator;
 
@@ -70,7 +73,7 @@ class ProjectOrchestratorSecurityTest {
         // The implementation checks project first, so it throws ProjectNotFoundException for null project
         when(projectService.getProjectOverviewDTO(userId, 123L)).thenReturn(null);
         
-        assertThrows(ProjectNotFoundException.class, () -> orchestrator.uploadExcel(userId, projectId, null));
+        assertThrows(ProjectNotFoundException.class, () -> orchestrator.uploadExcel(userId, projectId, null, dataRowMeter));
         verify(projectService).getProjectOverviewDTO(userId, 123L);
         verifyNoInteractions(tableMetadataService, parserService, dataValidatorService, excelUploadService);
     }
@@ -81,7 +84,7 @@ class ProjectOrchestratorSecurityTest {
         String invalidProjectId = "not-a-number";
         MultipartFile file = mock(MultipartFile.class);
 
-        assertThrows(NumberFormatException.class, () -> orchestrator.uploadExcel(userId, invalidProjectId, file));
+        assertThrows(NumberFormatException.class, () -> orchestrator.uploadExcel(userId, invalidProjectId, file, dataRowMeter));
         verifyNoInteractions(projectService, tableMetadataService, parserService, dataValidatorService, excelUploadService);
     }
 
@@ -93,7 +96,7 @@ class ProjectOrchestratorSecurityTest {
 
         when(projectService.getProjectOverviewDTO(userId, -1L)).thenReturn(null);
 
-        assertThrows(ProjectNotFoundException.class, () -> orchestrator.uploadExcel(userId, negativeProjectId, file));
+        assertThrows(ProjectNotFoundException.class, () -> orchestrator.uploadExcel(userId, negativeProjectId, file, dataRowMeter));
         verify(projectService).getProjectOverviewDTO(userId, -1L);
         verifyNoInteractions(tableMetadataService, parserService, dataValidatorService, excelUploadService);
     }
@@ -106,7 +109,7 @@ class ProjectOrchestratorSecurityTest {
 
         when(projectService.getProjectOverviewDTO(userId, 0L)).thenReturn(null);
 
-        assertThrows(ProjectNotFoundException.class, () -> orchestrator.uploadExcel(userId, zeroProjectId, file));
+        assertThrows(ProjectNotFoundException.class, () -> orchestrator.uploadExcel(userId, zeroProjectId, file, dataRowMeter));
         verify(projectService).getProjectOverviewDTO(userId, 0L);
         verifyNoInteractions(tableMetadataService, parserService, dataValidatorService, excelUploadService);
     }
@@ -125,9 +128,9 @@ class ProjectOrchestratorSecurityTest {
         when(tableMetadataService.getTableNames(userId, Long.MAX_VALUE)).thenReturn(tableNames);
 
         ProjectDTO expectedDto = new ProjectDTO();
-        when(parserService.parseExcelFile(eq(projectOverview), eq(tableNames), any())).thenReturn(expectedDto);
+        when(parserService.parseExcelFile(eq(projectOverview), eq(tableNames), any(), any())).thenReturn(expectedDto);
 
-        ProjectDTO result = orchestrator.uploadExcel(userId, largeProjectId, file);
+        ProjectDTO result = orchestrator.uploadExcel(userId, largeProjectId, file, dataRowMeter);
 
         assertSame(expectedDto, result);
         verify(projectService).getProjectOverviewDTO(userId, Long.MAX_VALUE);
@@ -146,7 +149,7 @@ class ProjectOrchestratorSecurityTest {
         // Project belongs to legitimate user, but malicious user tries to access it
         when(projectService.getProjectOverviewDTO(maliciousUserId, 123L)).thenReturn(null);
 
-        assertThrows(ProjectNotFoundException.class, () -> orchestrator.uploadExcel(maliciousUserId, projectId, file));
+        assertThrows(ProjectNotFoundException.class, () -> orchestrator.uploadExcel(maliciousUserId, projectId, file, dataRowMeter));
         verify(projectService).getProjectOverviewDTO(maliciousUserId, 123L);
         verifyNoInteractions(tableMetadataService, parserService, dataValidatorService, excelUploadService);
     }
@@ -164,7 +167,7 @@ class ProjectOrchestratorSecurityTest {
         Set<String> tableNames = Set.of("table1");
         when(tableMetadataService.getTableNames(userId, 123L)).thenReturn(tableNames);
 
-        assertThrows(IOException.class, () -> orchestrator.uploadExcel(userId, projectId, file));
+        assertThrows(IOException.class, () -> orchestrator.uploadExcel(userId, projectId, file, dataRowMeter));
         verify(projectService).getProjectOverviewDTO(userId, 123L);
         verify(tableMetadataService).getTableNames(userId, 123L);
         verifyNoInteractions(parserService, dataValidatorService, excelUploadService);
@@ -3,23 +3,32 @@ package com.aidb.aidb_backend.orchestrator;
 import com.aidb.aidb_backend.exception.ExcelValidationException;
 import com.aidb.aidb_backend.exception.ProjectNotFoundException;
 import com.aidb.aidb_backend.exception.TableNotFoundException;
+import com.aidb.aidb_backend.exception.UserLimitExceededException;
+import com.aidb.aidb_backend.model.api.TierInfo;
 import com.aidb.aidb_backend.model.dto.ProjectDTO;
 import com.aidb.aidb_backend.model.dto.ProjectOverviewDTO;
+import com.aidb.aidb_backend.model.dto.TableDTO;
+import com.aidb.aidb_backend.model.firestore.util.LimitedOperation;
+import com.aidb.aidb_backend.service.database.firestore.UserUsageLedger;
 import com.aidb.aidb_backend.service.database.postgres.user_created_tables.ExcelUploadService;
 import com.aidb.aidb_backend.service.database.postgres.ProjectService;
 import com.aidb.aidb_backend.service.database.postgres.TableMetadataService;
 import com.aidb.aidb_backend.service.util.excel.ExcelDataValidatorService;
 import com.aidb.aidb_backend.service.util.excel.ExcelParserService;
+import com.aidb.aidb_backend.service.util.excel.ExcelSheetListener;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -42,6 +51,9 @@ class ProjectOrchestratorTest {
     @Mock
     private ExcelUploadService excelUploadService;
 
+    @Mock
+    private UsageMeter dataRowMeter;
+
     @InjectMocks
     private ProjectOrchestrator orchestrator;
 
@@ -64,14 +76,14 @@ class ProjectOrchestratorTest {
         when(tableMetadataService.getTableNames(userId, projectId)).thenReturn(tableNames);
 
         ProjectDTO expectedDto = new ProjectDTO();
-        when(parserService.parseExcelFile(eq(projectOverview), eq(tableNames), any())).thenReturn(expectedDto);
+        when(parserService.parseExcelFile(eq(projectOverview), eq(tableNames), any(), any())).thenReturn(expectedDto);
 
-        ProjectDTO result = orchestrator.uploadExcel(userId, String.valueOf(projectId), file);
+        ProjectDTO result = orchestrator.uploadExcel(userId, String.valueOf(projectId), file, dataRowMeter);
 
         assertSame(expectedDto, result);
         verify(projectService).getProjectOverviewDTO(userId, projectId);
         verify(tableMetadataService).getTableNames(userId, projectId);
-        verify(parserService).parseExcelFile(eq(projectOverview), eq(tableNames), any());
+        verify(parserService).parseExcelFile(eq(projectOverview), eq(tableNames), any(), any());
         verify(dataValidatorService).validateData(expectedDto);
         verify(excelUploadService).upload(projectId, expectedDto);
     }
@@ -89,9 +101,9 @@ class ProjectOrchestratorTest {
         Set<String> tableNames = Set.of("table1");
         when(tableMetadataService.getTableNames(userId, projectId)).thenReturn(tableNames);
 
-        when(parserService.parseExcelFile(any(), any(), any())).thenThrow(new IOException("bad file"));
+        when(parserService.parseExcelFile(any(), any(), any(), any())).thenThrow(new IOException("bad file"));
 
-        assertThrows(IOException.class, () -> orchestrator.uploadExcel(userId, String.valueOf(projectId), file));
+        assertThrows(IOException.class, () -> orchestrator.uploadExcel(userId, String.valueOf(projectId), file, dataRowMeter));
         verify(dataValidatorService, never()).validateData(any());
         verify(excelUploadService, never()).upload(anyLong(), any());
     }
@@ -110,10 +122,10 @@ class ProjectOrchestratorTest {
         when(tableMetadataService.getTableNames(userId, projectId)).thenReturn(tableNames);
 
         ProjectDTO projectData = new ProjectDTO();
-        when(parserService.parseExcelFile(any(), any(), any())).thenReturn(projectData);
+        when(parserService.parseExcelFile(any(), any(), any(), any())).thenReturn(projectData);
         doThrow(new ExcelValidationException("invalid", null)).when(dataValidatorService).validateData(projectData);
 
-        assertThrows(ExcelValidationException.class, () -> orchestrator.uploadExcel(userId, String.valueOf(projectId), file));
+        assertThrows(ExcelValidationException.class, () -> orchestrator.uploadExcel(userId, String.valueOf(projectId), file, dataRowMeter));
         verify(excelUploadService, never()).upload(anyLong(), any());
     }
 
@@ -125,13 +137,75 @@ class ProjectOrchestratorTest {
 
         when(projectService.getProjectOverviewDTO(userId, projectId)).thenReturn(null);
 
-        assertThrows(ProjectNotFoundException.class, () -> orchestrator.uploadExcel(userId, String.valueOf(projectId), file));
+        assertThrows(ProjectNotFoundException.class, () -> orchestrator.uploadExcel(userId, String.valueOf(projectId), file, dataRowMeter));
         verify(tableMetadataService, never()).getTableNames(anyString(), anyLong());
-        verify(parserService, never()).parseExcelFile(any(), any(), any());
+        verify(parserService, never()).parseExcelFile(any(), any(), any(), any());
         verify(dataValidatorService, never()).validateData(any());
         verify(excelUploadService, never()).upload(anyLong(), any());
     }
 
+    @Test
+    void uploadExcel_stopsParsingOnceDataRowLimitIsExceeded() throws Exception {
+        String userId = "user-1";
+        Long projectId = 1L;
+        MultipartFile file = mock(MultipartFile.class);
+        when(file.getInputStream()).thenReturn(new ByteArrayInputStream(new byte[0]));
+
+        ProjectOverviewDTO projectOverview = new ProjectOverviewDTO(projectId, "Test Project", userId);
+        when(projectService.getProjectOverviewDTO(userId, projectId)).thenReturn(projectOverview);
+        when(tableMetadataService.getTableNames(userId, projectId)).thenReturn(Set.of());
+
+        // One row left before the limit
+        UserUsageLedger ledger = mock(UserUsageLedger.class);
+        AtomicLong dataRowUsage = new AtomicLong(9L);
+        when(ledger.reserve(eq("user-1"), eq(LimitedOperation.DATA_ROW), anyLong(), eq(10L))).thenAnswer(invocation -> {
+            long reserved = dataRowUsage.get() + invocation.<Long>getArgument(2);
+            return reserved > 10L ? null : dataRowUsage.addAndGet(invocation.<Long>getArgument(2));
+        });
+        LimitsOrchestrator limitsOrchestrator = new LimitsOrchestrator();
+        ReflectionTestUtils.setField(limitsOrchestrator, "userUsageLedger", ledger);
+        UsageMeter meter = limitsOrchestrator.openMeter(tierInfo(9L, 10L, -1L), LimitedOperation.DATA_ROW);
+
+        when(parserService.parseExcelFile(any(), any(), any(), any())).thenAnswer(invocation -> {
+            ExcelSheetListener listener = invocation.getArgument(3);
+            TableDTO table = new TableDTO();
+            listener.onRow(table, List.of("first"));
+            listener.onRow(table, List.of("second"));
+            fail("Parsing should stop at the row over the limit");
+            return null;
+        });
+
+        assertThrows(UserLimitExceededException.class, () -> orchestrator.uploadExcel(userId, String.valueOf(projectId), file, meter));
+        assertEquals(1, meter.getUsage());
+        verify(excelUploadService, never()).upload(anyLong(), any());
+    }
+
+    @Test
+    void uploadExcel_rejectsFileOverMaxFileSizeBeforeParsing() throws Exception {
+        String userId = "user-1";
+        Long projectId = 1L;
+        MultipartFile file = mock(MultipartFile.class);
+        when(file.getSize()).thenReturn(2048L);
+
+        ProjectOverviewDTO projectOverview = new ProjectOverviewDTO(projectId, "Test Project", userId);
+        when(projectService.getProjectOverviewDTO(userId, projectId)).thenReturn(projectOverview);
+
+        UsageMeter meter = new LimitsOrchestrator().openMeter(tierInfo(0L, -1L, 1024L), LimitedOperation.DATA_ROW);
+
+        assertThrows(UserLimitExceededException.class, () -> orchestrator.uploadExcel(userId, String.valueOf(projectId), file, meter));
+        verify(file, never()).getInputStream();
+        verifyNoInteractions(parserService);
+    }
+
+    private TierInfo tierInfo(Long dataRowUsage, Long dataRowLimit, Long maxFileSize) {
+        return TierInfo.builder()
+                .userId("user-1")
+                .dataRowLimitUsage(dataRowUsage)
+                .dataRowLimit(dataRowLimit)
+                .maxFileSize(maxFileSize)
+                .build();
+    }
+
     // ==================== DELETE PROJECT TESTS ====================
 
     @Test
@@ -5,15 +5,20 @@ import com.aidb.aidb_backend.exception.ProjectNotFoundException;
 import com.aidb.aidb_backend.exception.TableNotFoundException;
 import com.aidb.aidb_backend.model.dto.QueryDTO;
 import com.aidb.aidb_backend.model.firestore.Query;
-import com.aidb.aidb_backend.service.database.firestore.QueryService;
+import com.aidb.aidb_backend.service.database.firestore.QueryHistoryRecorder;
 import com.aidb.aidb_backend.service.database.postgres.TableMetadataService;
+import com.aidb.aidb_backend.service.database.postgres.user_created_tables.QueryResultCache;
+import com.aidb.aidb_backend.service.database.postgres.user_created_tables.RunningQueryRegistry;
 import com.aidb.aidb_backend.service.database.postgres.user_created_tables.UserQueryDataService;
+import com.aidb.aidb_backend.service.util.sql.SafeSqlCompiler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import net.sf.jsqlparser.JSQLParserException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.http.HttpStatus;
 
 import java.util.List;
@@ -22,6 +27,7 @@ import java.util.concurrent.ExecutionException;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 /**
@@ -31,7 +37,7 @@ import static org.mockito.Mockito.*;
 class QueryExecutionOrchestratorSecurityTest {
 
     @Mock
-    private QueryService queryService;
+    private QueryHistoryRecorder queryHistoryRecorder;
 
     @Mock
     private UserQueryDataService userQueryDataService;
@@ -39,6 +45,18 @@ class QueryExecutionOrchestratorSecurityTest {
     @Mock
     private TableMetadataService tableMetadataService;
 
+    @Spy
+    private SafeSqlCompiler safeSqlCompiler = new SafeSqlCompiler(100);
+
+    @Spy
+    private RunningQueryRegistry runningQueryRegistry = new RunningQueryRegistry();
+
+    @Mock
+    private LimitsOrchestrator limitsOrchestrator;
+
+    @Spy
+    private QueryResultCache queryResultCache = new QueryResultCache(1_000_000, 100_000, 60, new SimpleMeterRegistry());
+
     @InjectMocks
     private QueryExecutionOrchestrator orchestrator;
 
@@ -70,14 +88,14 @@ class QueryExecutionOrchestratorSecurityTest {
         Map<String, String> tableMapping = Map.of("users", "user_table_123", "admin_users", "admin_table_123");
         when(tableMetadataService.getTableNameMapping("user-1", 123L)).thenReturn(tableMapping);
         when(userQueryDataService.executeSql(
-                "SELECT name FROM user_table_123 UNION SELECT password FROM admin_table_123"))
+                eq("SELECT name FROM user_table_123 UNION SELECT password FROM admin_table_123"), any()))
                 .thenReturn(List.of());
 
         // UNION is actually allowed in SELECT statements
         List<Map<String, Object>> result = orchestrator.executeSafeSelectQuery("user-1", queryDTO);
         assertEquals(0, result.size());
         verify(userQueryDataService).executeSql(
-                "SELECT name FROM user_table_123 UNION SELECT password FROM admin_table_123");    }
+                eq("SELECT name FROM user_table_123 UNION SELECT password FROM admin_table_123"), any());    }
 
     @Test
     void executeSafeSelectQuery_blocksDropTableInjection() {
@@ -223,13 +241,13 @@ class QueryExecutionOrchestratorSecurityTest {
 
         Map<String, String> tableMapping = Map.of("users", "user_table_123_secure");
         when(tableMetadataService.getTableNameMapping("user-1", 123L)).thenReturn(tableMapping);
-        when(userQueryDataService.executeSql("SELECT * FROM user_table_123_secure WHERE id = 1"))
+        when(userQueryDataService.executeSql(eq("SELECT * FROM user_table_123_secure WHERE id = 1"), any()))
             .thenReturn(List.of());
 
         List<Map<String, Object>> result = orchestrator.executeSafeSelectQuery("user-1", queryDTO);
 
         assertEquals(0, result.size()); // Fixing expected result based on mock setup
-        verify(userQueryDataService).executeSql("SELECT * FROM user_table_123_secure WHERE id = 1");
+        verify(userQueryDataService).executeSql(eq("SELECT * FROM user_table_123_secure WHERE id = 1"), any());
     }
 
 //    Aliases not currently supported
@@ -280,7 +298,7 @@ class QueryExecutionOrchestratorSecurityTest {
 
         assertThrows(TableNotFoundException.class, () -> orchestrator.executeSafeSelectQuery("user-1", queryDTO));
         verifyNoInteractions(userQueryDataService);
-        verify(queryService, never()).addOrUpdateQuery(any());
+        verify(queryHistoryRecorder, never()).addOrUpdate(any());
     }
 
     @Test
@@ -293,14 +311,14 @@ class QueryExecutionOrchestratorSecurityTest {
 
         assertThrows(TableNotFoundException.class, () -> orchestrator.executeSafeSelectQuery("user-1", queryDTO));
         verifyNoInteractions(userQueryDataService);
-        verify(queryService, never()).addOrUpdateQuery(any());
+        verify(queryHistoryRecorder, never()).addOrUpdate(any());
     }
 
     // Edge Cases and Error Handling
     @Test
     void executeSafeSelectQuery_handlesNullQuery() {
         assertThrows(NullPointerException.class, () -> orchestrator.executeSafeSelectQuery("user-1", null));
-        verifyNoInteractions(tableMetadataService, userQueryDataService, queryService);
+        verifyNoInteractions(tableMetadataService, userQueryDataService, queryHistoryRecorder);
     }
 
     @Test
@@ -351,7 +369,7 @@ class QueryExecutionOrchestratorSecurityTest {
         queryDTO.setProjectId("not-a-number");
 
         assertThrows(NumberFormatException.class, () -> orchestrator.executeSafeSelectQuery("user-1", queryDTO));
-        verifyNoInteractions(tableMetadataService, userQueryDataService, queryService);
+        verifyNoInteractions(tableMetadataService, userQueryDataService, queryHistoryRecorder);
     }
 
     @Test
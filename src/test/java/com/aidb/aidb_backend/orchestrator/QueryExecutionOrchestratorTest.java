@@ -3,30 +3,47 @@ package com.aidb.aidb_backend.orchestrator;
 import com.aidb.aidb_backend.exception.IllegalSqlException;
 import com.aidb.aidb_backend.exception.ProjectNotFoundException;
 import com.aidb.aidb_backend.exception.TableNotFoundException;
+import com.aidb.aidb_backend.model.api.ResultFormat;
+import com.aidb.aidb_backend.model.api.StreamingData;
 import com.aidb.aidb_backend.model.dto.QueryDTO;
+import com.aidb.aidb_backend.model.dto.QueryResultDTO;
+import com.aidb.aidb_backend.model.dto.ResultColumnDTO;
 import com.aidb.aidb_backend.model.firestore.Query;
 import com.aidb.aidb_backend.model.firestore.Status;
-import com.aidb.aidb_backend.service.database.firestore.QueryService;
+import com.aidb.aidb_backend.service.database.firestore.QueryHistoryRecorder;
 import com.aidb.aidb_backend.service.database.postgres.TableMetadataService;
+import com.aidb.aidb_backend.service.database.postgres.user_created_tables.QueryResultCache;
+import com.aidb.aidb_backend.service.database.postgres.user_created_tables.QueryResultHandler;
+import com.aidb.aidb_backend.service.database.postgres.user_created_tables.RunningQuery;
+import com.aidb.aidb_backend.service.database.postgres.user_created_tables.RunningQueryRegistry;
 import com.aidb.aidb_backend.service.database.postgres.user_created_tables.UserQueryDataService;
+import com.aidb.aidb_backend.service.util.sql.SafeSqlCompiler;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.http.HttpStatus;
 
+import java.io.StringWriter;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class QueryExecutionOrchestratorTest {
 
     @Mock
-    private QueryService queryService;
+    private QueryHistoryRecorder queryHistoryRecorder;
 
     @Mock
     private UserQueryDataService userQueryDataService;
@@ -34,12 +51,25 @@ class QueryExecutionOrchestratorTest {
     @Mock
     private TableMetadataService tableMetadataService;
 
+    @Spy
+    private SafeSqlCompiler safeSqlCompiler = new SafeSqlCompiler(100);
+
+    @Spy
+    private RunningQueryRegistry runningQueryRegistry = new RunningQueryRegistry();
+
+    @Mock
+    private LimitsOrchestrator limitsOrchestrator;
+
+    @Spy
+    private QueryResultCache queryResultCache = new QueryResultCache(1_000_000, 100_000, 60, new SimpleMeterRegistry());
+
     @InjectMocks
     private QueryExecutionOrchestrator orchestrator;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        when(queryHistoryRecorder.newQueryId()).thenReturn("new-query-id");
     }
 
     @Test
@@ -50,12 +80,12 @@ class QueryExecutionOrchestratorTest {
         
         Map<String, String> tableMapping = Map.of("users", "user_table_123");
         when(tableMetadataService.getTableNameMapping("user-1", 123L)).thenReturn(tableMapping);
-        when(userQueryDataService.executeSql("SELECT 1")).thenReturn(List.of(Map.of("?column?", 1)));
+        when(userQueryDataService.executeSql(eq("SELECT 1"), any())).thenReturn(List.of(Map.of("?column?", 1)));
 
         List<Map<String, Object>> result = orchestrator.executeSafeSelectQuery("user-1", queryDTO);
 
         assertEquals(1, result.size());
-        verify(queryService, times(1)).addOrUpdateQuery(any(Query.class));
+        verify(queryHistoryRecorder, times(1)).add(any(Query.class), eq("new-query-id"));
     }
 
     @Test
@@ -70,7 +100,7 @@ class QueryExecutionOrchestratorTest {
         IllegalSqlException ex = assertThrows(IllegalSqlException.class, () -> orchestrator.executeSafeSelectQuery("user-1", queryDTO));
         assertEquals(HttpStatus.BAD_REQUEST, ex.getHttpStatus());
         verifyNoInteractions(userQueryDataService);
-        verify(queryService, never()).addOrUpdateQuery(any());
+        verify(queryHistoryRecorder, never()).addOrUpdate(any());
     }
 
     @Test
@@ -85,7 +115,7 @@ class QueryExecutionOrchestratorTest {
         IllegalSqlException ex = assertThrows(IllegalSqlException.class, () -> orchestrator.executeSafeSelectQuery("user-1", queryDTO));
         assertEquals(HttpStatus.BAD_REQUEST, ex.getHttpStatus());
         verifyNoInteractions(userQueryDataService);
-        verify(queryService, never()).addOrUpdateQuery(any());
+        verify(queryHistoryRecorder, never()).addOrUpdate(any());
     }
 
     @Test
@@ -113,11 +143,11 @@ class QueryExecutionOrchestratorTest {
         
         Map<String, String> tableMapping = Map.of("users", "user_table_123");
         when(tableMetadataService.getTableNameMapping("user-1", 123L)).thenReturn(tableMapping);
-        doThrow(new RuntimeException("fail")).when(queryService).addOrUpdateQuery(any(Query.class));
-        when(userQueryDataService.executeSql("SELECT 1")).thenReturn(List.of());
+        doThrow(new RuntimeException("fail")).when(queryHistoryRecorder).add(any(Query.class), any());
+        when(userQueryDataService.executeSql(eq("SELECT 1"), any())).thenReturn(List.of());
 
         assertThrows(RuntimeException.class, () -> orchestrator.executeSafeSelectQuery("user-1", queryDTO));
-        verify(queryService, times(1)).addOrUpdateQuery(any(Query.class));
+        verify(queryHistoryRecorder, times(1)).add(any(Query.class), eq("new-query-id"));
     }
 
     @Test
@@ -130,7 +160,7 @@ class QueryExecutionOrchestratorTest {
         
         assertThrows(TableNotFoundException.class, () -> orchestrator.executeSafeSelectQuery("user-1", queryDTO));
         verifyNoInteractions(userQueryDataService);
-        verify(queryService, never()).addOrUpdateQuery(any());
+        verify(queryHistoryRecorder, never()).addOrUpdate(any());
     }
 
     @Test
@@ -143,6 +173,238 @@ class QueryExecutionOrchestratorTest {
         
         assertThrows(TableNotFoundException.class, () -> orchestrator.executeSafeSelectQuery("user-1", queryDTO));
         verifyNoInteractions(userQueryDataService);
-        verify(queryService, never()).addOrUpdateQuery(any());
+        verify(queryHistoryRecorder, never()).addOrUpdate(any());
+    }
+
+    @Test
+    void streamSafeSelectQuery_writesRowsThenRecordsQuery() throws Exception {
+        QueryDTO queryDTO = new QueryDTO();
+        queryDTO.setSqlQuery("SELECT name FROM users");
+        queryDTO.setProjectId("123");
+
+        when(tableMetadataService.getTableNameMapping("user-1", 123L)).thenReturn(Map.of("users", "user_table_123"));
+        doAnswer(invocation -> {
+            QueryResultHandler handler = invocation.getArgument(2);
+            handler.onColumns(List.of(new ResultColumnDTO("name", "text"), new ResultColumnDTO("age", "int4")));
+            handler.onRow(new Object[]{"alice", 30});
+            handler.onRow(new Object[]{"bob", null});
+            return null;
+        }).when(userQueryDataService).streamSql(eq("SELECT name FROM user_table_123"), any(), any());
+
+        StreamingData data = orchestrator.streamSafeSelectQuery("user-1", queryDTO);
+
+        // Nothing runs until the response is written
+        verify(userQueryDataService, never()).streamSql(any(), any(), any());
+        verify(queryHistoryRecorder, never()).add(any(), any());
+
+        StringWriter json = new StringWriter();
+        try (JsonGenerator generator = new ObjectMapper().getFactory().createGenerator(json)) {
+            data.writeTo(generator);
+        }
+
+        assertEquals("[{\"name\":\"alice\",\"age\":30},{\"name\":\"bob\",\"age\":null}]", json.toString());
+        verify(queryHistoryRecorder, times(1)).add(argThat(query -> query.getStatus() == Status.EXECUTED), eq("new-query-id"));
+    }
+
+    @Test
+    void streamSafeSelectQuery_rejectsUnsafeSqlBeforeStreaming() throws Exception {
+        QueryDTO queryDTO = new QueryDTO();
+        queryDTO.setSqlQuery("DELETE FROM users");
+        queryDTO.setProjectId("123");
+
+        when(tableMetadataService.getTableNameMapping("user-1", 123L)).thenReturn(Map.of("users", "user_table_123"));
+
+        assertThrows(IllegalSqlException.class, () -> orchestrator.streamSafeSelectQuery("user-1", queryDTO));
+        verifyNoInteractions(userQueryDataService);
+        verify(queryHistoryRecorder, never()).addOrUpdate(any());
+    }
+
+    @Test
+    void streamSafeSelectQuery_columnar_writesColumnsOnceThenRowArrays() throws Exception {
+        QueryDTO queryDTO = new QueryDTO();
+        queryDTO.setSqlQuery("SELECT name FROM users");
+        queryDTO.setProjectId("123");
+
+        when(tableMetadataService.getTableNameMapping("user-1", 123L)).thenReturn(Map.of("users", "user_table_123"));
+        doAnswer(invocation -> {
+            QueryResultHandler handler = invocation.getArgument(2);
+            handler.onColumns(List.of(new ResultColumnDTO("name", "text"), new ResultColumnDTO("age", "int4")));
+            handler.onRow(new Object[]{"alice", 30});
+            handler.onRow(new Object[]{"bob", null});
+            return null;
+        }).when(userQueryDataService).streamSql(eq("SELECT name FROM user_table_123"), any(), any());
+
+        StreamingData data = orchestrator.streamSafeSelectQuery("user-1", queryDTO, ResultFormat.COLUMNAR);
+
+        StringWriter json = new StringWriter();
+        try (JsonGenerator generator = new ObjectMapper().getFactory().createGenerator(json)) {
+            data.writeTo(generator);
+        }
+
+        assertEquals("{\"columns\":[{\"name\":\"name\",\"type\":\"text\"},{\"name\":\"age\",\"type\":\"int4\"}],"
+                + "\"rows\":[[\"alice\",30],[\"bob\",null]]}", json.toString());
+
+        // Same shape as the buffered columnar result
+        QueryResultDTO buffered = new QueryResultDTO();
+        buffered.setColumns(List.of(new ResultColumnDTO("name", "text"), new ResultColumnDTO("age", "int4")));
+        buffered.setRows(List.of(List.of("alice", 30), Arrays.asList("bob", null)));
+        assertEquals(json.toString(), new ObjectMapper().writeValueAsString(buffered));
+    }
+
+    @Test
+    void executeSafeSelectQueryColumnar_returnsColumnarResult_andRecordsQuery() throws Exception {
+        QueryDTO queryDTO = new QueryDTO();
+        queryDTO.setSqlQuery("SELECT 1");
+        queryDTO.setProjectId("123");
+
+        QueryResultDTO expected = new QueryResultDTO();
+        when(tableMetadataService.getTableNameMapping("user-1", 123L)).thenReturn(Map.of("users", "user_table_123"));
+        when(userQueryDataService.executeSqlColumnar(eq("SELECT 1"), any())).thenReturn(expected);
+
+        assertSame(expected, orchestrator.executeSafeSelectQueryColumnar("user-1", queryDTO));
+        verify(userQueryDataService, never()).executeSql(any(), any());
+        verify(queryHistoryRecorder, times(1)).add(argThat(query -> query.getStatus() == Status.EXECUTED), eq("new-query-id"));
+    }
+
+    @Test
+    void resultFormat_followsAcceptHeaderOrder_andDefaultsToRows() {
+        assertEquals(ResultFormat.ROWS, ResultFormat.fromAccept(null));
+        assertEquals(ResultFormat.ROWS, ResultFormat.fromAccept("*/*"));
+        assertEquals(ResultFormat.ROWS, ResultFormat.fromAccept("not a media type"));
+        assertEquals(ResultFormat.COLUMNAR, ResultFormat.fromAccept("application/vnd.aidb.columnar+json, application/json"));
+        assertEquals(ResultFormat.ROWS, ResultFormat.fromAccept("application/json, application/x-jackson-smile"));
+        assertEquals(ResultFormat.COLUMNAR_SMILE, ResultFormat.fromAccept("application/x-jackson-smile"));
+    }
+
+    @Test
+    void executeSafeSelectQuery_runsWithTierTimeout_cancellableByQueryId() throws Exception {
+        QueryDTO queryDTO = new QueryDTO();
+        queryDTO.setId("q1");
+        queryDTO.setSqlQuery("SELECT 1");
+        queryDTO.setProjectId("123");
+
+        when(tableMetadataService.getTableNameMapping("user-1", 123L)).thenReturn(Map.of("users", "user_table_123"));
+        when(limitsOrchestrator.getQueryTimeoutMs("user-1")).thenReturn(5_000L);
+        when(userQueryDataService.executeSql(eq("SELECT 1"), any())).thenAnswer(invocation -> {
+            RunningQuery runningQuery = invocation.getArgument(1);
+            assertEquals(5_000L, runningQuery.getTimeoutMs());
+            assertTrue(orchestrator.cancelQuery("user-1", "q1"));
+            return List.of();
+        });
+
+        orchestrator.executeSafeSelectQuery("user-1", queryDTO);
+
+        // Nothing left to cancel once the query finished
+        assertFalse(orchestrator.cancelQuery("user-1", "q1"));
+    }
+
+    @Test
+    void executeSafeSelectQuery_newQuery_cancellableByAssignedId_andRecordedUnderIt() throws Exception {
+        QueryDTO queryDTO = new QueryDTO();
+        queryDTO.setSqlQuery("SELECT 1");
+        queryDTO.setProjectId("123");
+
+        when(tableMetadataService.getTableNameMapping("user-1", 123L)).thenReturn(Map.of("users", "user_table_123"));
+        when(userQueryDataService.executeSql(eq("SELECT 1"), any())).thenAnswer(invocation -> {
+            assertTrue(orchestrator.cancelQuery("user-1", "new-query-id"));
+            return List.of();
+        });
+
+        orchestrator.executeSafeSelectQuery("user-1", queryDTO);
+
+        verify(queryHistoryRecorder, times(1)).add(argThat(query -> "new-query-id".equals(query.getId())), eq("new-query-id"));
+        verify(queryHistoryRecorder, never()).addOrUpdate(any());
+    }
+
+    @Test
+    void streamSafeSelectQuery_newQuery_cancellableByAssignedId() throws Exception {
+        QueryDTO queryDTO = new QueryDTO();
+        queryDTO.setSqlQuery("SELECT name FROM users");
+        queryDTO.setProjectId("123");
+
+        when(tableMetadataService.getTableNameMapping("user-1", 123L)).thenReturn(Map.of("users", "user_table_123"));
+        doAnswer(invocation -> {
+            assertTrue(orchestrator.cancelQuery("user-1", "new-query-id"));
+            return null;
+        }).when(userQueryDataService).streamSql(any(), any(), any());
+
+        StreamingData data = orchestrator.streamSafeSelectQuery("user-1", queryDTO);
+        try (JsonGenerator generator = new ObjectMapper().getFactory().createGenerator(new StringWriter())) {
+            data.writeTo(generator);
+        }
+
+        verify(userQueryDataService, times(1)).streamSql(any(), any(), any());
+    }
+
+    @Test
+    void executeSafeSelectQuery_servesRepeatedQueryFromCache_untilTableChanges() throws Exception {
+        QueryDTO queryDTO = new QueryDTO();
+        queryDTO.setSqlQuery("SELECT name FROM users");
+        queryDTO.setProjectId("123");
+
+        when(tableMetadataService.getTableNameMapping("user-1", 123L))
+                .thenReturn(Map.of("users", "user_table_123", "orders", "order_table_123"));
+        when(userQueryDataService.executeSql(eq("SELECT name FROM user_table_123"), any()))
+                .thenReturn(List.of(Map.of("name", "alice")));
+
+        List<Map<String, Object>> first = orchestrator.executeSafeSelectQuery("user-1", queryDTO);
+        List<Map<String, Object>> second = orchestrator.executeSafeSelectQuery("user-1", queryDTO);
+
+        assertSame(first, second);
+        verify(userQueryDataService, times(1)).executeSql(any(), any());
+        verify(runningQueryRegistry, times(1)).start(any(), any(), anyLong());
+        // Still recorded as executed when served from the cache
+        verify(queryHistoryRecorder, times(2)).add(any(Query.class), eq("new-query-id"));
+
+        // A table the query doesn't read leaves it cached
+        queryResultCache.invalidateTable("order_table_123");
+        orchestrator.executeSafeSelectQuery("user-1", queryDTO);
+        verify(userQueryDataService, times(1)).executeSql(any(), any());
+
+        queryResultCache.invalidateTable("user_table_123");
+        orchestrator.executeSafeSelectQuery("user-1", queryDTO);
+        verify(userQueryDataService, times(2)).executeSql(any(), any());
+    }
+
+    @Test
+    void executeSafeSelectQuery_cachesRowsAndColumnarResultsSeparately() throws Exception {
+        QueryDTO queryDTO = new QueryDTO();
+        queryDTO.setSqlQuery("SELECT name FROM users");
+        queryDTO.setProjectId("123");
+
+        QueryResultDTO columnar = new QueryResultDTO();
+        columnar.setColumns(List.of(new ResultColumnDTO("name", "text")));
+        columnar.setRows(List.of(List.of("alice")));
+        when(tableMetadataService.getTableNameMapping("user-1", 123L)).thenReturn(Map.of("users", "user_table_123"));
+        when(userQueryDataService.executeSql(eq("SELECT name FROM user_table_123"), any())).thenReturn(List.of(Map.of("name", "alice")));
+        when(userQueryDataService.executeSqlColumnar(eq("SELECT name FROM user_table_123"), any())).thenReturn(columnar);
+
+        assertEquals(1, orchestrator.executeSafeSelectQuery("user-1", queryDTO).size());
+        assertSame(columnar, orchestrator.executeSafeSelectQueryColumnar("user-1", queryDTO));
+        assertSame(columnar, orchestrator.executeSafeSelectQueryColumnar("user-1", queryDTO));
+
+        verify(userQueryDataService, times(1)).executeSql(any(), any());
+        verify(userQueryDataService, times(1)).executeSqlColumnar(any(), any());
+    }
+
+    @Test
+    void executeSafeSelectQuery_runsUncacheableQueriesEveryTime() throws Exception {
+        QueryDTO volatileQuery = new QueryDTO();
+        volatileQuery.setSqlQuery("SELECT name, now() FROM users");
+        volatileQuery.setProjectId("123");
+
+        QueryDTO noTables = new QueryDTO();
+        noTables.setSqlQuery("SELECT 1");
+        noTables.setProjectId("123");
+
+        when(tableMetadataService.getTableNameMapping("user-1", 123L)).thenReturn(Map.of("users", "user_table_123"));
+        when(userQueryDataService.executeSql(any(), any())).thenReturn(List.of());
+
+        orchestrator.executeSafeSelectQuery("user-1", volatileQuery);
+        orchestrator.executeSafeSelectQuery("user-1", volatileQuery);
+        orchestrator.executeSafeSelectQuery("user-1", noTables);
+        orchestrator.executeSafeSelectQuery("user-1", noTables);
+
+        verify(userQueryDataService, times(4)).executeSql(any(), any());
     }
-}
\ No newline at end of file
+}
@@ -6,6 +6,8 @@ import com.aidb.aidb_backend.model.dto.QueryDTO;
 import com.aidb.aidb_backend.model.firestore.Query;
 import com.aidb.aidb_backend.model.firestore.Status;
 import com.aidb.aidb_backend.service.api.OpenAiClient;
+import com.aidb.aidb_backend.service.api.TranslationCache;
+import com.aidb.aidb_backend.service.database.firestore.QueryHistoryRecorder;
 import com.aidb.aidb_backend.service.database.firestore.QueryService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -29,9 +31,15 @@ class QueryTranslatorOrchestratorSecurityTest {
     @Mock
     private QueryService queryService;
 
+    @Mock
+    private QueryHistoryRecorder queryHistoryRecorder;
+
     @Mock
     private OpenAiClient openAiClient;
 
+    @Mock
+    private TranslationCache translationCache;
+
     @InjectMocks
     private QueryTranslatorOrchestrator orchestrator;
 
@@ -159,7 +167,7 @@ class QueryTranslatorOrchestratorSecurityTest {
         assertEquals(userId, result.getUserId());
         assertEquals("SELECT 1", result.getSqlQuery());
         assertEquals(Status.TRANSLATED, result.getStatus());
-        verify(queryService).addQuery(any(Query.class));
+        verify(queryHistoryRecorder).add(any(Query.class));
     }
 
     @Test
@@ -177,7 +185,7 @@ class QueryTranslatorOrchestratorSecurityTest {
         assertEquals(userId, result.getUserId());
         assertEquals("SELECT 1", result.getSqlQuery());
         assertEquals(Status.TRANSLATED, result.getStatus());
-        verify(queryService).addQuery(any(Query.class));
+        verify(queryHistoryRecorder).add(any(Query.class));
     }
 
     @Test
@@ -194,7 +202,7 @@ class QueryTranslatorOrchestratorSecurityTest {
         assertEquals(userId, result.getUserId());
         assertEquals("SELECT * FROM users WHERE name LIKE '%äöü%'", result.getSqlQuery());
         assertEquals(Status.TRANSLATED, result.getStatus());
-        verify(queryService).addQuery(any(Query.class));
+        verify(queryHistoryRecorder).add(any(Query.class));
     }
 
     @Test
@@ -211,7 +219,7 @@ class QueryTranslatorOrchestratorSecurityTest {
         assertEquals(userId, result.getUserId());
         assertEquals("", result.getSqlQuery());
         assertEquals(Status.TRANSLATED, result.getStatus());
-        verify(queryService).addQuery(any(Query.class));
+        verify(queryHistoryRecorder).add(any(Query.class));
     }
 
     @Test
@@ -228,7 +236,7 @@ class QueryTranslatorOrchestratorSecurityTest {
         assertEquals(userId, result.getUserId());
         assertEquals("SELECT 1", result.getSqlQuery());
         assertEquals(Status.TRANSLATED, result.getStatus());
-        verify(queryService).addQuery(any(Query.class));
+        verify(queryHistoryRecorder).add(any(Query.class));
     }
 
     // API Security Tests
@@ -242,7 +250,7 @@ class QueryTranslatorOrchestratorSecurityTest {
             .thenThrow(new OpenAiApiException("Rate limit exceeded", null));
         
         assertThrows(OpenAiApiException.class, () -> orchestrator.translateToSql(userId, query));
-        verify(queryService, never()).addQuery(any());
+        verify(queryHistoryRecorder, never()).add(any());
     }
 
     @Test
@@ -255,7 +263,7 @@ class QueryTranslatorOrchestratorSecurityTest {
             .thenThrow(new OpenAiApiException("Quota exceeded", null));
         
         assertThrows(OpenAiApiException.class, () -> orchestrator.translateToSql(userId, query));
-        verify(queryService, never()).addQuery(any());
+        verify(queryHistoryRecorder, never()).add(any());
     }
 
     @Test
@@ -268,7 +276,7 @@ class QueryTranslatorOrchestratorSecurityTest {
             .thenThrow(new OpenAiApiException("Invalid API key", null));
         
         assertThrows(OpenAiApiException.class, () -> orchestrator.translateToSql(userId, query));
-        verify(queryService, never()).addQuery(any());
+        verify(queryHistoryRecorder, never()).add(any());
     }
 
     // Data Access Tests
@@ -323,10 +331,10 @@ class QueryTranslatorOrchestratorSecurityTest {
         query.setNlQuery("Get all users");
         
         when(openAiClient.getSqlTranslation("Get all users")).thenReturn("SELECT * FROM users");
-        doThrow(new RuntimeException("Database save failed")).when(queryService).addQuery(any());
+        doThrow(new RuntimeException("Database save failed")).when(queryHistoryRecorder).add(any());
         
         assertThrows(RuntimeException.class, () -> orchestrator.translateToSql(userId, query));
-        verify(queryService).addQuery(any(Query.class));
+        verify(queryHistoryRecorder).add(any(Query.class));
     }
 
     @Test
@@ -341,7 +349,7 @@ class QueryTranslatorOrchestratorSecurityTest {
         assertNull(result.getUserId());
         assertEquals("SELECT * FROM users", result.getSqlQuery());
         assertEquals(Status.TRANSLATED, result.getStatus());
-        verify(queryService).addQuery(any(Query.class));
+        verify(queryHistoryRecorder).add(any(Query.class));
     }
 
     @Test
@@ -357,7 +365,7 @@ class QueryTranslatorOrchestratorSecurityTest {
         assertEquals("", result.getUserId());
         assertEquals("SELECT * FROM users", result.getSqlQuery());
         assertEquals(Status.TRANSLATED, result.getStatus());
-        verify(queryService).addQuery(any(Query.class));
+        verify(queryHistoryRecorder).add(any(Query.class));
     }
 
     @Test
@@ -365,6 +373,6 @@ class QueryTranslatorOrchestratorSecurityTest {
         String userId = "user-1";
         
         assertThrows(NullPointerException.class, () -> orchestrator.translateToSql(userId, null));
-        verifyNoInteractions(openAiClient, queryService);
+        verifyNoInteractions(openAiClient, queryService, queryHistoryRecorder);
     }
 }
\ No newline at end of file
@@ -6,6 +6,8 @@ import com.aidb.aidb_backend.model.dto.QueryDTO;
 import com.aidb.aidb_backend.model.firestore.Query;
 import com.aidb.aidb_backend.model.firestore.Status;
 import com.aidb.aidb_backend.service.api.OpenAiClient;
+import com.aidb.aidb_backend.service.api.TranslationCache;
+import com.aidb.aidb_backend.service.database.firestore.QueryHistoryRecorder;
 import com.aidb.aidb_backend.service.database.firestore.QueryService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -24,9 +26,15 @@ class QueryTranslatorOrchestratorTest {
     @Mock
     private QueryService queryService;
 
+    @Mock
+    private QueryHistoryRecorder queryHistoryRecorder;
+
     @Mock
     private OpenAiClient openAiClient;
 
+    @Mock
+    private TranslationCache translationCache;
+
     @InjectMocks
     private QueryTranslatorOrchestrator orchestrator;
 
@@ -46,7 +54,38 @@ class QueryTranslatorOrchestratorTest {
         assertEquals("user-1", result.getUserId());
         assertEquals("SELECT * FROM users", result.getSqlQuery());
         assertEquals(Status.TRANSLATED, result.getStatus());
-        verify(queryService, times(1)).addQuery(any(Query.class));
+        verify(queryHistoryRecorder, times(1)).add(any(Query.class));
+    }
+
+    @Test
+    void translateToSql_cacheHit_skipsOpenAi_andStillSaves() throws Exception {
+        Query query = new Query();
+        query.setProjectId("1");
+        query.setNlQuery("Get all users?");
+        TranslationCache.TranslationKey key = new TranslationCache.TranslationKey("schema", "get all users");
+        when(translationCache.keyFor("user-1", "1", "Get all users?")).thenReturn(key);
+        when(translationCache.get(key)).thenReturn("SELECT * FROM users");
+
+        QueryDTO result = orchestrator.translateToSql("user-1", query);
+
+        assertEquals("SELECT * FROM users", result.getSqlQuery());
+        assertEquals(Status.TRANSLATED, result.getStatus());
+        verifyNoInteractions(openAiClient);
+        verify(queryHistoryRecorder, times(1)).add(any(Query.class));
+    }
+
+    @Test
+    void translateToSql_cacheMiss_cachesOpenAiTranslation() throws Exception {
+        Query query = new Query();
+        query.setProjectId("1");
+        query.setNlQuery("get all users");
+        TranslationCache.TranslationKey key = new TranslationCache.TranslationKey("schema", "get all users");
+        when(translationCache.keyFor("user-1", "1", "get all users")).thenReturn(key);
+        when(openAiClient.getSqlTranslation("get all users")).thenReturn("SELECT * FROM users");
+
+        orchestrator.translateToSql("user-1", query);
+
+        verify(translationCache).put(key, "SELECT * FROM users");
     }
 
     @Test
@@ -56,7 +95,7 @@ class QueryTranslatorOrchestratorTest {
         when(openAiClient.getSqlTranslation("bad")).thenThrow(new OpenAiApiException("boom", null));
 
         assertThrows(OpenAiApiException.class, () -> orchestrator.translateToSql("user-1", query));
-        verify(queryService, never()).addQuery(any());
+        verify(queryHistoryRecorder, never()).add(any());
     }
 
     @Test
@@ -64,10 +103,10 @@ class QueryTranslatorOrchestratorTest {
         Query query = new Query();
         query.setNlQuery("ok");
         when(openAiClient.getSqlTranslation("ok")).thenReturn("SELECT 1");
-        doThrow(new RuntimeException("fail")).when(queryService).addQuery(any(Query.class));
+        doThrow(new RuntimeException("fail")).when(queryHistoryRecorder).add(any(Query.class));
 
         assertThrows(RuntimeException.class, () -> orchestrator.translateToSql("user-1", query));
-        verify(queryService, times(1)).addQuery(any(Query.class));
+        verify(queryHistoryRecorder, times(1)).add(any(Query.class));
     }
 
     @Test
@@ -0,0 +1,68 @@
+package com.aidb.aidb_backend.scheduled;
+
+import com.aidb.aidb_backend.model.firestore.util.UsagePeriod;
+import com.aidb.aidb_backend.service.database.firestore.UserLimitsService;
+import com.aidb.aidb_backend.service.database.firestore.UserUsageLedger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class LimitUsageResetSchedulerTest {
+
+    @Mock
+    private UserLimitsService userLimitsService;
+
+    @Mock
+    private UserUsageLedger userUsageLedger;
+
+    @InjectMocks
+    private LimitUsageResetScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void resetMonthlyLimits_flushesLedger_resetsCurrentPeriod_thenInvalidates() throws Exception {
+        scheduler.resetMonthlyLimits();
+
+        InOrder inOrder = inOrder(userUsageLedger, userLimitsService);
+        inOrder.verify(userUsageLedger).flush();
+        inOrder.verify(userLimitsService).resetUsageForAllUsers(eq(UsagePeriod.current()), any());
+        inOrder.verify(userUsageLedger).invalidateAll();
+    }
+
+    @Test
+    void resumeIncompleteReset_resumesCurrentPeriod() throws Exception {
+        when(userLimitsService.getIncompleteResetPeriod()).thenReturn(UsagePeriod.current());
+
+        scheduler.resumeIncompleteReset();
+
+        verify(userLimitsService).resetUsageForAllUsers(eq(UsagePeriod.current()), any());
+    }
+
+    @Test
+    void resumeIncompleteReset_ignoresCompletedOrOldPeriods() throws Exception {
+        when(userLimitsService.getIncompleteResetPeriod()).thenReturn(null, "1999-01");
+
+        scheduler.resumeIncompleteReset();
+        scheduler.resumeIncompleteReset();
+
+        verify(userLimitsService, never()).resetUsageForAllUsers(anyString(), any());
+    }
+
+    @Test
+    void resetMonthlyLimits_swallowsFailure_andKeepsCheckpointForResume() throws Exception {
+        when(userLimitsService.resetUsageForAllUsers(anyString(), any())).thenThrow(new RuntimeException("quota"));
+
+        scheduler.resetMonthlyLimits();
+
+        verify(userUsageLedger, never()).invalidateAll();
+    }
+}
@@ -0,0 +1,81 @@
+package com.aidb.aidb_backend.security.authorization;
+
+import com.aidb.aidb_backend.exception.http.ForbiddenException;
+import com.aidb.aidb_backend.model.firestore.User;
+import com.google.firebase.auth.FirebaseToken;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class FirebaseAuthServiceTest {
+
+    @Spy
+    private SimpleMeterRegistry meterRegistry;
+
+    @Spy
+    @InjectMocks
+    private FirebaseAuthService firebaseAuthService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(firebaseAuthService, "maxCacheSize", 100L);
+        ReflectionTestUtils.setField(firebaseAuthService, "maxTtlSeconds", 300L);
+        firebaseAuthService.initCache();
+    }
+
+    @Test
+    void authorizeUser_verifiesTokenOnce_whileItIsValid() throws Exception {
+        FirebaseToken token = token("user-1", System.currentTimeMillis() / 1000 + 3600);
+        doReturn(token).when(firebaseAuthService).verifyIdToken("abc");
+
+        User first = firebaseAuthService.authorizeUser("Bearer abc");
+        User second = firebaseAuthService.authorizeUser("Bearer abc");
+
+        assertEquals("user-1", first.getUserId());
+        assertEquals(first, second);
+        verify(firebaseAuthService, times(1)).verifyIdToken("abc");
+        assertEquals(1, meterRegistry.timer("firebase.auth.verify").count());
+    }
+
+    @Test
+    void authorizeUser_reverifiesExpiredToken() throws Exception {
+        FirebaseToken token = token("user-1", System.currentTimeMillis() / 1000 - 1);
+        doReturn(token).when(firebaseAuthService).verifyIdToken("abc");
+
+        firebaseAuthService.authorizeUser("Bearer abc");
+        firebaseAuthService.authorizeUser("Bearer abc");
+
+        verify(firebaseAuthService, times(2)).verifyIdToken("abc");
+    }
+
+    @Test
+    void authorizeUser_doesNotCacheFailedVerification() throws Exception {
+        doThrow(new IllegalArgumentException("bad token")).when(firebaseAuthService).verifyIdToken("bad");
+
+        assertThrows(ForbiddenException.class, () -> firebaseAuthService.authorizeUser("Bearer bad"));
+        assertThrows(ForbiddenException.class, () -> firebaseAuthService.authorizeUser("Bearer bad"));
+
+        verify(firebaseAuthService, times(2)).verifyIdToken("bad");
+    }
+
+    @Test
+    void authorizeUser_rejectsMissingBearerPrefix() throws Exception {
+        assertThrows(ForbiddenException.class, () -> firebaseAuthService.authorizeUser("abc"));
+        verify(firebaseAuthService, never()).verifyIdToken(any());
+    }
+
+    private FirebaseToken token(String uid, long expSeconds) {
+        FirebaseToken token = mock(FirebaseToken.class);
+        when(token.getUid()).thenReturn(uid);
+        when(token.getClaims()).thenReturn(Map.of("exp", expSeconds));
+        return token;
+    }
+}
@@ -0,0 +1,127 @@
+package com.aidb.aidb_backend.service.api;
+
+import com.aidb.aidb_backend.model.firestore.Query;
+import com.aidb.aidb_backend.model.firestore.Status;
+import com.aidb.aidb_backend.service.database.firestore.QueryService;
+import com.aidb.aidb_backend.service.database.postgres.TableMetadataService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TranslationCacheTest {
+
+    @Mock
+    private TableMetadataService tableMetadataService;
+
+    @Mock
+    private QueryService queryService;
+
+    @Spy
+    private SimpleMeterRegistry meterRegistry;
+
+    @InjectMocks
+    private TranslationCache translationCache;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(translationCache, "maxSize", 100L);
+        ReflectionTestUtils.setField(translationCache, "warmupSize", 10);
+        translationCache.initCache();
+    }
+
+    @Test
+    void normalize_ignoresCaseWhitespaceAndTrailingPunctuation() {
+        assertEquals("total sales by month", TranslationCache.normalize("  Total   Sales by\tmonth?! "));
+        assertEquals("", TranslationCache.normalize(" ? "));
+        assertNull(TranslationCache.normalize(null));
+    }
+
+    @Test
+    void normalize_keepsQuotedValuesAsWritten() {
+        assertEquals("orders from 'ACME  Inc'", TranslationCache.normalize("Orders   FROM 'ACME  Inc'?"));
+        assertEquals("orders named \"Big Order?\"", TranslationCache.normalize("Orders named \"Big Order?\""));
+        assertEquals("orders from 'acme?", TranslationCache.normalize("Orders from 'acme?"));
+    }
+
+    @Test
+    void get_missesForQuestionsThatDifferOnlyInQuotedValueCase() {
+        when(tableMetadataService.getTableNameMapping("user-1", 1L)).thenReturn(Map.of("orders", "t_1"));
+
+        translationCache.put(translationCache.keyFor("user-1", "1", "Orders from 'ACME'"), "SELECT 1");
+
+        assertNull(translationCache.get(translationCache.keyFor("user-1", "1", "orders from 'acme'")));
+        assertEquals("SELECT 1", translationCache.get(translationCache.keyFor("user-1", "1", "ORDERS FROM 'ACME'?")));
+    }
+
+    @Test
+    void get_hitsForSameQuestionAndSchema_andCountsSavedCalls() {
+        when(tableMetadataService.getTableNameMapping("user-1", 1L)).thenReturn(Map.of("sales", "t_1"));
+
+        translationCache.put(translationCache.keyFor("user-1", "1", "Total sales by month"), "SELECT 1");
+
+        assertEquals("SELECT 1", translationCache.get(translationCache.keyFor("user-1", "1", "total sales by month?")));
+        assertEquals(1.0, meterRegistry.counter("openai.translation.calls.saved").count());
+    }
+
+    @Test
+    void get_missesOnceSchemaChanges() {
+        when(tableMetadataService.getTableNameMapping("user-1", 1L))
+                .thenReturn(Map.of("sales", "t_1"))
+                .thenReturn(Map.of("sales", "t_2"));
+
+        translationCache.put(translationCache.keyFor("user-1", "1", "total sales"), "SELECT 1");
+
+        assertNull(translationCache.get(translationCache.keyFor("user-1", "1", "total sales")));
+        assertEquals(0.0, meterRegistry.counter("openai.translation.calls.saved").count());
+    }
+
+    @Test
+    void get_missesOnceTableIsUploadedAgainUnderTheSameName() {
+        // Same display and physical name, new metadata from the second upload
+        when(tableMetadataService.getTableNameMapping("user-1", 1L)).thenReturn(Map.of("sales", "t_1"));
+        when(tableMetadataService.getTableIds("user-1", 1L))
+                .thenReturn(List.of(10L))
+                .thenReturn(List.of(11L));
+
+        translationCache.put(translationCache.keyFor("user-1", "1", "total sales"), "SELECT 1");
+
+        assertNull(translationCache.get(translationCache.keyFor("user-1", "1", "total sales")));
+    }
+
+    @Test
+    void keyFor_returnsNullForBlankQuestion() {
+        assertNull(translationCache.keyFor("user-1", "1", "   "));
+        assertNull(translationCache.keyFor("user-1", "1", null));
+    }
+
+    @Test
+    void warmUp_loadsHistory_withNewestTranslationWinning() throws Exception {
+        when(tableMetadataService.getTableNameMapping("user-1", 1L)).thenReturn(Map.of("sales", "t_1"));
+        when(queryService.getRecentTranslations(10)).thenReturn(List.of(
+                translated("total sales", "SELECT 2"),
+                translated("Total sales?", "SELECT 1")));
+
+        translationCache.warmUp();
+
+        assertEquals("SELECT 2", translationCache.get(translationCache.keyFor("user-1", "1", "total sales")));
+    }
+
+    private Query translated(String nlQuery, String sqlQuery) {
+        Query query = new Query();
+        query.setUserId("user-1");
+        query.setProjectId("1");
+        query.setNlQuery(nlQuery);
+        query.setSqlQuery(sqlQuery);
+        query.setStatus(Status.TRANSLATED);
+        return query;
+    }
+}
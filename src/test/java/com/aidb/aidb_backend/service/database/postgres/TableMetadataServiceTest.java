@@ -0,0 +1,184 @@
+package com.aidb.aidb_backend.service.database.postgres;
+
+import com.aidb.aidb_backend.exception.TableNotFoundException;
+import com.aidb.aidb_backend.model.dto.TableNameDTO;
+import com.aidb.aidb_backend.model.dto.TableRowsDTO;
+import com.aidb.aidb_backend.model.postgres.ColumnMetadata;
+import com.aidb.aidb_backend.model.postgres.TableMetadata;
+import com.aidb.aidb_backend.repository.ColumnMetadataRepository;
+import com.aidb.aidb_backend.repository.DynamicTableRepository;
+import com.aidb.aidb_backend.repository.TableMetadataRepository;
+import com.aidb.aidb_backend.service.database.postgres.user_created_tables.QueryResultCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class TableMetadataServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TableMetadataRepository tableMetadataRepository;
+
+    @Mock
+    private ColumnMetadataRepository columnMetadataRepository;
+
+    @Mock
+    private DynamicTableRepository dynamicTableRepository;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Mock
+    private QueryResultCache queryResultCache;
+
+    @InjectMocks
+    private TableMetadataService tableMetadataService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(tableMetadataService, "mappingCacheMaxSize", 100L);
+        ReflectionTestUtils.setField(tableMetadataService, "mappingCacheTtlMinutes", 30L);
+        ReflectionTestUtils.setField(tableMetadataService, "defaultRowsPageSize", 500);
+        ReflectionTestUtils.setField(tableMetadataService, "maxRowsPageSize", 5000);
+        tableMetadataService.initCache();
+    }
+
+    @Test
+    void getTableNameMapping_loadsOnceThenServesFromCache() {
+        when(tableMetadataRepository.findTableNameDTOs(1L, "user-1"))
+                .thenReturn(List.of(new TableNameDTO("users", "project_1_table_aaa")));
+
+        Map<String, String> first = tableMetadataService.getTableNameMapping("user-1", 1L);
+        Map<String, String> second = tableMetadataService.getTableNameMapping("user-1", 1L);
+
+        assertEquals(Map.of("users", "project_1_table_aaa"), first);
+        assertSame(first, second);
+        verify(tableMetadataRepository, times(1)).findTableNameDTOs(1L, "user-1");
+
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "tableNameMapping").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "tableNameMapping").tag("result", "miss").functionCounter().count());
+    }
+
+    @Test
+    void invalidateTableNameMapping_reloadsOnlyThatProject() {
+        when(tableMetadataRepository.findTableNameDTOs(1L, "user-1"))
+                .thenReturn(List.of(new TableNameDTO("users", "project_1_table_aaa")))
+                .thenReturn(List.of(new TableNameDTO("users", "project_1_table_aaa"), new TableNameDTO("orders", "project_1_table_bbb")));
+        when(tableMetadataRepository.findTableNameDTOs(2L, "user-1"))
+                .thenReturn(List.of(new TableNameDTO("cats", "project_2_table_ccc")));
+
+        tableMetadataService.getTableNameMapping("user-1", 1L);
+        tableMetadataService.getTableNameMapping("user-1", 2L);
+
+        tableMetadataService.invalidateTableNameMapping(1L);
+
+        assertEquals(2, tableMetadataService.getTableNameMapping("user-1", 1L).size());
+        tableMetadataService.getTableNameMapping("user-1", 2L);
+        verify(tableMetadataRepository, times(2)).findTableNameDTOs(1L, "user-1");
+        verify(tableMetadataRepository, times(1)).findTableNameDTOs(2L, "user-1");
+    }
+
+    @Test
+    void getTableIds_areSortedAndLoadedWithTheMapping() {
+        when(tableMetadataRepository.findIdsByProjectIdAndUserId(1L, "user-1")).thenReturn(List.of(30L, 10L, 20L));
+
+        tableMetadataService.getTableNameMapping("user-1", 1L);
+
+        assertEquals(List.of(10L, 20L, 30L), tableMetadataService.getTableIds("user-1", 1L));
+        verify(tableMetadataRepository, times(1)).findIdsByProjectIdAndUserId(1L, "user-1");
+    }
+
+    @Test
+    void deleteTableHelper_evictsMappingsContainingTheTable() {
+        when(tableMetadataRepository.findTableNameDTOs(1L, "user-1"))
+                .thenReturn(List.of(new TableNameDTO("users", "project_1_table_aaa")))
+                .thenReturn(List.of());
+        when(tableMetadataRepository.findTableNameById(10L)).thenReturn("project_1_table_aaa");
+
+        tableMetadataService.getTableNameMapping("user-1", 1L);
+        tableMetadataService.deleteTableHelper(10L);
+
+        assertTrue(tableMetadataService.getTableNameMapping("user-1", 1L).isEmpty());
+        verify(jdbcTemplate).execute("DROP TABLE IF EXISTS \"project_1_table_aaa\"");
+        verify(queryResultCache).invalidateTable("project_1_table_aaa");
+    }
+
+    @Test
+    void getTableRows_fetchesPageInColumnOrder() {
+        when(tableMetadataRepository.findByIdAndProject_IdAndUserId(10L, 1L, "user-1"))
+                .thenReturn(Optional.of(table("project_1_table_aaa", "name", "age")));
+
+        TableRowsDTO page = new TableRowsDTO();
+        page.setRows(List.of(List.of("alice", 30.0)));
+        page.setNextCursor("7");
+        when(dynamicTableRepository.fetchRowsPage("project_1_table_aaa", List.of("name", "age"), 0L, 500)).thenReturn(page);
+
+        TableRowsDTO result = tableMetadataService.getTableRows("user-1", 1L, 10L, null, null);
+
+        assertEquals("10", result.getTableId());
+        assertEquals("7", result.getNextCursor());
+    }
+
+    @Test
+    void getTableRows_clampsPageSizeAndPassesCursor() {
+        when(tableMetadataRepository.findByIdAndProject_IdAndUserId(10L, 1L, "user-1"))
+                .thenReturn(Optional.of(table("project_1_table_aaa", "name")));
+        when(dynamicTableRepository.fetchRowsPage(anyString(), anyList(), anyLong(), anyInt())).thenReturn(new TableRowsDTO());
+
+        tableMetadataService.getTableRows("user-1", 1L, 10L, 42L, 1_000_000);
+        tableMetadataService.getTableRows("user-1", 1L, 10L, 42L, 0);
+
+        verify(dynamicTableRepository).fetchRowsPage("project_1_table_aaa", List.of("name"), 42L, 5000);
+        verify(dynamicTableRepository).fetchRowsPage("project_1_table_aaa", List.of("name"), 42L, 1);
+    }
+
+    @Test
+    void getTableRows_clampsConfiguredDefaultPageSize() {
+        ReflectionTestUtils.setField(tableMetadataService, "defaultRowsPageSize", 10_000);
+        when(tableMetadataRepository.findByIdAndProject_IdAndUserId(10L, 1L, "user-1"))
+                .thenReturn(Optional.of(table("project_1_table_aaa", "name")));
+        when(dynamicTableRepository.fetchRowsPage(anyString(), anyList(), anyLong(), anyInt())).thenReturn(new TableRowsDTO());
+
+        tableMetadataService.getTableRows("user-1", 1L, 10L, null, null);
+
+        verify(dynamicTableRepository).fetchRowsPage("project_1_table_aaa", List.of("name"), 0L, 5000);
+    }
+
+    @Test
+    void getTableRows_throwsWhenTableIsNotOwnedByUser() {
+        when(tableMetadataRepository.findByIdAndProject_IdAndUserId(10L, 1L, "other-user")).thenReturn(Optional.empty());
+
+        assertThrows(TableNotFoundException.class, () -> tableMetadataService.getTableRows("other-user", 1L, 10L, null, null));
+        verifyNoInteractions(dynamicTableRepository);
+    }
+
+    private TableMetadata table(String tableName, String... columnNames) {
+        TableMetadata table = new TableMetadata();
+        table.setTableName(tableName);
+        table.setColumns(Arrays.stream(columnNames).map(name -> {
+            ColumnMetadata column = new ColumnMetadata();
+            column.setName(name);
+            return column;
+        }).toList());
+        return table;
+    }
+}
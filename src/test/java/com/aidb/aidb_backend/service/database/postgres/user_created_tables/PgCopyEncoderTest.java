@@ -0,0 +1,111 @@
+package com.aidb.aidb_backend.service.database.postgres.user_created_tables;
+
+import com.aidb.aidb_backend.model.dto.TableDTO;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PgCopyEncoderTest {
+
+    private static final List<TableDTO.ColumnTypeDTO> COLUMN_TYPES = List.of(
+            TableDTO.ColumnTypeDTO.TEXT, TableDTO.ColumnTypeDTO.NUMBER, TableDTO.ColumnTypeDTO.DATE);
+
+    private static final Date JOINED = Date.from(LocalDate.of(2024, 3, 5).atStartOfDay(ZoneId.systemDefault()).toInstant());
+
+    @Test
+    void textEncoder_writesTabSeparatedLineWithEscapesAndNulls() throws IOException {
+        byte[] encoded = encode(new PgTextCopyEncoder(),
+                Arrays.asList("tabby\thouse\\1", 1500.5, JOINED),
+                Arrays.asList(null, 42.0, null));
+
+        assertEquals("tabby\\thouse\\\\1\t1500.5\t2024-03-05\n\\N\t42.0\t\\N\n",
+                new String(encoded, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void binaryEncoder_writesHeaderTuplesAndTrailer() throws IOException {
+        byte[] encoded = encode(new PgBinaryCopyEncoder(),
+                Arrays.asList("hé", 1500.5, JOINED),
+                Arrays.asList(null, 42.0, null));
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded));
+
+        byte[] signature = new byte[11];
+        in.readFully(signature);
+        assertArrayEquals(new byte[]{'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0}, signature);
+        assertEquals(0, in.readInt());
+        assertEquals(0, in.readInt());
+
+        // First row
+        assertEquals(3, in.readShort());
+        byte[] text = new byte[in.readInt()];
+        in.readFully(text);
+        assertEquals("hé", new String(text, StandardCharsets.UTF_8));
+        assertEquals(8, in.readInt());
+        assertEquals(1500.5, in.readDouble());
+        assertEquals(4, in.readInt());
+        assertEquals(8830, in.readInt()); // days from 2000-01-01 to 2024-03-05
+
+        // Second row
+        assertEquals(3, in.readShort());
+        assertEquals(-1, in.readInt());
+        assertEquals(8, in.readInt());
+        assertEquals(42.0, in.readDouble());
+        assertEquals(-1, in.readInt());
+
+        assertEquals(-1, in.readShort());
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    void encoders_writeDatesInTextColumnsAsIso8601() throws IOException {
+        String text = new String(encode(new PgTextCopyEncoder(), Arrays.asList(JOINED, 1.0, JOINED)), StandardCharsets.UTF_8);
+        assertEquals("2024-03-05\t1.0\t2024-03-05\n", text);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                encode(new PgBinaryCopyEncoder(), Arrays.asList(JOINED, 1.0, JOINED))));
+        in.skipBytes(11 + 4 + 4 + 2);
+        byte[] value = new byte[in.readInt()];
+        in.readFully(value);
+        assertEquals("2024-03-05", new String(value, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void encoders_rejectValuesThatDoNotMatchColumnType() {
+        for (PgCopyEncoder encoder : List.of(new PgTextCopyEncoder(), new PgBinaryCopyEncoder())) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> encode(encoder, Arrays.asList("name", "not a number", JOINED)));
+        }
+    }
+
+    @Test
+    void forFormat_returnsMatchingEncoder() {
+        assertInstanceOf(PgTextCopyEncoder.class, PgCopyEncoder.forFormat(PgCopyEncoder.Format.TEXT));
+        assertInstanceOf(PgBinaryCopyEncoder.class, PgCopyEncoder.forFormat(PgCopyEncoder.Format.BINARY));
+    }
+
+    @SafeVarargs
+    private byte[] encode(PgCopyEncoder encoder, List<Object>... rows) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        encoder.writeHeader(out);
+        for (List<Object> row : rows) {
+            encoder.writeRow(out, COLUMN_TYPES, row);
+        }
+        encoder.writeTrailer(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+}
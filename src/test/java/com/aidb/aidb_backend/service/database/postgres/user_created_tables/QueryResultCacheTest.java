@@ -0,0 +1,100 @@
+package com.aidb.aidb_backend.service.database.postgres.user_created_tables;
+
+import com.aidb.aidb_backend.service.util.sql.SafeSqlCompiler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryResultCacheTest {
+
+    private static final Set<String> PROJECT_TABLES = Set.of("project_1_table_aaa", "project_1_table_bbb");
+
+    private QueryResultCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new QueryResultCache(1_000_000, 10_000, 60, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void keyFor_includesTheTablesTheSqlReads() {
+        QueryResultCache.ResultKey key = cache.keyFor(compiled("SELECT * FROM project_1_table_aaa"), false, PROJECT_TABLES);
+
+        assertEquals(Map.of("project_1_table_aaa", 0L), key.tableVersions());
+    }
+
+    @Test
+    void keyFor_returnsNullForUncacheableSql() {
+        assertNull(cache.keyFor(new SafeSqlCompiler.CompiledSql("SELECT 1", Set.of(), true), false, PROJECT_TABLES));
+        assertNull(cache.keyFor(new SafeSqlCompiler.CompiledSql("SELECT now() FROM project_1_table_aaa",
+                Set.of("project_1_table_aaa"), false), false, PROJECT_TABLES));
+        assertNull(cache.keyFor(new SafeSqlCompiler.CompiledSql("SELECT * FROM project_2_table_ccc",
+                Set.of("project_2_table_ccc"), true), false, PROJECT_TABLES));
+    }
+
+    @Test
+    void getAndPut_ignoreNullKey() {
+        cache.put(null, List.of());
+
+        assertNull(cache.get(null));
+    }
+
+    @Test
+    void invalidateTable_makesKeysMadeBeforeItStale() {
+        String sql = "SELECT * FROM project_1_table_aaa";
+        List<Map<String, Object>> rows = List.of(Map.of("name", "alice"));
+
+        // Made before the upload, cached after it, as a query running during the upload would
+        QueryResultCache.ResultKey before = cache.keyFor(compiled(sql), false, PROJECT_TABLES);
+        cache.invalidateTable("project_1_table_aaa");
+        cache.put(before, rows);
+
+        QueryResultCache.ResultKey after = cache.keyFor(compiled(sql), false, PROJECT_TABLES);
+        assertNotEquals(before, after);
+        assertNull(cache.get(after));
+
+        cache.put(after, rows);
+        assertSame(rows, cache.get(cache.keyFor(compiled(sql), false, PROJECT_TABLES)));
+        assertNull(cache.get(cache.keyFor(compiled(sql), true, PROJECT_TABLES)));
+    }
+
+    @Test
+    void invalidateTable_leavesResultsOfOtherTables() {
+        QueryResultCache.ResultKey key = cache.keyFor(compiled("SELECT * FROM project_1_table_aaa"), false, PROJECT_TABLES);
+        List<Map<String, Object>> rows = List.of(Map.of("name", "alice"));
+        cache.put(key, rows);
+
+        cache.invalidateTable("project_1_table_bbb");
+
+        assertSame(rows, cache.get(cache.keyFor(compiled("SELECT * FROM project_1_table_aaa"), false, PROJECT_TABLES)));
+    }
+
+    @Test
+    void put_skipsResultsLargerThanMaxEntryBytes() {
+        QueryResultCache.ResultKey key = cache.keyFor(compiled("SELECT * FROM project_1_table_aaa"), false, PROJECT_TABLES);
+        List<Map<String, Object>> rows = List.of(Map.of("text", "x".repeat(10_000)));
+
+        cache.put(key, rows);
+
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    void estimateBytes_growsWithTheResult() {
+        long oneRow = QueryResultCache.estimateBytes(List.of(Map.of("name", "alice")));
+        long twoRows = QueryResultCache.estimateBytes(List.of(Map.of("name", "alice"), Map.of("name", "bob")));
+
+        assertTrue(oneRow > 0);
+        assertTrue(twoRows > oneRow);
+    }
+
+    private SafeSqlCompiler.CompiledSql compiled(String sql) {
+        return new SafeSqlCompiler.CompiledSql(sql, Set.of("project_1_table_aaa"), true);
+    }
+}
@@ -0,0 +1,75 @@
+package com.aidb.aidb_backend.service.database.postgres.user_created_tables;
+
+import com.aidb.aidb_backend.exception.http.QueryCancelledException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RunningQueryRegistryTest {
+
+    private RunningQueryRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new RunningQueryRegistry();
+    }
+
+    @Test
+    void cancel_cancelsTheUsersRunningStatement() throws Exception {
+        Statement statement = mock(Statement.class);
+        RunningQuery runningQuery = registry.start("q1", "user-1", 1000);
+        runningQuery.attach(statement);
+
+        assertTrue(registry.cancel("user-1", "q1"));
+
+        verify(statement, times(1)).cancel();
+        assertTrue(runningQuery.isCancelled());
+    }
+
+    @Test
+    void cancel_skipsAnotherUsersQuery() throws Exception {
+        Statement statement = mock(Statement.class);
+        RunningQuery runningQuery = registry.start("q1", "user-1", 1000);
+        runningQuery.attach(statement);
+
+        assertFalse(registry.cancel("user-2", "q1"));
+        verify(statement, never()).cancel();
+        assertFalse(runningQuery.isCancelled());
+    }
+
+    @Test
+    void cancel_findsNothing_onceTheQueryIsClosed() {
+        try (RunningQuery runningQuery = registry.start("q1", "user-1", 1000)) {
+            assertEquals("q1", runningQuery.getQueryId());
+        }
+
+        assertFalse(registry.cancel("user-1", "q1"));
+    }
+
+    @Test
+    void attach_failsForQueryCancelledBeforeItStarted() {
+        RunningQuery runningQuery = registry.start("q1", "user-1", 1000);
+        registry.cancel("user-1", "q1");
+
+        assertThrows(QueryCancelledException.class, () -> runningQuery.attach(mock(Statement.class)));
+    }
+
+    @Test
+    void cancelRequest_onlyCancelsQueriesOfThatRequest() throws Exception {
+        Object request = new Object();
+        registry.bindRequest(request);
+        RunningQuery disconnected = registry.start("q1", "user-1", 1000);
+        registry.unbindRequest();
+        RunningQuery other = registry.start("q2", "user-1", 1000);
+
+        registry.cancelRequest(request);
+        registry.cancelRequest(null);
+
+        assertTrue(disconnected.isCancelled());
+        assertFalse(other.isCancelled());
+    }
+}
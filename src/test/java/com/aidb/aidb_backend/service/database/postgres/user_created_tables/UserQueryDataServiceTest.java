@@ -0,0 +1,105 @@
+package com.aidb.aidb_backend.service.database.postgres.user_created_tables;
+
+import com.aidb.aidb_backend.exception.http.QueryCancelledException;
+import com.aidb.aidb_backend.exception.http.QueryTimeoutException;
+import com.aidb.aidb_backend.service.util.sql.JsonQueryResultWriter;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class UserQueryDataServiceTest {
+
+    private UserQueryDataService userQueryDataService;
+
+    private PreparedStatement statement;
+
+    private ResultSet resultSet;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        Connection connection = mock(Connection.class);
+        statement = mock(PreparedStatement.class);
+        resultSet = mock(ResultSet.class);
+
+        when(jdbcTemplate.execute(any(ConnectionCallback.class)))
+                .thenAnswer(invocation -> invocation.<ConnectionCallback<?>>getArgument(0).doInConnection(connection));
+        when(connection.prepareStatement(anyString(), anyInt(), anyInt())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(resultSet);
+
+        // SELECT a.id, b.id, c."ID"
+        ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+        when(metaData.getColumnCount()).thenReturn(3);
+        when(metaData.getColumnLabel(1)).thenReturn("id");
+        when(metaData.getColumnLabel(2)).thenReturn("id");
+        when(metaData.getColumnLabel(3)).thenReturn("ID");
+        when(metaData.getColumnTypeName(anyInt())).thenReturn("int8");
+        when(resultSet.getMetaData()).thenReturn(metaData);
+        when(resultSet.next()).thenReturn(true, false);
+        when(resultSet.getObject(1)).thenReturn(1L);
+        when(resultSet.getObject(2)).thenReturn(2L);
+        when(resultSet.getObject(3)).thenReturn(3L);
+
+        userQueryDataService = new UserQueryDataService(jdbcTemplate);
+    }
+
+    @Test
+    void executeSql_keepsEveryColumnWithTheSameName() {
+        List<Map<String, Object>> rows = userQueryDataService.executeSql("SELECT ...", runningQuery());
+
+        assertEquals(List.of(Map.of("id", 1L, "id_2", 2L, "ID_3", 3L)), rows);
+    }
+
+    @Test
+    void streamSql_writesDuplicateColumnNamesOnce() throws Exception {
+        StringWriter json = new StringWriter();
+        try (JsonGenerator generator = new ObjectMapper().getFactory().createGenerator(json)) {
+            JsonQueryResultWriter writer = new JsonQueryResultWriter(generator);
+            writer.start();
+            userQueryDataService.streamSql("SELECT ...", runningQuery(), writer);
+            writer.end();
+        }
+
+        assertEquals("[{\"id\":1,\"id_2\":2,\"ID_3\":3}]", json.toString());
+    }
+
+    @Test
+    void executeSql_statementTimeout_throwsQueryTimeout() throws Exception {
+        when(statement.executeQuery()).thenThrow(new SQLException("canceling statement due to statement timeout", "57014"));
+
+        assertThrows(QueryTimeoutException.class, () -> userQueryDataService.executeSql("SELECT ...", runningQuery()));
+    }
+
+    @Test
+    void executeSql_cancelledByUser_throwsQueryCancelled() throws Exception {
+        RunningQuery runningQuery = runningQuery();
+        when(statement.executeQuery()).thenAnswer(invocation -> {
+            runningQuery.cancel();
+            throw new SQLException("canceling statement due to user request", "57014");
+        });
+
+        assertThrows(QueryCancelledException.class, () -> userQueryDataService.executeSql("SELECT ...", runningQuery));
+    }
+
+    private RunningQuery runningQuery() {
+        return new RunningQueryRegistry().start(null, "user-1", 0);
+    }
+}
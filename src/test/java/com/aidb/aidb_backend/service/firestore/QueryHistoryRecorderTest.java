@@ -0,0 +1,165 @@
+package com.aidb.aidb_backend.service.firestore;
+
+import com.aidb.aidb_backend.model.firestore.Query;
+import com.aidb.aidb_backend.model.firestore.Status;
+import com.aidb.aidb_backend.service.database.firestore.QueryHistoryRecorder;
+import com.aidb.aidb_backend.service.database.firestore.QueryService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class QueryHistoryRecorderTest {
+
+    @Mock
+    private QueryService queryService;
+
+    @InjectMocks
+    private QueryHistoryRecorder queryHistoryRecorder;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(queryService.newQueryId()).thenReturn("id-1", "id-2", "id-3", "id-4");
+
+        ReflectionTestUtils.setField(queryHistoryRecorder, "bufferSize", 2);
+        ReflectionTestUtils.setField(queryHistoryRecorder, "maxWriteAttempts", 2);
+        ReflectionTestUtils.invokeMethod(queryHistoryRecorder, "initBuffer");
+    }
+
+    @Test
+    void add_assignsIdAndTimestamp_withoutWriting() throws Exception {
+        Query query = query(Status.TRANSLATED);
+
+        queryHistoryRecorder.add(query);
+
+        assertEquals("id-1", query.getId());
+        assertNotNull(query.getTimestamp());
+        verify(queryService, never()).writeHistory(anyList());
+    }
+
+    @Test
+    void add_withAssignedId_storesQueryAsNewUnderThatId() throws Exception {
+        Query query = query(Status.EXECUTED);
+
+        queryHistoryRecorder.add(query, "assigned-id");
+        queryHistoryRecorder.flush();
+
+        assertEquals("assigned-id", query.getId());
+        assertNotNull(query.getTimestamp());
+        verify(queryService, times(1)).writeHistory(argThat(writes -> writes.size() == 1
+                && !writes.get(0).update() && "assigned-id".equals(writes.get(0).newId())));
+    }
+
+    @Test
+    void flush_writesBufferedQueriesInOneBatch_asTheyWereRecorded() throws Exception {
+        Query translated = query(Status.TRANSLATED);
+        queryHistoryRecorder.add(translated);
+        Query executed = query(Status.EXECUTED);
+        executed.setId("existing");
+        queryHistoryRecorder.addOrUpdate(executed);
+
+        // Later changes by the caller don't reach the buffered copy
+        executed.setStatus(Status.TRANSLATED);
+
+        queryHistoryRecorder.flush();
+
+        ArgumentCaptor<List<QueryService.HistoryWrite>> batch = ArgumentCaptor.forClass(List.class);
+        verify(queryService, times(1)).writeHistory(batch.capture());
+        List<QueryService.HistoryWrite> writes = batch.getValue();
+        assertEquals(2, writes.size());
+        assertFalse(writes.get(0).update());
+        assertEquals("id-1", writes.get(0).query().getId());
+        assertTrue(writes.get(1).update());
+        assertEquals("existing", writes.get(1).query().getId());
+        assertEquals(Status.EXECUTED, writes.get(1).query().getStatus());
+    }
+
+    @Test
+    void addOrUpdate_writesDirectly_whenBufferIsFull() throws Exception {
+        queryHistoryRecorder.addOrUpdate(query(Status.EXECUTED));
+        queryHistoryRecorder.addOrUpdate(query(Status.EXECUTED));
+        verify(queryService, never()).writeHistory(anyList());
+
+        queryHistoryRecorder.addOrUpdate(query(Status.EXECUTED));
+
+        verify(queryService, times(1)).writeHistory(argThat(writes -> writes.size() == 1));
+    }
+
+    @Test
+    void flush_retriesFailedBatch_thenDropsIt() throws Exception {
+        doThrow(new ExecutionException(new RuntimeException("unavailable")))
+                .when(queryService).writeHistory(anyList());
+        queryHistoryRecorder.add(query(Status.TRANSLATED));
+
+        queryHistoryRecorder.flush();
+        queryHistoryRecorder.flush();
+        queryHistoryRecorder.flush();
+
+        // Retried with the same ids, then given up after maxWriteAttempts
+        verify(queryService, times(2)).writeHistory(argThat(writes -> "id-1".equals(writes.get(0).query().getId())));
+    }
+
+    @Test
+    void addOrUpdate_afterAdd_updatesTheQueryStoredUnderTheReturnedId() throws Exception {
+        // Stores writes the way QueryService.writeHistory does
+        Map<String, Query> stored = new HashMap<>();
+        doAnswer(invocation -> {
+            for (QueryService.HistoryWrite write : invocation.<List<QueryService.HistoryWrite>>getArgument(0)) {
+                Query existing = write.update() ? stored.get(write.query().getId()) : null;
+                String id = existing != null && existing.getUserId().equals(write.query().getUserId())
+                        ? write.query().getId()
+                        : write.newId();
+                stored.put(id, write.query());
+            }
+            return null;
+        }).when(queryService).writeHistory(anyList());
+
+        // Translate returns the query with its id, the client then executes it
+        Query translated = query(Status.TRANSLATED);
+        queryHistoryRecorder.add(translated);
+        queryHistoryRecorder.flush();
+
+        assertEquals(Set.of(translated.getId()), stored.keySet());
+
+        Query executed = query(Status.EXECUTED);
+        executed.setId(translated.getId());
+        queryHistoryRecorder.addOrUpdate(executed);
+        queryHistoryRecorder.flush();
+
+        assertEquals(Set.of(translated.getId()), stored.keySet());
+        assertEquals(Status.EXECUTED, stored.get(translated.getId()).getStatus());
+    }
+
+    @Test
+    void addOrUpdate_assignsAnIdToANewQuery() throws Exception {
+        Query executed = query(Status.EXECUTED);
+
+        queryHistoryRecorder.addOrUpdate(executed);
+        queryHistoryRecorder.flush();
+
+        assertEquals("id-1", executed.getId());
+        verify(queryService).writeHistory(argThat(writes ->
+                !writes.get(0).update() && "id-1".equals(writes.get(0).newId())));
+    }
+
+    private Query query(Status status) {
+        Query query = new Query();
+        query.setUserId("user-1");
+        query.setProjectId("1");
+        query.setNlQuery("how many rows");
+        query.setSqlQuery("SELECT count(*) FROM t");
+        query.setStatus(status);
+        return query;
+    }
+}
@@ -1,12 +1,21 @@
 package com.aidb.aidb_backend.service.firestore;
 
+import com.aidb.aidb_backend.exception.http.BadRequestException;
+import com.aidb.aidb_backend.model.dto.QueryHistoryPageDTO;
 import com.aidb.aidb_backend.model.firestore.Query;
 import com.aidb.aidb_backend.service.database.firestore.QueryService;
 import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -22,6 +31,8 @@ class QueryServiceTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(queryService, "defaultHistoryPageSize", 2);
+        ReflectionTestUtils.setField(queryService, "maxHistoryPageSize", 10);
     }
 
     @Test
@@ -92,4 +103,134 @@ class QueryServiceTest {
         // Assert
         assertNull(actualQuery);
     }
+
+    @Test
+    void testGetQueryHistoryPage_returnsPageAndCursor() throws Exception {
+        com.google.cloud.firestore.Query firestoreQuery = stubHistoryQuery(
+                historyDoc("q3", 300), historyDoc("q2", 200), historyDoc("q1", 100));
+
+        QueryHistoryPageDTO page = queryService.getQueryHistoryPage("user-1", "project-1", null, null);
+
+        assertEquals(2, page.getQueries().size());
+        assertEquals("q3", page.getQueries().get(0).getId());
+        assertEquals("user-1", page.getQueries().get(0).getUserId());
+        assertEquals("project-1", page.getQueries().get(1).getProjectId());
+        assertNotNull(page.getNextCursor());
+
+        // One extra document tells whether there is a next page; only the shown fields are read
+        verify(firestoreQuery).limit(3);
+        verify(firestoreQuery).select("nlQuery", "sqlQuery", "status", "timestamp");
+        verify(firestoreQuery, never()).startAfter(any(Object[].class));
+
+        queryService.getQueryHistoryPage("user-1", "project-1", page.getNextCursor(), null);
+
+        verify(firestoreQuery).startAfter(Timestamp.ofTimeSecondsAndNanos(200, 0), "q2");
+    }
+
+    @Test
+    void testGetQueryHistoryPage_lastPageHasNoCursor() throws Exception {
+        stubHistoryQuery(historyDoc("q1", 100));
+
+        QueryHistoryPageDTO page = queryService.getQueryHistoryPage("user-1", "project-1", null, 5);
+
+        assertEquals(1, page.getQueries().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void testGetQueryHistoryPage_rejectsInvalidCursor() throws Exception {
+        stubHistoryQuery();
+
+        assertThrows(BadRequestException.class, () ->
+                queryService.getQueryHistoryPage("user-1", "project-1", "not-a-cursor", 5));
+    }
+
+    @Test
+    void testWriteHistory_updatesOwnQueries_andStoresTheRestAsNew() throws Exception {
+        CollectionReference collectionReference = mock(CollectionReference.class);
+        Map<String, DocumentReference> refs = new HashMap<>();
+        when(firestore.collection("queries")).thenReturn(collectionReference);
+        when(collectionReference.document(anyString())).thenAnswer(invocation ->
+                refs.computeIfAbsent(invocation.getArgument(0), id -> mock(DocumentReference.class)));
+
+        Timestamp storedAt = Timestamp.ofTimeSecondsAndNanos(100, 0);
+        List<DocumentSnapshot> storedDocs = List.of(storedDoc("own", "user-1", storedAt), storedDoc("other", "user-2", storedAt));
+        when(firestore.getAll(any(DocumentReference[].class))).thenReturn(ApiFutures.immediateFuture(storedDocs));
+
+        WriteBatch batch = mock(WriteBatch.class);
+        when(firestore.batch()).thenReturn(batch);
+        when(batch.commit()).thenReturn(ApiFutures.immediateFuture(List.of()));
+
+        Timestamp recordedAt = Timestamp.ofTimeSecondsAndNanos(200, 0);
+        Query own = historyQuery("own");
+        Query other = historyQuery("other");
+        Query fresh = historyQuery(null);
+
+        queryService.writeHistory(List.of(
+                new QueryService.HistoryWrite(own, true, "new-1", recordedAt),
+                new QueryService.HistoryWrite(other, true, "new-2", recordedAt),
+                new QueryService.HistoryWrite(fresh, false, "new-3", recordedAt)));
+
+        // Only the user's own query is replaced; another user's id never overwrites their history
+        assertEquals("own", own.getId());
+        assertEquals(storedAt, own.getTimestamp());
+        assertEquals("new-2", other.getId());
+        assertEquals(recordedAt, other.getTimestamp());
+        assertEquals("new-3", fresh.getId());
+
+        verify(batch).set(refs.get("own"), own);
+        verify(batch).set(refs.get("new-2"), other);
+        verify(batch).set(refs.get("new-3"), fresh);
+        verify(batch, times(1)).commit();
+        verify(firestore, times(1)).getAll(any(DocumentReference[].class));
+    }
+
+    private Query historyQuery(String id) {
+        Query query = new Query();
+        query.setId(id);
+        query.setUserId("user-1");
+        query.setSqlQuery("SELECT 1");
+        return query;
+    }
+
+    private DocumentSnapshot storedDoc(String id, String userId, Timestamp timestamp) {
+        Query query = new Query();
+        query.setId(id);
+        query.setUserId(userId);
+        query.setTimestamp(timestamp);
+
+        DocumentSnapshot doc = mock(DocumentSnapshot.class);
+        when(doc.exists()).thenReturn(true);
+        when(doc.getId()).thenReturn(id);
+        when(doc.toObject(Query.class)).thenReturn(query);
+        return doc;
+    }
+
+    private com.google.cloud.firestore.Query stubHistoryQuery(QueryDocumentSnapshot... documents) throws Exception {
+        CollectionReference collectionReference = mock(CollectionReference.class);
+        com.google.cloud.firestore.Query firestoreQuery = mock(com.google.cloud.firestore.Query.class, RETURNS_SELF);
+        ApiFuture<QuerySnapshot> apiFuture = mock(ApiFuture.class);
+        QuerySnapshot querySnapshot = mock(QuerySnapshot.class);
+
+        when(firestore.collection("queries")).thenReturn(collectionReference);
+        when(collectionReference.whereEqualTo("userId", "user-1")).thenReturn(firestoreQuery);
+        when(firestoreQuery.get()).thenReturn(apiFuture);
+        when(apiFuture.get()).thenReturn(querySnapshot);
+        when(querySnapshot.getDocuments()).thenReturn(List.of(documents));
+        return firestoreQuery;
+    }
+
+    private QueryDocumentSnapshot historyDoc(String id, long seconds) {
+        Timestamp timestamp = Timestamp.ofTimeSecondsAndNanos(seconds, 0);
+        Query query = new Query();
+        query.setId(id);
+        query.setNlQuery("how many rows");
+        query.setTimestamp(timestamp);
+
+        QueryDocumentSnapshot doc = mock(QueryDocumentSnapshot.class);
+        when(doc.toObject(Query.class)).thenReturn(query);
+        when(doc.getId()).thenReturn(id);
+        when(doc.getTimestamp("timestamp")).thenReturn(timestamp);
+        return doc;
+    }
 }
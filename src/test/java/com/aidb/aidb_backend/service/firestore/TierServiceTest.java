@@ -0,0 +1,106 @@
+package com.aidb.aidb_backend.service.firestore;
+
+import com.aidb.aidb_backend.model.firestore.Tier;
+import com.aidb.aidb_backend.model.firestore.util.TierId;
+import com.aidb.aidb_backend.service.database.firestore.TierService;
+import com.google.api.core.ApiFuture;
+import com.google.cloud.firestore.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class TierServiceTest {
+
+    @Mock
+    private Firestore firestore;
+
+    @InjectMocks
+    private TierService tierService;
+
+    private CollectionReference tierCollection;
+    private ApiFuture<QuerySnapshot> queryFuture;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+
+        tierCollection = mock(CollectionReference.class);
+        queryFuture = mock(ApiFuture.class);
+
+        when(firestore.collection("tiers")).thenReturn(tierCollection);
+        when(tierCollection.get()).thenReturn(queryFuture);
+        when(tierCollection.addSnapshotListener(any())).thenReturn(mock(ListenerRegistration.class));
+    }
+
+    @Test
+    void loadOnStartup_loadsTiersOnce_forEveryLookup() throws Exception {
+        QuerySnapshot snapshot = snapshot(tier("free", 10L), tier("pro", 100L));
+        when(queryFuture.get()).thenReturn(snapshot);
+
+        tierService.loadOnStartup();
+
+        assertEquals(10L, tierService.getTier(TierId.FREE).getQueryLimit());
+        assertEquals(100L, tierService.getTier(TierId.PRO).getQueryLimit());
+        assertNull(tierService.getTier(TierId.BASIC));
+        verify(tierCollection, times(1)).get();
+    }
+
+    @Test
+    void snapshotListener_replacesTiers() throws Exception {
+        QuerySnapshot snapshot = snapshot(tier("free", 10L));
+        when(queryFuture.get()).thenReturn(snapshot);
+        tierService.loadOnStartup();
+
+        ArgumentCaptor<EventListener<QuerySnapshot>> listener = ArgumentCaptor.forClass(EventListener.class);
+        verify(tierCollection).addSnapshotListener(listener.capture());
+
+        QuerySnapshot updated = snapshot(tier("free", 25L));
+        listener.getValue().onEvent(updated, null);
+
+        assertEquals(25L, tierService.getTier(TierId.FREE).getQueryLimit());
+        verify(tierCollection, times(1)).get();
+    }
+
+    @Test
+    void getTierMap_isImmutable_andSkipsUnknownTiers() throws Exception {
+        QuerySnapshot snapshot = snapshot(tier("free", 10L), tier("enterprise", 1000L));
+        when(queryFuture.get()).thenReturn(snapshot);
+
+        var tiers = tierService.getTierMap();
+
+        assertEquals(1, tiers.size());
+        assertThrows(UnsupportedOperationException.class, () -> tiers.put(TierId.PRO, new Tier()));
+    }
+
+    @Test
+    void loadOnStartup_stillListens_whenInitialLoadFails() throws Exception {
+        when(queryFuture.get()).thenThrow(new RuntimeException("unavailable"));
+
+        tierService.loadOnStartup();
+
+        verify(tierCollection).addSnapshotListener(any());
+    }
+
+    private QuerySnapshot snapshot(QueryDocumentSnapshot... documents) {
+        QuerySnapshot snapshot = mock(QuerySnapshot.class);
+        when(snapshot.getDocuments()).thenReturn(List.of(documents));
+        return snapshot;
+    }
+
+    private QueryDocumentSnapshot tier(String name, Long queryLimit) {
+        Tier tier = new Tier();
+        tier.setName(name);
+        tier.setQueryLimit(queryLimit);
+
+        QueryDocumentSnapshot doc = mock(QueryDocumentSnapshot.class);
+        when(doc.toObject(Tier.class)).thenReturn(tier);
+        when(doc.getId()).thenReturn(name);
+        return doc;
+    }
+}
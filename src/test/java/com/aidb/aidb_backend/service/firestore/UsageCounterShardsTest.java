@@ -0,0 +1,105 @@
+package com.aidb.aidb_backend.service.firestore;
+
+import com.aidb.aidb_backend.service.database.firestore.UsageCounterShards;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UsageCounterShardsTest {
+
+    private final UsageCounterShards usageCounterShards = new UsageCounterShards();
+
+    private final AtomicLong nanoTime = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(usageCounterShards, "enabled", true);
+        ReflectionTestUtils.setField(usageCounterShards, "maxShards", 8);
+        ReflectionTestUtils.setField(usageCounterShards, "writesPerShardPerSecond", 0.5);
+        ReflectionTestUtils.setField(usageCounterShards, "rateWindowMs", 10_000L);
+        ReflectionTestUtils.setField(usageCounterShards, "clock", (LongSupplier) nanoTime::get);
+    }
+
+    @Test
+    void recordWrite_growsShards_whenWriteRateExceedsWhatOneDocumentAbsorbs() {
+        Integer grown = writeEverySecond("user-1", 11);
+
+        assertEquals(2, grown);
+        // Not written to until the count is stored
+        assertEquals(0, usageCounterShards.getShardCount("user-1"));
+
+        usageCounterShards.shardCountStored("user-1", grown);
+        assertEquals(2, usageCounterShards.getShardCount("user-1"));
+    }
+
+    @Test
+    void recordWrite_keepsUsageOnDocument_forOccasionalWrites() {
+        for (int i = 0; i < 5; i++) {
+            assertNull(usageCounterShards.recordWrite("user-1", false));
+            nanoTime.addAndGet(5_000_000_000L);
+        }
+
+        assertEquals(0, usageCounterShards.getShardCount("user-1"));
+    }
+
+    @Test
+    void recordWrite_growsOnFailedWrite_upToMaxShards() {
+        usageCounterShards.observeShardCount("user-1", 4);
+
+        assertEquals(8, usageCounterShards.recordWrite("user-1", true));
+        usageCounterShards.shardCountStored("user-1", 8);
+
+        assertNull(usageCounterShards.recordWrite("user-1", true));
+        assertEquals(8, usageCounterShards.getShardCount("user-1"));
+    }
+
+    @Test
+    void recordWrite_offersUnstoredCountAgain_untilStored_evenAtMaxShards() {
+        usageCounterShards.observeShardCount("user-1", 4);
+        assertEquals(8, usageCounterShards.recordWrite("user-1", true));
+
+        // Storing it failed; the next writes ask for the same count without growing further
+        assertEquals(8, usageCounterShards.recordWrite("user-1", false));
+        assertEquals(8, usageCounterShards.recordWrite("user-1", true));
+        assertEquals(4, usageCounterShards.getShardCount("user-1"));
+
+        usageCounterShards.shardCountStored("user-1", 8);
+
+        assertNull(usageCounterShards.recordWrite("user-1", true));
+        assertEquals(8, usageCounterShards.getShardCount("user-1"));
+    }
+
+    @Test
+    void recordWrite_neverGrows_whenDisabled() {
+        ReflectionTestUtils.setField(usageCounterShards, "enabled", false);
+
+        assertNull(usageCounterShards.recordWrite("user-1", true));
+        assertNull(writeEverySecond("user-1", 11));
+        assertEquals(0, usageCounterShards.getShardCount("user-1"));
+    }
+
+    @Test
+    void observeShardCount_neverLowersCountGrownLocally() {
+        usageCounterShards.shardCountStored("user-1", usageCounterShards.recordWrite("user-1", true));
+
+        usageCounterShards.observeShardCount("user-1", null);
+        usageCounterShards.observeShardCount("user-1", 1);
+
+        assertEquals(2, usageCounterShards.getShardCount("user-1"));
+    }
+
+    // Returns the last growth decision
+    private Integer writeEverySecond(String userId, int writes) {
+        Integer grown = null;
+        for (int i = 0; i < writes; i++) {
+            grown = usageCounterShards.recordWrite(userId, false);
+            nanoTime.addAndGet(1_000_000_000L);
+        }
+        return grown;
+    }
+}
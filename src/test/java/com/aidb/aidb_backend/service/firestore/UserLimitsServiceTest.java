@@ -0,0 +1,200 @@
+package com.aidb.aidb_backend.service.firestore;
+
+import com.aidb.aidb_backend.exception.UserNotFoundException;
+import com.aidb.aidb_backend.model.firestore.UserLimitsUsage;
+import com.aidb.aidb_backend.model.firestore.util.LimitedOperation;
+import com.aidb.aidb_backend.model.firestore.util.UsagePeriod;
+import com.aidb.aidb_backend.service.database.firestore.UsageCounterShards;
+import com.aidb.aidb_backend.service.database.firestore.UserLimitsService;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class UserLimitsServiceTest {
+
+    @Mock
+    private Firestore firestore;
+
+    @Spy
+    private UsageCounterShards usageCounterShards = new UsageCounterShards();
+
+    @InjectMocks
+    private UserLimitsService userLimitsService;
+
+    private DocumentReference documentReference;
+    private DocumentSnapshot documentSnapshot;
+    private CollectionReference shardCollection;
+    private WriteBatch writeBatch;
+    private ApiFuture<List<WriteResult>> commitFuture;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+
+        CollectionReference collectionReference = mock(CollectionReference.class);
+        documentReference = mock(DocumentReference.class);
+        documentSnapshot = mock(DocumentSnapshot.class);
+        shardCollection = mock(CollectionReference.class);
+        writeBatch = mock(WriteBatch.class);
+        commitFuture = mock(ApiFuture.class);
+
+        when(firestore.collection("user_limits")).thenReturn(collectionReference);
+        when(collectionReference.document("user-1")).thenReturn(documentReference);
+        when(documentReference.collection("usage_shards")).thenReturn(shardCollection);
+        when(documentReference.get()).thenReturn(ApiFutures.immediateFuture(documentSnapshot));
+
+        when(firestore.batch()).thenReturn(writeBatch);
+        when(writeBatch.commit()).thenReturn(commitFuture);
+        when(commitFuture.get()).thenReturn(List.of());
+
+        ReflectionTestUtils.setField(userLimitsService, "lookupMaxAttempts", 3);
+        ReflectionTestUtils.setField(userLimitsService, "lookupBaseDelayMs", 1L);
+        ReflectionTestUtils.setField(userLimitsService, "lookupDeadlineMs", 5_000L);
+        ReflectionTestUtils.setField(userLimitsService, "negativeCacheTtlMs", 60_000L);
+        ReflectionTestUtils.invokeMethod(userLimitsService, "initCache");
+    }
+
+    @Test
+    void incrementUsage_writesServerSideIncrements_inOneWriteWithoutTransaction() throws Exception {
+        userLimitsService.incrementUsage(Map.of("user-1", Map.of(LimitedOperation.QUERY, 3L, LimitedOperation.TRANSLATION, 1L)));
+
+        ArgumentCaptor<Map<String, Object>> updates = ArgumentCaptor.forClass(Map.class);
+        verify(writeBatch, times(1)).update(eq(documentReference), updates.capture());
+        assertEquals(FieldValue.increment(3L), updates.getValue().get("queryLimitUsage"));
+        assertEquals(FieldValue.increment(1L), updates.getValue().get("translationLimitUsage"));
+        assertTrue(updates.getValue().containsKey("lastUpdated"));
+        verify(writeBatch, times(1)).commit();
+        verify(firestore, never()).runTransaction(any());
+    }
+
+    @Test
+    void incrementUsage_throws_whenWriteFails() throws Exception {
+        when(commitFuture.get()).thenThrow(new ExecutionException(new RuntimeException("NOT_FOUND")));
+
+        assertThrows(ExecutionException.class,
+                () -> userLimitsService.incrementUsage(Map.of("user-1", Map.of(LimitedOperation.QUERY, 1L))));
+    }
+
+    @Test
+    void getUserLimitsById_addsCurrentPeriodShardsToUsage() throws Exception {
+        UserLimitsUsage usage = UserLimitsUsage.createNewUserLimits("user-1");
+        usage.setQueryLimitUsage(4L);
+        usage.setUsageShardCount(2);
+        when(documentSnapshot.exists()).thenReturn(true);
+        when(documentSnapshot.toObject(UserLimitsUsage.class)).thenReturn(usage);
+        stubShards(shard(3L, 1L), shard(5L, null));
+
+        UserLimitsUsage read = userLimitsService.getUserLimitsById("user-1");
+
+        assertEquals(12L, read.getQueryLimitUsage());
+        assertEquals(1L, read.getTranslationLimitUsage());
+        verify(shardCollection).whereEqualTo("usagePeriod", UsagePeriod.current());
+    }
+
+    @Test
+    void incrementUsage_writesShardedCountersToAShard_andLeavesUsageDocumentAlone() throws Exception {
+        usageCounterShards.observeShardCount("user-1", 4);
+        DocumentReference shardReference = mock(DocumentReference.class);
+        when(shardCollection.document(anyString())).thenReturn(shardReference);
+
+        userLimitsService.incrementUsage(Map.of("user-1", Map.of(LimitedOperation.QUERY, 2L)));
+
+        ArgumentCaptor<Map<String, Object>> fields = ArgumentCaptor.forClass(Map.class);
+        verify(writeBatch).set(eq(shardReference), fields.capture(), eq(SetOptions.merge()));
+        assertEquals(FieldValue.increment(2L), fields.getValue().get("queryLimitUsage"));
+        assertEquals(UsagePeriod.current(), fields.getValue().get("usagePeriod"));
+        verify(writeBatch, never()).update(any(DocumentReference.class), anyMap());
+
+        ArgumentCaptor<String> shardId = ArgumentCaptor.forClass(String.class);
+        verify(shardCollection).document(shardId.capture());
+        assertTrue(shardId.getValue().startsWith(UsagePeriod.current() + "_"));
+    }
+
+    @Test
+    void incrementUsage_usesGrownShards_onlyOnceTheirCountIsStored() throws Exception {
+        ReflectionTestUtils.setField(usageCounterShards, "enabled", true);
+        ReflectionTestUtils.setField(usageCounterShards, "maxShards", 16);
+        usageCounterShards.observeShardCount("user-1", 8);
+        when(shardCollection.document(anyString())).thenReturn(mock(DocumentReference.class));
+        when(documentReference.update("usageShardCount", 16))
+                .thenReturn(ApiFutures.immediateFailedFuture(new RuntimeException("UNAVAILABLE")))
+                .thenReturn(ApiFutures.immediateFuture(mock(WriteResult.class)));
+        when(commitFuture.get()).thenThrow(new ExecutionException(new RuntimeException("ABORTED"))).thenReturn(List.of());
+
+        // The failed write grows the shards, but storing the count fails too
+        assertThrows(ExecutionException.class,
+                () -> userLimitsService.incrementUsage(Map.of("user-1", Map.of(LimitedOperation.QUERY, 1L))));
+        assertEquals(8, usageCounterShards.getShardCount("user-1"));
+
+        // Already the maximum, but storing it is still retried after the next write
+        userLimitsService.incrementUsage(Map.of("user-1", Map.of(LimitedOperation.QUERY, 1L)));
+
+        verify(documentReference, times(2)).update("usageShardCount", 16);
+        assertEquals(16, usageCounterShards.getShardCount("user-1"));
+    }
+
+    @Test
+    void getUserLimitsById_retriesMissingDocument_untilSignupCreatesIt() throws Exception {
+        when(documentSnapshot.exists()).thenReturn(false, true);
+        when(documentSnapshot.toObject(UserLimitsUsage.class)).thenReturn(UserLimitsUsage.createNewUserLimits("user-1"));
+
+        UserLimitsUsage usage = userLimitsService.getUserLimitsById("user-1");
+
+        assertEquals("user-1", usage.getId());
+        verify(documentReference, times(2)).get();
+    }
+
+    @Test
+    void getUserLimitsById_remembersMissingUser_withoutRetryingAgain() throws Exception {
+        when(documentSnapshot.exists()).thenReturn(false);
+
+        assertThrows(UserNotFoundException.class, () -> userLimitsService.getUserLimitsById("user-1"));
+        verify(documentReference, times(3)).get();
+
+        assertThrows(UserNotFoundException.class, () -> userLimitsService.getUserLimitsById("user-1"));
+        verify(documentReference, times(3)).get();
+    }
+
+    @Test
+    void getUserLimitsById_stopsRetrying_atDeadline() throws Exception {
+        ReflectionTestUtils.setField(userLimitsService, "lookupBaseDelayMs", 10_000L);
+        ReflectionTestUtils.setField(userLimitsService, "lookupDeadlineMs", 100L);
+        when(documentSnapshot.exists()).thenReturn(false);
+
+        assertThrows(UserNotFoundException.class, () -> userLimitsService.getUserLimitsById("user-1"));
+        verify(documentReference, times(1)).get();
+    }
+
+    private void stubShards(QueryDocumentSnapshot... shards) throws Exception {
+        Query query = mock(Query.class);
+        ApiFuture<QuerySnapshot> queryFuture = mock(ApiFuture.class);
+        QuerySnapshot querySnapshot = mock(QuerySnapshot.class);
+
+        when(shardCollection.whereEqualTo(eq("usagePeriod"), any())).thenReturn(query);
+        when(query.get()).thenReturn(queryFuture);
+        when(queryFuture.get()).thenReturn(querySnapshot);
+        when(querySnapshot.getDocuments()).thenReturn(List.of(shards));
+    }
+
+    private QueryDocumentSnapshot shard(Long queryUsage, Long translationUsage) {
+        QueryDocumentSnapshot shard = mock(QueryDocumentSnapshot.class);
+        when(shard.getLong("queryLimitUsage")).thenReturn(queryUsage);
+        when(shard.getLong("translationLimitUsage")).thenReturn(translationUsage);
+        return shard;
+    }
+}
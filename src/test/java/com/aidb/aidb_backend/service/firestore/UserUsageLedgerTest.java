@@ -0,0 +1,198 @@
+package com.aidb.aidb_backend.service.firestore;
+
+import com.aidb.aidb_backend.model.firestore.UserLimitsUsage;
+import com.aidb.aidb_backend.model.firestore.util.LimitedOperation;
+import com.aidb.aidb_backend.service.database.firestore.UserLimitsService;
+import com.aidb.aidb_backend.service.database.firestore.UserUsageLedger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class UserUsageLedgerTest {
+
+    @Mock
+    private UserLimitsService userLimitsService;
+
+    @InjectMocks
+    private UserUsageLedger userUsageLedger;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(userUsageLedger, "maxStalenessMs", 60_000L);
+    }
+
+    @Test
+    void getUsage_readsFirestoreOnce_andIncludesRecordedUsage() throws Exception {
+        when(userLimitsService.getUserLimitsById("user-1")).thenReturn(usage("user-1", 3L));
+
+        assertEquals(3L, userUsageLedger.getUsage("user-1").getQueryLimitUsage());
+        assertEquals(5L, userUsageLedger.record("user-1", LimitedOperation.QUERY, 2));
+
+        UserLimitsUsage usage = userUsageLedger.getUsage("user-1");
+        assertEquals(5L, usage.getQueryLimitUsage());
+        assertEquals(0L, usage.getTranslationLimitUsage());
+
+        verify(userLimitsService, times(1)).getUserLimitsById("user-1");
+        verify(userLimitsService, never()).incrementUsage(any());
+    }
+
+    @Test
+    void flush_writesAggregatedIncrementsInOneBatch() throws Exception {
+        when(userLimitsService.getUserLimitsById("user-1")).thenReturn(usage("user-1", 0L));
+        when(userLimitsService.getUserLimitsById("user-2")).thenReturn(usage("user-2", 0L));
+        userUsageLedger.getUsage("user-1");
+        userUsageLedger.getUsage("user-2");
+
+        userUsageLedger.record("user-1", LimitedOperation.QUERY, 1);
+        userUsageLedger.record("user-1", LimitedOperation.QUERY, 1);
+        userUsageLedger.record("user-1", LimitedOperation.TRANSLATION, 1);
+        userUsageLedger.record("user-2", LimitedOperation.QUERY, 4);
+
+        userUsageLedger.flush();
+        userUsageLedger.flush();
+
+        verify(userLimitsService, times(1)).incrementUsage(Map.of(
+                "user-1", Map.of(LimitedOperation.QUERY, 2L, LimitedOperation.TRANSLATION, 1L),
+                "user-2", Map.of(LimitedOperation.QUERY, 4L)));
+
+        // Flushed usage stays part of the local view
+        assertEquals(2L, userUsageLedger.getUsage("user-1").getQueryLimitUsage());
+        verify(userLimitsService, times(1)).getUserLimitsById("user-1");
+    }
+
+    @Test
+    void flush_keepsIncrementsForRetry_whenWriteFails() throws Exception {
+        when(userLimitsService.getUserLimitsById("user-1")).thenReturn(usage("user-1", 3L));
+        userUsageLedger.getUsage("user-1");
+        userUsageLedger.record("user-1", LimitedOperation.QUERY, 2);
+
+        doThrow(new ExecutionException(new RuntimeException("unavailable")))
+                .doNothing()
+                .when(userLimitsService).incrementUsage(any());
+
+        userUsageLedger.flush();
+        assertEquals(5L, userUsageLedger.getUsage("user-1").getQueryLimitUsage());
+
+        userUsageLedger.record("user-1", LimitedOperation.QUERY, 1);
+        userUsageLedger.flush();
+
+        verify(userLimitsService, times(2)).incrementUsage(any());
+        verify(userLimitsService).incrementUsage(Map.of("user-1", Map.of(LimitedOperation.QUERY, 3L)));
+        assertEquals(6L, userUsageLedger.getUsage("user-1").getQueryLimitUsage());
+    }
+
+    @Test
+    void invalidateAll_reloadsBaseline_andKeepsPendingIncrements() throws Exception {
+        when(userLimitsService.getUserLimitsById("user-1"))
+                .thenReturn(usage("user-1", 7L))
+                .thenReturn(usage("user-1", 0L));
+
+        userUsageLedger.getUsage("user-1");
+        userUsageLedger.record("user-1", LimitedOperation.QUERY, 1);
+
+        userUsageLedger.invalidateAll();
+
+        assertEquals(1L, userUsageLedger.getUsage("user-1").getQueryLimitUsage());
+        verify(userLimitsService, times(2)).getUserLimitsById("user-1");
+    }
+
+    @Test
+    void getUsage_reloadsBaselineFromAnEarlierBillingPeriod() throws Exception {
+        UserLimitsUsage lastMonth = usage("user-1", 9L);
+        lastMonth.setUsagePeriod("1999-12");
+        when(userLimitsService.getUserLimitsById("user-1"))
+                .thenReturn(lastMonth)
+                .thenReturn(usage("user-1", 0L));
+
+        userUsageLedger.getUsage("user-1");
+
+        assertEquals(0L, userUsageLedger.getUsage("user-1").getQueryLimitUsage());
+        verify(userLimitsService, times(2)).getUserLimitsById("user-1");
+    }
+
+    @Test
+    void flush_dropsMonthlyIncrementsFromAnEndedBillingPeriod() throws Exception {
+        UserLimitsUsage lastMonth = usage("user-1", 9L);
+        lastMonth.setUsagePeriod("1999-12");
+        when(userLimitsService.getUserLimitsById("user-1"))
+                .thenReturn(lastMonth)
+                .thenReturn(usage("user-1", 0L));
+
+        userUsageLedger.getUsage("user-1");
+        userUsageLedger.record("user-1", LimitedOperation.QUERY, 2);
+        userUsageLedger.record("user-1", LimitedOperation.DATA_ROW, 50);
+
+        userUsageLedger.flush();
+
+        // Data rows carry over between periods; last month's queries aren't charged to this one
+        verify(userLimitsService).incrementUsage(Map.of("user-1", Map.of(LimitedOperation.DATA_ROW, 50L)));
+        assertEquals(0L, userUsageLedger.getUsage("user-1").getQueryLimitUsage());
+    }
+
+    @Test
+    void getUsage_dropsMonthlyIncrementsFromAnEndedBillingPeriod_onReload() throws Exception {
+        UserLimitsUsage lastMonth = usage("user-1", 9L);
+        lastMonth.setUsagePeriod("1999-12");
+        when(userLimitsService.getUserLimitsById("user-1"))
+                .thenReturn(lastMonth)
+                .thenReturn(usage("user-1", 0L));
+
+        userUsageLedger.getUsage("user-1");
+        userUsageLedger.record("user-1", LimitedOperation.QUERY, 2);
+
+        assertEquals(0L, userUsageLedger.getUsage("user-1").getQueryLimitUsage());
+
+        userUsageLedger.flush();
+        verify(userLimitsService, never()).incrementUsage(any());
+    }
+
+    @Test
+    void reserve_countsOpenReservations_andRejectsPastTheLimit() throws Exception {
+        when(userLimitsService.getUserLimitsById("user-1")).thenReturn(usage("user-1", 8L));
+
+        assertEquals(9L, userUsageLedger.reserve("user-1", LimitedOperation.QUERY, 1, 10L));
+        assertEquals(10L, userUsageLedger.reserve("user-1", LimitedOperation.QUERY, 1, 10L));
+        assertNull(userUsageLedger.reserve("user-1", LimitedOperation.QUERY, 1, 10L));
+
+        userUsageLedger.release("user-1", LimitedOperation.QUERY, 1);
+        assertEquals(10L, userUsageLedger.reserve("user-1", LimitedOperation.QUERY, 1, 10L));
+
+        // Unlimited
+        assertEquals(11L, userUsageLedger.reserve("user-1", LimitedOperation.QUERY, 1, null));
+        verify(userLimitsService, times(1)).getUserLimitsById("user-1");
+    }
+
+    @Test
+    void commit_turnsReservationIntoFlushedUsage() throws Exception {
+        when(userLimitsService.getUserLimitsById("user-1")).thenReturn(usage("user-1", 3L));
+
+        userUsageLedger.reserve("user-1", LimitedOperation.QUERY, 2, 10L);
+        userUsageLedger.reserve("user-1", LimitedOperation.QUERY, 1, 10L);
+
+        // Reservations aren't written until committed
+        userUsageLedger.flush();
+        verify(userLimitsService, never()).incrementUsage(any());
+
+        assertEquals(6L, userUsageLedger.commit("user-1", LimitedOperation.QUERY, 2));
+        userUsageLedger.release("user-1", LimitedOperation.QUERY, 1);
+        userUsageLedger.flush();
+
+        verify(userLimitsService).incrementUsage(Map.of("user-1", Map.of(LimitedOperation.QUERY, 2L)));
+        assertEquals(5L, userUsageLedger.getUsage("user-1").getQueryLimitUsage());
+    }
+
+    private UserLimitsUsage usage(String userId, Long queryUsage) {
+        UserLimitsUsage usage = UserLimitsUsage.createNewUserLimits(userId);
+        usage.setQueryLimitUsage(queryUsage);
+        return usage;
+    }
+}
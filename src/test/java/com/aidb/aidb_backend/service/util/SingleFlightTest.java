@@ -0,0 +1,105 @@
+package com.aidb.aidb_backend.service.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+    @Test
+    void execute_sharesInFlightResultWithConcurrentCaller() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> singleFlight.execute("key", () -> {
+            calls.incrementAndGet();
+            started.countDown();
+            await(release);
+            return "SELECT 1";
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        AtomicReference<String> followerResult = new AtomicReference<>();
+        Thread follower = new Thread(() -> followerResult.set(singleFlight.execute("key", () -> {
+            calls.incrementAndGet();
+            return "SELECT 2";
+        })));
+        follower.start();
+        waitUntilBlocked(follower);
+
+        release.countDown();
+        follower.join(5000);
+
+        assertEquals("SELECT 1", leader.get(5, TimeUnit.SECONDS));
+        assertEquals("SELECT 1", followerResult.get());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void execute_sharesExceptionWithConcurrentCaller() throws Exception {
+        IllegalStateException failure = new IllegalStateException("upstream down");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> singleFlight.execute("key", () -> {
+            started.countDown();
+            await(release);
+            throw failure;
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        AtomicReference<Throwable> followerError = new AtomicReference<>();
+        Thread follower = new Thread(() -> {
+            try {
+                singleFlight.execute("key", () -> "SELECT 2");
+            } catch (Throwable t) {
+                followerError.set(t);
+            }
+        });
+        follower.start();
+        waitUntilBlocked(follower);
+
+        release.countDown();
+        follower.join(5000);
+
+        assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+        assertSame(failure, followerError.get());
+    }
+
+    @Test
+    void execute_runsAgainOnceCallHasCompleted() {
+        AtomicInteger calls = new AtomicInteger();
+
+        singleFlight.execute("key", () -> "SELECT " + calls.incrementAndGet());
+        String second = singleFlight.execute("key", () -> "SELECT " + calls.incrementAndGet());
+
+        assertEquals("SELECT 2", second);
+        assertEquals(2, calls.get());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // A caller joining an in-flight call parks until the call completes
+    private static void waitUntilBlocked(Thread thread) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (thread.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(Thread.State.WAITING, thread.getState());
+    }
+}
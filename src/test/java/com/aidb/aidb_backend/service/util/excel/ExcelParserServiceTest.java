@@ -0,0 +1,202 @@
+package com.aidb.aidb_backend.service.util.excel;
+
+import com.aidb.aidb_backend.exception.ExcelValidationException;
+import com.aidb.aidb_backend.model.dto.ProjectDTO;
+import com.aidb.aidb_backend.model.dto.ProjectOverviewDTO;
+import com.aidb.aidb_backend.model.dto.TableDTO;
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExcelParserServiceTest {
+
+    private ExcelParserService parserService;
+    private ProjectOverviewDTO projectOverview;
+
+    @BeforeEach
+    void setUp() {
+        parserService = new ExcelParserService();
+        projectOverview = new ProjectOverviewDTO(1L, "Test Project", "user-1");
+    }
+
+    @Test
+    void parseExcelFile_buildsColumnsTypesAndRows() throws Exception {
+        Date joined = new GregorianCalendar(2024, Calendar.MARCH, 5).getTime();
+
+        byte[] file = workbook(wb -> {
+            CellStyle dateStyle = wb.createCellStyle();
+            dateStyle.setDataFormat(wb.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd"));
+
+            Sheet sheet = wb.createSheet("Cat Houses");
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("Name");
+            header.createCell(1).setCellValue("Value");
+            header.createCell(2).setCellValue("Joined");
+
+            Row first = sheet.createRow(1);
+            first.createCell(0).setCellValue("tabby house");
+            first.createCell(1).setCellValue(1500.5);
+            Cell date = first.createCell(2);
+            date.setCellValue(joined);
+            date.setCellStyle(dateStyle);
+
+            Row second = sheet.createRow(2);
+            second.createCell(0).setCellValue("mr. whiskers");
+            second.createCell(1).setCellValue(42);
+        });
+
+        ProjectDTO project = parserService.parseExcelFile(projectOverview, Set.of(), new ByteArrayInputStream(file));
+
+        assertEquals("user-1", project.getUserId());
+        assertEquals(1, project.getTables().size());
+
+        TableDTO table = project.getTables().get(0);
+        assertEquals("cat_houses", table.getFileName());
+        assertEquals("cat_houses", table.getDisplayName());
+
+        assertEquals(List.of("name", "value", "joined"),
+                table.getColumns().stream().map(TableDTO.ColumnDTO::getName).toList());
+        assertEquals(List.of(TableDTO.ColumnTypeDTO.TEXT, TableDTO.ColumnTypeDTO.NUMBER, TableDTO.ColumnTypeDTO.DATE),
+                table.getColumns().stream().map(TableDTO.ColumnDTO::getType).toList());
+
+        assertEquals(2, table.getRows().size());
+        assertEquals(Arrays.asList("tabby_house", 1500.5, joined), table.getRows().get(0));
+        assertEquals(Arrays.asList("mr._whiskers", 42.0, null), table.getRows().get(1));
+    }
+
+    @Test
+    void parseExcelFile_deduplicatesTableAndColumnNames() throws Exception {
+        byte[] file = workbook(wb -> {
+            Sheet sheet = wb.createSheet("users");
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("id");
+            header.createCell(1).setCellValue("ID");
+        });
+
+        ProjectDTO project = parserService.parseExcelFile(projectOverview, Set.of("users"), new ByteArrayInputStream(file));
+
+        TableDTO table = project.getTables().get(0);
+        assertEquals("users_1", table.getDisplayName());
+        assertEquals(List.of("id", "id_1"),
+                table.getColumns().stream().map(TableDTO.ColumnDTO::getName).toList());
+        // No data row below the header: every column defaults to TEXT
+        assertTrue(table.getColumns().stream().allMatch(c -> c.getType() == TableDTO.ColumnTypeDTO.TEXT));
+        assertTrue(table.getRows().isEmpty());
+    }
+
+    @Test
+    void parseExcelFile_keepsEverySheetInWorkbookOrder() throws Exception {
+        byte[] file = workbook(wb -> {
+            wb.createSheet("first").createRow(0).createCell(0).setCellValue("a");
+            wb.createSheet("second");
+        });
+
+        ProjectDTO project = parserService.parseExcelFile(projectOverview, Set.of(), new ByteArrayInputStream(file));
+
+        assertEquals(List.of("first", "second"),
+                project.getTables().stream().map(TableDTO::getDisplayName).toList());
+        assertTrue(project.getTables().get(1).getColumns().isEmpty());
+    }
+
+    @Test
+    void parseExcelFile_rejectsIllegalCellCharacters() throws Exception {
+        byte[] file = workbook(wb -> {
+            Sheet sheet = wb.createSheet("users");
+            sheet.createRow(0).createCell(0).setCellValue("name");
+            sheet.createRow(1).createCell(0).setCellValue("<script>");
+        });
+
+        assertThrows(ExcelValidationException.class,
+                () -> parserService.parseExcelFile(projectOverview, Set.of(), new ByteArrayInputStream(file)));
+    }
+
+    @Test
+    void parseExcelFile_rejectsNonExcelContent() {
+        byte[] file = "CORRUPTED_DATA".getBytes();
+
+        assertThrows(IOException.class,
+                () -> parserService.parseExcelFile(projectOverview, Set.of(), new ByteArrayInputStream(file)));
+    }
+
+    @Test
+    void streamExcelFile_emitsEventsInOrder() throws Exception {
+        byte[] file = workbook(wb -> {
+            Sheet sheet = wb.createSheet("users");
+            sheet.createRow(0).createCell(0).setCellValue("name");
+            sheet.createRow(1).createCell(0).setCellValue("alice");
+            sheet.createRow(2).createCell(0).setCellValue("bob");
+        });
+
+        List<String> events = new ArrayList<>();
+        parserService.streamExcelFile(Set.of(), new ByteArrayInputStream(file), new ExcelSheetListener() {
+            @Override
+            public void onHeader(TableDTO table) {
+                events.add("header:" + table.getColumns().get(0).getName());
+            }
+
+            @Override
+            public void onColumnTypes(TableDTO table) {
+                events.add("types:" + table.getColumns().get(0).getType());
+            }
+
+            @Override
+            public void onRow(TableDTO table, List<Object> row) {
+                events.add("row:" + row.get(0));
+            }
+
+            @Override
+            public void onSheetEnd(TableDTO table) {
+                events.add("end:" + table.getDisplayName());
+            }
+        });
+
+        assertEquals(List.of("header:name", "types:TEXT", "row:alice", "row:bob", "end:users"), events);
+    }
+
+    @Test
+    void parseExcelFile_abortsWhenObserverRejectsBytesRead() throws Exception {
+        byte[] file = workbook(wb -> wb.createSheet("users").createRow(0).createCell(0).setCellValue("name"));
+
+        IllegalStateException tooLarge = new IllegalStateException("too large");
+        List<Long> bytesSeen = new ArrayList<>();
+
+        IllegalStateException thrown = assertThrows(IllegalStateException.class,
+                () -> parserService.parseExcelFile(projectOverview, Set.of(), new ByteArrayInputStream(file), new ExcelSheetListener() {
+                    @Override
+                    public void onBytesRead(long totalBytes) {
+                        bytesSeen.add(totalBytes);
+                        if (totalBytes > 100) {
+                            throw tooLarge;
+                        }
+                    }
+
+                    @Override
+                    public void onHeader(TableDTO table) {
+                        fail("Nothing should be parsed once the observer rejects the upload");
+                    }
+                }));
+
+        assertSame(tooLarge, thrown);
+        assertFalse(bytesSeen.isEmpty());
+    }
+
+    private interface WorkbookWriter {
+        void write(Workbook workbook);
+    }
+
+    private byte[] workbook(WorkbookWriter writer) throws IOException {
+        try (XSSFWorkbook wb = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            writer.write(wb);
+            wb.write(out);
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.aidb.aidb_backend.service.util.sql;
+
+import com.aidb.aidb_backend.exception.IllegalSqlException;
+import com.aidb.aidb_backend.exception.TableNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SafeSqlCompilerTest {
+
+    private static final Map<String, String> MAPPING = Map.of("users", "project_1_table_aaa", "orders", "project_1_table_bbb");
+
+    private SafeSqlCompiler compiler;
+
+    @BeforeEach
+    void setUp() {
+        compiler = new SafeSqlCompiler(100);
+    }
+
+    @Test
+    void compile_rewritesTableNames() {
+        assertEquals("SELECT name FROM project_1_table_aaa WHERE id = 1",
+                compiler.compile(1L, "  SELECT name FROM users WHERE id = 1 ", MAPPING));
+    }
+
+    @Test
+    void compile_allowsKeywordsInsideLiterals() {
+        assertEquals("SELECT * FROM project_1_table_aaa WHERE note = 'update my order'",
+                compiler.compile(1L, "SELECT * FROM users WHERE note = 'update my order'", MAPPING));
+    }
+
+    @Test
+    void compile_rejectsNonSelectStatements() {
+        for (String sql : new String[]{"DELETE FROM users", "update users set name = 'x'", "DROP TABLE users", "EXEC sp_malicious"}) {
+            IllegalSqlException ex = assertThrows(IllegalSqlException.class, () -> compiler.compile(1L, sql, MAPPING), sql);
+            assertEquals(HttpStatus.BAD_REQUEST, ex.getHttpStatus());
+            assertTrue(ex.getMessage().contains("disallowed operations"));
+        }
+    }
+
+    @Test
+    void compile_rejectsSelectInto() {
+        IllegalSqlException ex = assertThrows(IllegalSqlException.class,
+                () -> compiler.compile(1L, "SELECT * INTO stolen FROM users", MAPPING));
+        assertTrue(ex.getMessage().contains("disallowed operations"));
+    }
+
+    @Test
+    void compile_rejectsSeparatorsAndComments() {
+        assertThrows(IllegalSqlException.class, () -> compiler.compile(1L, "SELECT 1; SELECT 2", MAPPING));
+        assertThrows(IllegalSqlException.class, () -> compiler.compile(1L, "SELECT 1 -- comment", MAPPING));
+    }
+
+    @Test
+    void compile_rejectsBlockComments() {
+        assertThrows(IllegalSqlException.class, () -> compiler.compile(1L, "SELECT 1 /* comment */", MAPPING));
+    }
+
+    @Test
+    void compile_rejectsDataModifyingWith() {
+        IllegalSqlException ex = assertThrows(IllegalSqlException.class, () -> compiler.compile(1L,
+                "WITH removed AS (DELETE FROM users RETURNING *) SELECT * FROM removed", MAPPING));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getHttpStatus());
+    }
+
+    @Test
+    void compile_rejectsLockingClauses() {
+        for (String sql : new String[]{"SELECT * FROM users FOR UPDATE", "SELECT * FROM users for share",
+                "SELECT * FROM users FOR NO KEY UPDATE", "SELECT * FROM users FOR KEY SHARE"}) {
+            IllegalSqlException ex = assertThrows(IllegalSqlException.class, () -> compiler.compile(1L, sql, MAPPING), sql);
+            assertTrue(ex.getMessage().contains("disallowed operations"));
+        }
+    }
+
+    @Test
+    void compile_rejectsSelectIntoInSubquery() {
+        assertThrows(IllegalSqlException.class,
+                () -> compiler.compile(1L, "SELECT * FROM (SELECT * INTO stolen FROM users) sub", MAPPING));
+    }
+
+    @Test
+    void compile_allowsKeywordsInsideQuotedIdentifiers() {
+        assertEquals("SELECT \"update\" FROM project_1_table_aaa",
+                compiler.compile(1L, "SELECT \"update\" FROM users", MAPPING));
+    }
+
+    @Test
+    void compile_servesRepeatedQueriesFromCache() {
+        String first = compiler.compile(1L, "SELECT * FROM orders", MAPPING);
+        String second = compiler.compile(1L, "SELECT * FROM orders", MAPPING);
+
+        assertSame(first, second);
+    }
+
+    @Test
+    void compile_doesNotReuseRewriteAcrossMappingsOrProjects() {
+        String original = compiler.compile(1L, "SELECT * FROM users", MAPPING);
+        String remapped = compiler.compile(1L, "SELECT * FROM users", Map.of("users", "project_1_table_ccc"));
+        String otherProject = compiler.compile(2L, "SELECT * FROM users", Map.of("users", "project_2_table_aaa"));
+
+        assertEquals("SELECT * FROM project_1_table_aaa", original);
+        assertEquals("SELECT * FROM project_1_table_ccc", remapped);
+        assertEquals("SELECT * FROM project_2_table_aaa", otherProject);
+    }
+
+    @Test
+    void compile_doesNotCacheFailures() {
+        assertThrows(TableNotFoundException.class, () -> compiler.compile(1L, "SELECT * FROM invoices", MAPPING));
+
+        Map<String, String> withInvoices = Map.of("invoices", "project_1_table_ddd");
+        assertEquals("SELECT * FROM project_1_table_ddd", compiler.compile(1L, "SELECT * FROM invoices", withInvoices));
+    }
+
+    @Test
+    void compile_rewritesTablesInsideCtes() {
+        SafeSqlCompiler.CompiledSql compiled = compiler.compileQuery(1L,
+                "WITH big AS (SELECT user_id FROM orders WHERE total > 100) SELECT name FROM users JOIN big ON big.user_id = users.id",
+                MAPPING);
+
+        assertEquals("WITH big AS (SELECT user_id FROM project_1_table_bbb WHERE total > 100) "
+                + "SELECT name FROM project_1_table_aaa JOIN big ON big.user_id = project_1_table_aaa.id", compiled.sql());
+        assertEquals(Set.of("project_1_table_aaa", "project_1_table_bbb"), compiled.tables());
+    }
+
+    @Test
+    void compile_rejectsCteReadingAnUnmappedTable() {
+        assertThrows(TableNotFoundException.class,
+                () -> compiler.compile(1L, "WITH x AS (SELECT * FROM project_2_table_aaa) SELECT * FROM x", MAPPING));
+    }
+
+    @Test
+    void compile_rejectsUnmappedTablesInTheSelectList() {
+        assertThrows(TableNotFoundException.class,
+                () -> compiler.compile(1L, "SELECT (SELECT count(*) FROM pg_user), name FROM users", MAPPING));
+    }
+
+    @Test
+    void compile_rejectsNestedWith() {
+        IllegalSqlException ex = assertThrows(IllegalSqlException.class, () -> compiler.compile(1L,
+                "SELECT (WITH pg_user AS (SELECT 1 AS n) SELECT n FROM pg_user), (SELECT count(*) FROM pg_user) FROM users", MAPPING));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getHttpStatus());
+    }
+
+    @Test
+    void compileQuery_findsEveryTableTheSqlReads() {
+        SafeSqlCompiler.CompiledSql compiled = compiler.compileQuery(1L,
+                "SELECT name FROM users WHERE id IN (SELECT user_id FROM orders)", MAPPING);
+
+        assertEquals(Set.of("project_1_table_aaa", "project_1_table_bbb"), compiled.tables());
+        assertTrue(compiler.compileQuery(1L, "SELECT 1", MAPPING).tables().isEmpty());
+    }
+
+    @Test
+    void compileQuery_findsTablesInTheSelectList() {
+        SafeSqlCompiler.CompiledSql compiled = compiler.compileQuery(1L,
+                "SELECT (SELECT count(*) FROM project_1_table_bbb) FROM users", MAPPING);
+
+        assertEquals(Set.of("project_1_table_aaa", "project_1_table_bbb"), compiled.tables());
+    }
+
+    @Test
+    void compileQuery_marksVolatileFunctionsAsNotDeterministic() {
+        assertFalse(compiler.compileQuery(1L, "SELECT now(), name FROM users", MAPPING).deterministic());
+        assertFalse(compiler.compileQuery(1L, "SELECT name FROM users ORDER BY RANDOM()", MAPPING).deterministic());
+        assertFalse(compiler.compileQuery(1L, "SELECT current_user, name FROM users", MAPPING).deterministic());
+        assertFalse(compiler.compileQuery(1L, "SELECT nextval('ids') FROM users", MAPPING).deterministic());
+
+        assertTrue(compiler.compileQuery(1L, "SELECT name FROM users WHERE note = 'now()'", MAPPING).deterministic());
+    }
+}
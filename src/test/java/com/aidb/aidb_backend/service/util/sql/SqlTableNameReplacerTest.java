@@ -91,15 +91,20 @@ public class SqlTableNameReplacerTest {
         assertThrows(TableNotFoundException.class, () -> replacer.replaceTables(sql));
     }
 
-    // Not Supported
-//    @Test
-//    void testCTEWithSubquery() throws JSQLParserException {
-//        String sql = "WITH recent_houses AS (SELECT * FROM ideal_cat_houses WHERE value>1000) " +
-//                "SELECT * FROM recent_houses r JOIN ideal_cat_number n ON r.id = n.house_id";
-//        String expected = "WITH recent_houses AS (SELECT * FROM physical_cat_houses WHERE value > 1000) " +
-//                "SELECT * FROM recent_houses r JOIN physical_cat_number n ON r.id = n.house_id";
-//        assertEquals(expected, replacer.replaceTables(sql));
-//    }
+    @Test
+    void testCTEWithSubquery() throws JSQLParserException {
+        String sql = "WITH recent_houses AS (SELECT * FROM ideal_cat_houses WHERE value>1000) " +
+                "SELECT * FROM recent_houses JOIN ideal_cat_number ON recent_houses.id = ideal_cat_number.house_id";
+        String expected = "WITH recent_houses AS (SELECT * FROM physical_cat_houses WHERE value > 1000) " +
+                "SELECT * FROM recent_houses JOIN physical_cat_number ON recent_houses.id = physical_cat_number.house_id";
+        assertEquals(expected, replacer.replaceTables(sql));
+    }
+
+    @Test
+    void testCTEReadingUnknownTable() {
+        String sql = "WITH recent_houses AS (SELECT * FROM secret_houses) SELECT * FROM recent_houses";
+        assertThrows(TableNotFoundException.class, () -> replacer.replaceTables(sql));
+    }
 
     @Test
     void testMultipleFromsWithCommasAndAliases() throws JSQLParserException {